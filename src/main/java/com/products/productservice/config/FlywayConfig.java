@@ -0,0 +1,42 @@
+package com.products.productservice.config;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+
+/**
+ * Configuration class for running the Flyway migrations.
+ * The tables are created and updated by Hibernate ({@code spring.jpa.hibernate.ddl-auto}), while the migrations
+ * add the indexes, including those Hibernate cannot express such as full-text indexes. The migrations therefore run after the
+ * entity manager factory has updated the schema, instead of before it as Spring Boot does by default.
+ */
+@Configuration
+public class FlywayConfig {
+
+    /**
+     * Replaces the migration Spring Boot runs before the entity manager factory with nothing.
+     *
+     * @return A strategy that does not migrate.
+     */
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy() {
+        return flyway -> {
+            // Migrated by flywayMigrationAfterHibernate
+        };
+    }
+
+    /**
+     * Runs the migrations once Hibernate has updated the schema.
+     *
+     * @param flyway The Flyway instance configured from the {@code spring.flyway} properties.
+     * @return A bean that migrates the database when it is initialized.
+     */
+    @Bean
+    @DependsOn("entityManagerFactory")
+    public InitializingBean flywayMigrationAfterHibernate(Flyway flyway) {
+        return flyway::migrate;
+    }
+}
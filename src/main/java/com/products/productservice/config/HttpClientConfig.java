@@ -0,0 +1,32 @@
+package com.products.productservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Configuration class for the shared HTTP client used to call external AI services.
+ * A single client is shared by all calls so that connections are pooled and kept alive between requests,
+ * and HTTP/2 is negotiated where the server supports it.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    /**
+     * Creates and configures a {@link HttpClient} bean.
+     *
+     * @param connectTimeout Maximum time to wait for a connection to be established.
+     * @return A new instance of {@link HttpClient}.
+     */
+    @Bean
+    public HttpClient httpClient(@Value("${http.client.connect-timeout:PT10S}") Duration connectTimeout) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)           // Falls back to HTTP/1.1 when not supported
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)  // Generated images are served through redirects
+                .build();
+    }
+}
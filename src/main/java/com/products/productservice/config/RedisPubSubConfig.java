@@ -0,0 +1,40 @@
+package com.products.productservice.config;
+
+import com.products.productservice.services.ProductCacheService;
+import com.products.productservice.services.SearchResultCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Configuration class for Redis pub/sub.
+ * Subscribes the product near-cache to the invalidation channel so that every node
+ * drops its local copy when a product changes on any other node, and the search result cache to the catalogue
+ * version channel so that every node stops serving results cached before the change.
+ */
+@Configuration
+public class RedisPubSubConfig {
+
+    /**
+     * Creates and configures a {@link RedisMessageListenerContainer} bean.
+     *
+     * @param redisConnectionFactory The factory for creating Redis connections.
+     * @param productCacheService    The product cache listening for invalidation messages.
+     * @param searchResultCache      The search result cache listening for new catalogue versions.
+     * @return A configured instance of {@link RedisMessageListenerContainer}.
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                       ProductCacheService productCacheService,
+                                                                       SearchResultCache searchResultCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        // Listen for product invalidations published by any node
+        container.addMessageListener(productCacheService, new ChannelTopic(ProductCacheService.INVALIDATION_CHANNEL));
+        // Listen for catalogue versions published by any node
+        container.addMessageListener(searchResultCache, new ChannelTopic(SearchResultCache.CATALOGUE_VERSION_CHANNEL));
+        return container;
+    }
+}
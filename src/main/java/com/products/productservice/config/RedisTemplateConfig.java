@@ -1,9 +1,14 @@
 package com.products.productservice.config;
 
+import com.products.productservice.utils.ProductBinaryRedisSerializer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
 /**
  * Configuration class for setting up Redis-related beans.
@@ -12,20 +17,44 @@ import org.springframework.data.redis.core.RedisTemplate;
 @Configuration
 public class RedisTemplateConfig {
 
+    /**
+     * Creates the serializer used for values of the cached product hash.
+     * Selected with the product.cache.serializer property: "binary" (default), "json" or "jdk".
+     *
+     * @param format The name of the serialization format.
+     * @return The serializer for cached product values.
+     */
+    @Bean
+    public RedisSerializer<Object> productCacheSerializer(@Value("${product.cache.serializer:binary}") String format) {
+        return switch (format) {
+            case "binary" -> new ProductBinaryRedisSerializer();
+            case "json" -> new GenericJackson2JsonRedisSerializer();
+            case "jdk" -> new JdkSerializationRedisSerializer();
+            default -> throw new IllegalArgumentException("Unsupported product cache serializer: " + format);
+        };
+    }
+
     /**
      * Creates and configures a {@link RedisTemplate} bean.
      * The {@link RedisTemplate} is used for interacting with Redis data structures.
      *
      * @param redisConnectionFactory The factory for creating Redis connections.
+     * @param productCacheSerializer The serializer for values stored in Redis hashes.
      * @return A configured instance of {@link RedisTemplate} for String keys and Object values.
      */
     @Bean
-    public RedisTemplate<String, Object> getRedisTemplate(RedisConnectionFactory redisConnectionFactory) {
+    public RedisTemplate<String, Object> getRedisTemplate(RedisConnectionFactory redisConnectionFactory,
+                                                          RedisSerializer<Object> productCacheSerializer) {
         // Create a new RedisTemplate instance
         RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
         // Set the connection factory for the RedisTemplate
         redisTemplate.setConnectionFactory(redisConnectionFactory);
+        // Store keys and hash keys as plain strings instead of JDK-serialized objects
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.setHashKeySerializer(RedisSerializer.string());
+        // Store hash values (the cached products) with the configured compact serializer
+        redisTemplate.setHashValueSerializer(productCacheSerializer);
         // Return the configured RedisTemplate
         return redisTemplate;
     }
-}
\ No newline at end of file
+}
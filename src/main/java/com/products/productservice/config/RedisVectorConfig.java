@@ -4,48 +4,155 @@ import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.redis.RedisVectorStore;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.search.Schema;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Configuration class for setting up Redis-based vector storage.
  * This class defines beans for creating and configuring Redis connections
  * and vector store instances for embedding-based operations.
+ * <p>
+ * The index is created at startup when missing. When an existing index does not match the fields declared here,
+ * e.g. after a field was added, it is dropped (keeping the documents) and recreated, and Redis re-indexes the
+ * existing documents in the background, so schema changes need no manual FT.DROPINDEX.
+ * <p>
+ * The embedding field is indexed as FLOAT32. RediSearch 2.10 (Redis Stack 7.4) also accepts FLOAT16 and BFLOAT16
+ * vectors, which would halve the index memory for a small loss of precision. They are not used because the
+ * RedisVectorStore hardcodes FLOAT32 when it creates the schema. Switching would mean creating the index here
+ * and sending every KNN query vector as 16-bit floats.
  */
 @Configuration
 public class RedisVectorConfig {
 
+    public static final String INDEX_NAME = "product-recommendations"; // Name of the product embedding index
+    public static final String PREFIX = "product:embedding:";          // Prefix of the product embedding keys
+
+    /**
+     * Metadata fields of the index, besides the content and embedding.
+     */
+    static final List<RedisVectorStore.MetadataField> METADATA_FIELDS = List.of(
+            // Metadata fields for storing additional information about embeddings.
+            RedisVectorStore.MetadataField.tag("category"),
+            RedisVectorStore.MetadataField.numeric("price"),
+            RedisVectorStore.MetadataField.numeric("id"),
+            // Remaining product fields, returned with search hits so results can skip the database.
+            RedisVectorStore.MetadataField.text("name"),
+            RedisVectorStore.MetadataField.tag("imageUrl"),
+            RedisVectorStore.MetadataField.tag("enrichmentStatus"),
+            RedisVectorStore.MetadataField.numeric("lastModified")
+    );
+
+    private static final String CONTENT_FIELD = "content";     // Field holding the product description
+    private static final String EMBEDDING_FIELD = "embedding"; // Field holding the description embedding
+
     /**
      * Creates and configures a JedisPooled bean for connecting to Redis.
+     * Connects to the same server as Spring Data Redis.
      *
+     * @param host The Redis host.
+     * @param port The Redis port.
      * @return A pooled Redis connection instance.
      */
     @Bean
-    public JedisPooled jedisPooled() {
-        return new JedisPooled("localhost", 6379);
+    public JedisPooled jedisPooled(@Value("${spring.data.redis.host:localhost}") String host,
+                                   @Value("${spring.data.redis.port:6379}") int port) {
+        return new JedisPooled(host, port);
     }
 
     /**
      * Creates and configures a RedisVectorStore bean for storing and retrieving embeddings.
+     * The store owns the index schema; it is not created when the in-process HNSW index is selected.
+     * An existing index whose fields differ from the declared schema is dropped first, so that the store
+     * recreates it.
      *
      * @param jedisPooled The Redis connection pool used for interacting with Redis.
      * @param embeddingModel The embedding model used for generating vector representations.
      * @return A configured instance of RedisVectorStore.
      */
     @Bean
+    @ConditionalOnProperty(name = "product.vector-store.type", havingValue = "redis", matchIfMissing = true)
     public VectorStore redisVectorStore(JedisPooled jedisPooled,
                                         @Qualifier("openAiEmbeddingModel") EmbeddingModel embeddingModel) {
+        dropIndexOnSchemaDrift(jedisPooled);
         return RedisVectorStore.builder(jedisPooled, embeddingModel)
-                .indexName("product-recommendations") // Name of the index for storing vectors.
-                .prefix("product:embedding:") // Prefix for keys in Redis.
-                .metadataFields(
-                        // Metadata fields for storing additional information about embeddings.
-                        RedisVectorStore.MetadataField.tag("category"),
-                        RedisVectorStore.MetadataField.numeric("price"),
-                        RedisVectorStore.MetadataField.numeric("id")
-                )
-                .embeddingFieldName("embedding") // Field name for storing embedding data.
+                .indexName(INDEX_NAME) // Name of the index for storing vectors.
+                .prefix(PREFIX) // Prefix for keys in Redis.
+                .metadataFields(METADATA_FIELDS)
+                .contentFieldName(CONTENT_FIELD) // Field name for storing the document text.
+                .embeddingFieldName(EMBEDDING_FIELD) // Field name for storing embedding data.
+                .initializeSchema(true) // Create the index when it does not exist.
                 .build();
     }
+
+    /**
+     * Drops the index if its fields differ from the declared schema. The documents are kept, and are indexed
+     * again once the store has recreated the index.
+     *
+     * @param jedisPooled The Redis connection pool.
+     * @return True if the index was dropped.
+     */
+    static boolean dropIndexOnSchemaDrift(JedisPooled jedisPooled) {
+        Map<String, Object> info;
+        try {
+            info = jedisPooled.ftInfo(INDEX_NAME);
+        } catch (JedisDataException e) {
+            return false; // No index yet; the store creates it
+        }
+        Map<String, String> expected = new HashMap<>();
+        expected.put(CONTENT_FIELD, Schema.FieldType.TEXT.name());
+        expected.put(EMBEDDING_FIELD, Schema.FieldType.VECTOR.name());
+        for (RedisVectorStore.MetadataField field : METADATA_FIELDS) {
+            expected.put(field.name(), field.fieldType().name());
+        }
+        Map<String, String> actual = indexedFields(info);
+        if (actual.equals(expected)) {
+            return false;
+        }
+        System.err.println("Vector index " + INDEX_NAME + " has fields " + actual + " but " + expected
+                + " are declared; dropping it so it is recreated and re-indexed");
+        jedisPooled.ftDropIndex(INDEX_NAME);
+        return true;
+    }
+
+    /**
+     * Reads the name and type of every field from the FT.INFO reply, whose attributes are flat lists of
+     * alternating property names and values, e.g. [identifier, $.price, attribute, price, type, NUMERIC].
+     *
+     * @param info The FT.INFO reply.
+     * @return The field types by field name.
+     */
+    private static Map<String, String> indexedFields(Map<String, Object> info) {
+        Map<String, String> fields = new HashMap<>();
+        if (!(info.get("attributes") instanceof List<?> attributes)) {
+            return fields;
+        }
+        for (Object attribute : attributes) {
+            if (!(attribute instanceof List<?> properties)) {
+                continue;
+            }
+            String name = null;
+            String type = null;
+            for (int i = 0; i + 1 < properties.size(); i += 2) {
+                String property = String.valueOf(properties.get(i));
+                if (property.equalsIgnoreCase("attribute")) {
+                    name = String.valueOf(properties.get(i + 1));
+                } else if (property.equalsIgnoreCase("type")) {
+                    type = String.valueOf(properties.get(i + 1));
+                }
+            }
+            if (name != null && type != null) {
+                fields.put(name, type);
+            }
+        }
+        return fields;
+    }
 }
\ No newline at end of file
@@ -1,9 +1,16 @@
 package com.products.productservice.controller;
 
+import com.products.productservice.dtos.ChatChunkDto;
+import com.products.productservice.services.SemanticResponseCache;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
 
 /**
  * Controller class for handling chat-related requests.
@@ -13,24 +20,52 @@ import org.springframework.web.bind.annotation.RestController;
 public class ChatController {
 
     private final ChatClient chatClient;
+    private final SemanticResponseCache semanticResponseCache; // Cache of answers to similar questions
+    private final int streamBufferSize; // Chunks buffered for a slow client before the stream is aborted
 
     /**
      * Constructor for ChatController.
      *
-     * @param chatClient The ChatClient instance used to interact with the AI chat service.
+     * @param chatClient            The ChatClient instance used to interact with the AI chat service.
+     * @param semanticResponseCache The cache returning earlier answers to semantically similar messages.
+     * @param streamBufferSize Maximum number of chunks buffered for a client that reads slower than the model generates.
      */
-    public ChatController(ChatClient chatClient) {
+    public ChatController(ChatClient chatClient,
+                          SemanticResponseCache semanticResponseCache,
+                          @Value("${chat.stream.buffer-size:1024}") int streamBufferSize) {
         this.chatClient = chatClient; // Initialize the chat client
+        this.semanticResponseCache = semanticResponseCache;
+        this.streamBufferSize = streamBufferSize;
     }
 
     /**
      * Endpoint to handle chat messages.
+     * Answers to semantically similar earlier messages are served from the semantic cache.
      *
      * @param message The user-provided message to be sent to the AI chat service.
      * @return The AI-generated response content.
      */
     @GetMapping("/chat")
     public String chat(@RequestParam String message) {
-        return chatClient.prompt().user(message).call().content();
+        return semanticResponseCache.getOrGenerate(SemanticResponseCache.CHAT_NAMESPACE, message,
+                () -> chatClient.prompt().user(message).call().content());
     }
-}
\ No newline at end of file
+
+    /**
+     * Endpoint to handle chat messages, streaming the response as server-sent events while it is generated.
+     * Each token arrives as a "message" event whose data is a {@link ChatChunkDto}, followed by a final "done" event.
+     * The request thread is released while the model generates, and a client disconnect cancels the model call.
+     *
+     * @param message The user-provided message to be sent to the AI chat service.
+     * @return The stream of AI-generated response chunks.
+     */
+    @GetMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ChatChunkDto>> chatStream(@RequestParam String message) {
+        Flux<ServerSentEvent<ChatChunkDto>> chunks = chatClient.prompt().user(message).stream().content()
+                // Bound what a slow client can make us hold; the stream fails instead of growing without limit
+                .onBackpressureBuffer(streamBufferSize, BufferOverflowStrategy.ERROR)
+                .map(content -> ServerSentEvent.builder(new ChatChunkDto(content)).event("message").build());
+        // Tell the client the response is complete, so that EventSource does not reconnect
+        return chunks.concatWith(Flux.just(ServerSentEvent.builder(new ChatChunkDto("")).event("done").build()));
+    }
+}
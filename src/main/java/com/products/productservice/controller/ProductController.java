@@ -2,80 +2,133 @@ package com.products.productservice.controller;
 
 import com.products.productservice.dtos.CreateProductRequestDto;
 import com.products.productservice.dtos.ProductResponseDto;
+import com.products.productservice.dtos.ProductVersionDto;
 import com.products.productservice.exception.ProductNotFoundException;
 import com.products.productservice.model.Product;
 import com.products.productservice.services.IProductService;
-import org.springframework.data.redis.core.RedisTemplate;
+import com.products.productservice.services.ProductCacheService;
+import com.products.productservice.services.ProductJsonCache;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 /**
  * REST controller for managing products.
  * Provides endpoints for creating, retrieving, updating, and deleting products.
- * Utilizes caching with Redis for optimized performance.
+ * Utilizes a two-tier cache (local near-cache in front of Redis) for optimized performance,
+ * and serves read endpoints from pre-encoded JSON fragments.
  */
 @RestController
 @RequestMapping("/products")
 public class ProductController {
 
+    /**
+     * Response header carrying the cursor for the next page of products.
+     */
+    static final String NEXT_CURSOR_HEADER = "X-Next-After-Id";
+
+    /**
+     * Upper bound on the page size accepted by the product listing.
+     */
+    static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Media type of newline-delimited JSON.
+     */
+    static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final IProductService productService;
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final ProductCacheService productCacheService;
+    private final ProductJsonCache productJsonCache;
 
     /**
      * Constructor for ProductController.
      *
-     * @param productService The service for handling product-related operations.
-     * @param redisTemplate  The Redis template for caching product data.
+     * @param productService      The service for handling product-related operations.
+     * @param productCacheService The two-tier cache for product data.
+     * @param productJsonCache    The cache of pre-encoded product JSON.
      */
-    ProductController(IProductService productService, RedisTemplate<String, Object> redisTemplate) {
-        this.redisTemplate = redisTemplate;
+    ProductController(IProductService productService, ProductCacheService productCacheService,
+                      ProductJsonCache productJsonCache) {
+        this.productCacheService = productCacheService;
         this.productService = productService;
+        this.productJsonCache = productJsonCache;
     }
 
     /**
      * Retrieves a product by its ID.
-     * If the product is not found in the cache, it fetches it from the database and caches it.
+     * The product is served from the near-cache, then Redis, and finally the database, caching it on the way back.
      *
      * @param id The ID of the product to retrieve.
-     * @return A ResponseEntity containing the ProductResponseDto and HTTP status.
+     * @return A ResponseEntity containing the ProductResponseDto as pre-encoded JSON and HTTP status.
      * @throws ProductNotFoundException If the product is not found.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<ProductResponseDto> getProductById(
+    public ResponseEntity<byte[]> getProductById(
             @PathVariable("id") long id) throws ProductNotFoundException {
-        // Attempt to retrieve the product from the cache
-        Product product = (Product) redisTemplate.opsForHash().get("PRODUCTMAP", "PRODUCT_" + id);
-        if (product == null) {
-            // Fetch the product from the database if not found in the cache
-            product = productService.getProductById(id);
-            // Cache the product
-            redisTemplate.opsForHash().put("PRODUCTMAP", "PRODUCT_" + id, product);
-        }
-        // Convert the product entity to a response DTO
-        ProductResponseDto productResponseDto = ProductResponseDto.fromEntity(product);
-        return new ResponseEntity<>(productResponseDto, HttpStatus.OK);
+        // Retrieve the product through the cache tiers, loading it from the database on a miss
+        Product product = productCacheService.getProduct(id, productService::getProductById);
+        // Serve the cached JSON encoding of the product's response DTO
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(productJsonCache.toJson(product));
     }
 
     /**
-     * Retrieves all products.
+     * Retrieves a page of products ordered by ID, using keyset pagination.
+     * Only products whose cached JSON is missing or outdated are loaded from the database.
+     * When more products may follow, the ID to pass as afterId for the next page is returned in the
+     * X-Next-After-Id header.
      *
-     * @return A ResponseEntity containing a list of ProductResponseDto and HTTP status.
+     * @param afterId The ID after which the page starts (exclusive); 0 for the first page.
+     * @param limit   The maximum number of products to return, capped at 1000.
+     * @return A ResponseEntity containing a list of ProductResponseDto as pre-encoded JSON and HTTP status.
      */
     @GetMapping()
-    public ResponseEntity<List<ProductResponseDto>> getAllProducts() {
-        // Fetch all products from the service
-        List<Product> productList = productService.getAllProducts();
-        // Convert the list of products to a list of response DTOs
-        List<ProductResponseDto> productResponseDtos = new ArrayList<>();
-        for (Product product : productList) {
-            ProductResponseDto productResponseDto = ProductResponseDto.fromEntity(product);
-            productResponseDtos.add(productResponseDto);
+    public ResponseEntity<byte[]> getAllProducts(@RequestParam(defaultValue = "0") long afterId,
+                                                 @RequestParam(defaultValue = "100") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        // Fetch the IDs and versions of the page, then splice in their cached JSON
+        List<ProductVersionDto> versions = productService.getProductVersionsAfter(afterId, pageSize);
+        byte[] body = productJsonCache.toJsonArray(versions, productService::getProductsByIds);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+        if (versions.size() == pageSize) {
+            // A full page means there may be more products after the last one
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(versions.get(versions.size() - 1).getId()));
         }
-        return new ResponseEntity<>(productResponseDtos, HttpStatus.OK);
+        return response.body(body);
+    }
+
+    /**
+     * Streams every product as newline-delimited JSON, one ProductResponseDto per line.
+     * Products are read from a database cursor and written as they arrive, so memory use does not
+     * depend on the size of the catalogue.
+     * Products are encoded without being added to the JSON cache, which only holds the hot set.
+     *
+     * @return A ResponseEntity streaming the products and HTTP status.
+     */
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllProducts() {
+        StreamingResponseBody body = outputStream -> productService.streamAllProducts(product -> {
+            try {
+                outputStream.write(productJsonCache.toJsonUncached(product));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                // Typically the client disconnected; abort the cursor
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_NDJSON)
+                .body(body);
     }
 
     /**
@@ -1,14 +1,16 @@
 package com.products.productservice.controller;
 
-import com.products.productservice.dtos.ProductResponseDto;
 import com.products.productservice.exception.ProductNotFoundException;
 import com.products.productservice.model.Product;
+import com.products.productservice.services.ProductJsonCache;
 import com.products.productservice.services.RecommendationService;
+import com.products.productservice.services.ScoredProduct;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -19,36 +21,53 @@ import java.util.List;
 public class RecommendationController {
 
     private final RecommendationService recommendationService;
+    private final ProductJsonCache productJsonCache;
 
     /**
      * Constructor for RecommendationController.
      *
      * @param recommendationService The service used to fetch product recommendations.
+     * @param productJsonCache      The cache of pre-encoded product JSON.
      */
-    public RecommendationController(RecommendationService recommendationService) {
+    public RecommendationController(RecommendationService recommendationService, ProductJsonCache productJsonCache) {
         this.recommendationService = recommendationService;
+        this.productJsonCache = productJsonCache;
     }
 
     /**
      * Endpoint to retrieve product recommendations for a given product ID.
      *
      * @param productId The ID of the product for which recommendations are requested.
-     * @return A list of ProductResponseDto objects containing recommended product details.
+     * @return A list of ProductResponseDto objects containing recommended product details, most relevant first,
+     * as pre-encoded JSON.
      * @throws ProductNotFoundException If the product with the given ID is not found.
      */
     @GetMapping("/recommendations/{productId}")
-    public List<ProductResponseDto> getRecommendations(@PathVariable("productId") long productId) throws ProductNotFoundException {
+    public ResponseEntity<byte[]> getRecommendations(@PathVariable("productId") long productId) throws ProductNotFoundException {
         // Fetch hybrid recommendations from the service.
-        List<Product> products = recommendationService.getHybridRecommendations(productId);
+        List<Product> products = recommendationService.getHybridRecommendations(productId).stream()
+                .map(ScoredProduct::product)
+                .toList();
 
-        // Convert Product entities to ProductResponseDto objects.
-        List<ProductResponseDto> productResponseDtos = new ArrayList<>();
-        for (Product product : products) {
-            ProductResponseDto productResponseDto = ProductResponseDto.fromEntity(product);
-            productResponseDtos.add(productResponseDto);
-        }
+        // Return the cached JSON encoding of the recommended products.
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(productJsonCache.toJsonArray(products));
+    }
 
-        // Return the list of recommended products.
-        return productResponseDtos;
+    /**
+     * Endpoint to retrieve product recommendations for a given product ID together with their relevance scores.
+     *
+     * @param productId The ID of the product for which recommendations are requested.
+     * @return A list of objects holding the score and the ProductResponseDto of each recommended product,
+     * highest score first, as pre-encoded JSON.
+     * @throws ProductNotFoundException If the product with the given ID is not found.
+     */
+    @GetMapping("/recommendations/{productId}/scored")
+    public ResponseEntity<byte[]> getScoredRecommendations(@PathVariable("productId") long productId) throws ProductNotFoundException {
+        List<ScoredProduct> products = recommendationService.getHybridRecommendations(productId);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(productJsonCache.toScoredJsonArray(products));
     }
-}
\ No newline at end of file
+}
@@ -1,58 +1,84 @@
 package com.products.productservice.controller;
 
-import com.products.productservice.dtos.ProductResponseDto;
-import com.products.productservice.model.Product;
+import com.products.productservice.services.IProductService;
 import com.products.productservice.services.ISearchService;
-import org.springframework.data.domain.Page;
+import com.products.productservice.services.ProductJsonCache;
+import com.products.productservice.services.SearchResults;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.ArrayList;
-import java.util.List;
-
 @RestController
 public class SearchController {
 
+    /**
+     * Response header carrying the cursor for the next page of search results.
+     */
+    static final String NEXT_CURSOR_HEADER = "X-Next-Search-Cursor";
+
     // Service for handling search operations
     ISearchService searchService;
 
+    // Service for loading products whose cached JSON is missing or outdated
+    IProductService productService;
+
+    // Cache of pre-encoded product JSON
+    ProductJsonCache productJsonCache;
+
     /**
      * Constructor for SearchController.
      *
-     * @param searchService The search service used to perform product searches.
+     * @param searchService    The search service used to perform product searches.
+     * @param productService   The product service used to load products missing from the JSON cache.
+     * @param productJsonCache The cache of pre-encoded product JSON.
      */
-    public SearchController(ISearchService searchService) {
+    public SearchController(ISearchService searchService, IProductService productService,
+                            ProductJsonCache productJsonCache) {
         this.searchService = searchService; // Initialize the search service
+        this.productService = productService; // Initialize the product service
+        this.productJsonCache = productJsonCache; // Initialize the JSON cache
     }
 
     /**
      * Handles GET requests to perform a product search.
+     * With a page number, the page at that offset is returned. Without one, results are paged through a cursor:
+     * when more results may follow, the cursor to pass for the next page is returned in the X-Next-Search-Cursor
+     * header. Cursor pages cost the same however deep they are, and neither mode counts the total matches.
+     * A cursor is only valid until the catalogue next changes: relevance scores depend on the whole catalogue, so
+     * continuing from a position scored before a product write could skip or repeat products. Such a cursor is
+     * rejected with 400 and the search must be started again from the first page.
      *
      * @param query      The search query string.
-     * @param pageNumber The page number for pagination.
-     * @param pageSize   The number of items per page for pagination.
-     * @param sortParam  The parameter by which the results should be sorted.
-     * @return A list of ProductResponseDto containing the search results.
+     * @param pageNumber The page number for offset pagination; omit to use cursor pagination.
+     * @param pageSize   The number of items per page for pagination, capped at 1000 for cursor pagination.
+     * @param sortParam  The order of the results: relevance (default), price, createdAt or name; cursor
+     *                   pagination supports relevance only. Other values are rejected with 400.
+     * @param cursor     The cursor returned with the previous page; omit for the first page.
+     * @return A list of ProductResponseDto containing the search results, as pre-encoded JSON.
      */
     @GetMapping("/search")
-    public List<ProductResponseDto> search(@RequestParam String query,
-                                           @RequestParam int pageNumber,
+    public ResponseEntity<byte[]> search(@RequestParam String query,
+                                           @RequestParam(required = false) Integer pageNumber,
                                            @RequestParam int pageSize,
-                                           @RequestParam String sortParam) {
-        // Perform the search using the search service
-        Page<Product> productPage = searchService.search(query, pageNumber, pageSize, sortParam);
-
-        // Initialize a list to hold the response DTOs
-        List<ProductResponseDto> productResponseDtos = new ArrayList<>();
-        // Get the list of products from the search result
-        List<Product> products = productPage.getContent();
-
-        // Convert each Product entity to a ProductResponseDto
-        for (Product product : products) {
-            ProductResponseDto productResponseDto = ProductResponseDto.fromEntity(product);
-            productResponseDtos.add(productResponseDto); // Add the DTO to the response list
+                                           @RequestParam(required = false) String sortParam,
+                                           @RequestParam(required = false) String cursor) {
+        if (pageNumber == null) {
+            // Fetch the IDs and versions of the page, then splice in their cached JSON
+            SearchResults results = searchService.searchAfter(query, cursor,
+                    Math.max(1, Math.min(pageSize, ProductController.MAX_PAGE_SIZE)), sortParam);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+            if (results.nextCursor() != null) {
+                response.header(NEXT_CURSOR_HEADER, results.nextCursor());
+            }
+            return response.body(productJsonCache.toJsonArray(results.products(), productService::getProductsByIds));
         }
 
-        // Return the list of ProductResponseDto
-        return productResponseDtos;
+        // Perform the search using the search service
+        SearchResults results = searchService.search(query, pageNumber, pageSize, sortParam);
+
+        // Return the cached JSON encoding of each product on the page
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(productJsonCache.toJsonArray(results.products(), productService::getProductsByIds));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,20 @@
+package com.products.productservice.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object (DTO) carrying one piece of a streamed chat response.
+ * Tokens are wrapped in JSON so that leading whitespace and line breaks survive server-sent event framing.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChatChunkDto {
+
+    /**
+     * The text generated since the previous chunk.
+     */
+    private String content;
+}
@@ -44,6 +44,11 @@ public class ProductResponseDto {
      */
     private String category;
 
+    /**
+     * The state of the AI enrichment of the product (e.g., "PENDING", "COMPLETED").
+     */
+    private String enrichmentStatus;
+
     /**
      * Converts a Product entity to a ProductResponseDto.
      *
@@ -59,6 +64,9 @@ public class ProductResponseDto {
         productResponseDto.setImageUrl(product.getImageUrl());
         productResponseDto.setPrice(product.getPrice());
         productResponseDto.setCategory(product.getCategory().getName());
+        if (product.getEnrichmentStatus() != null) {
+            productResponseDto.setEnrichmentStatus(product.getEnrichmentStatus().name());
+        }
         return productResponseDto;
     }
 }
\ No newline at end of file
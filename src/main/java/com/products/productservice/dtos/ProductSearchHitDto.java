@@ -0,0 +1,30 @@
+package com.products.productservice.dtos;
+
+import java.util.Date;
+
+/**
+ * Projection of a product matching a full-text search: its identity, version and relevance.
+ * Lets the search seek past the last hit of a page and serve the products from cache.
+ */
+public interface ProductSearchHitDto {
+
+    /**
+     * @return The unique identifier of the product.
+     */
+    long getId();
+
+    /**
+     * @return The timestamp when the product was last modified, used as its version.
+     */
+    Date getLastModified();
+
+    /**
+     * @return The timestamp when the product's category was last modified, used as the version of its name.
+     */
+    Date getCategoryLastModified();
+
+    /**
+     * @return The relevance of the product to the search terms; higher is more relevant.
+     */
+    double getScore();
+}
@@ -0,0 +1,32 @@
+package com.products.productservice.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * Data Transfer Object (DTO) holding the identity and version of a product and its category.
+ * Lets list endpoints decide which products they can serve from cache without loading the entities.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductVersionDto {
+
+    /**
+     * The unique identifier of the product.
+     */
+    private long id;
+
+    /**
+     * The timestamp when the product was last modified, used as its version.
+     */
+    private Date lastModified;
+
+    /**
+     * The timestamp when the product's category was last modified, used as the version of the category name.
+     */
+    private Date categoryLastModified;
+}
@@ -0,0 +1,61 @@
+package com.products.productservice.events;
+
+import com.products.productservice.model.Product;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Date;
+
+/**
+ * Application event published whenever a product is created, updated or deleted.
+ * Listeners use it to keep caches and derived indexes coherent with the database.
+ */
+@Getter
+@AllArgsConstructor
+public class ProductChangedEvent {
+
+    /**
+     * The ID of the changed product.
+     */
+    private final long productId;
+
+    /**
+     * The product as persisted after the change, or null if the product was deleted.
+     */
+    private final Product product;
+
+    /**
+     * The time of the change, used as the version of the product.
+     */
+    private final Date changedAt;
+
+    /**
+     * Creates an event for a product that was created or updated.
+     *
+     * @param product The persisted product.
+     * @return A ProductChangedEvent for the product.
+     */
+    public static ProductChangedEvent saved(Product product) {
+        return new ProductChangedEvent(product.getId(), product, product.getLastModified());
+    }
+
+    /**
+     * Creates an event for a product that was deleted.
+     *
+     * @param productId The ID of the deleted product.
+     * @param deletedAt The time of deletion.
+     * @return A ProductChangedEvent for the deletion.
+     */
+    public static ProductChangedEvent deleted(long productId, Date deletedAt) {
+        return new ProductChangedEvent(productId, null, deletedAt);
+    }
+
+    /**
+     * Indicates whether the product was deleted.
+     *
+     * @return true if this event describes a deletion.
+     */
+    public boolean isDeleted() {
+        return product == null;
+    }
+}
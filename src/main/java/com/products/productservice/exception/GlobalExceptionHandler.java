@@ -41,4 +41,18 @@ public class GlobalExceptionHandler {
         errorDto.setStatus("Failure..");
         return new ResponseEntity<>(errorDto, HttpStatus.NOT_FOUND);
     }
-}
\ No newline at end of file
+
+    /**
+     * Handles InvalidSearchRequestException and returns a standardized error response.
+     *
+     * @param e The InvalidSearchRequestException instance containing error details.
+     * @return A ResponseEntity containing an ErrorDto with error details and HTTP status 400.
+     */
+    @ExceptionHandler(InvalidSearchRequestException.class)
+    public ResponseEntity<ErrorDto> handleInvalidSearchRequestException(InvalidSearchRequestException e) {
+        ErrorDto errorDto = new ErrorDto();
+        errorDto.setMessage(e.getMessage());
+        errorDto.setStatus("Failure..");
+        return new ResponseEntity<>(errorDto, HttpStatus.BAD_REQUEST);
+    }
+}
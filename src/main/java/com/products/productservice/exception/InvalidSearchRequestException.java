@@ -0,0 +1,17 @@
+package com.products.productservice.exception;
+
+/**
+ * Custom exception class to handle search requests with invalid parameters, such as a malformed cursor.
+ * Unchecked, since it reports a client error rather than a condition callers can recover from.
+ */
+public class InvalidSearchRequestException extends RuntimeException {
+
+    /**
+     * Constructs a new InvalidSearchRequestException with the specified detail message.
+     *
+     * @param message The detail message explaining which parameter is invalid.
+     */
+    public InvalidSearchRequestException(String message) {
+        super(message);
+    }
+}
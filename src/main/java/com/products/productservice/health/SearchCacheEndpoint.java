@@ -0,0 +1,45 @@
+package com.products.productservice.health;
+
+import com.products.productservice.services.SearchResultCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Actuator endpoint reporting the search result cache hit rate of each popular query, as "searchcache".
+ * Per-query figures are kept out of the metrics, where every query would become a separate time series.
+ * The report contains raw user queries, so the endpoint is exposed over JMX only; it must not be added to the
+ * web exposure unless the actuator is secured.
+ */
+@Component
+@Endpoint(id = "searchcache")
+public class SearchCacheEndpoint {
+
+    private final SearchResultCache searchResultCache; // Cache tracking the per-query hit rates
+    private final int reportedQueries;                 // Number of queries reported
+
+    /**
+     * Constructor for SearchCacheEndpoint.
+     *
+     * @param searchResultCache The search result cache.
+     * @param reportedQueries   The number of most searched queries reported.
+     */
+    public SearchCacheEndpoint(SearchResultCache searchResultCache,
+                               @Value("${search.cache.reported-queries:100}") int reportedQueries) {
+        this.searchResultCache = searchResultCache;
+        this.reportedQueries = reportedQueries;
+    }
+
+    /**
+     * Reports the hit rates of the most searched queries.
+     *
+     * @return The hit rates, most searched first.
+     */
+    @ReadOperation
+    public List<SearchResultCache.QueryHitRate> hitRates() {
+        return searchResultCache.getQueryHitRates(reportedQueries);
+    }
+}
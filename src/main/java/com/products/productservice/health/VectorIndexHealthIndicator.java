@@ -0,0 +1,45 @@
+package com.products.productservice.health;
+
+import com.products.productservice.services.ProductSyncRecommendationService;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * Health indicator reporting the freshness of the product embedding index as "vectorIndex".
+ * A warm index is UP. A stale or still-building index is reported as STALE, which is mapped to HTTP 200,
+ * so the application stays ready and serves recommendations while the index catches up in the background.
+ */
+@Component("vectorIndex")
+public class VectorIndexHealthIndicator implements HealthIndicator {
+
+    public static final Status STALE = new Status("STALE", "Serving recommendations from a stale or incomplete index");
+
+    private final ProductSyncRecommendationService syncService; // Service maintaining the index
+
+    /**
+     * Constructor for VectorIndexHealthIndicator.
+     *
+     * @param syncService The service synchronizing products into the embedding index.
+     */
+    public VectorIndexHealthIndicator(ProductSyncRecommendationService syncService) {
+        this.syncService = syncService;
+    }
+
+    /**
+     * Reports the index state, together with the time of the last successful sync.
+     *
+     * @return The health of the embedding index.
+     */
+    @Override
+    public Health health() {
+        ProductSyncRecommendationService.IndexState state = syncService.getIndexState();
+        Health.Builder builder = state == ProductSyncRecommendationService.IndexState.WARM ? Health.up() : Health.status(STALE);
+        builder.withDetail("state", state);
+        if (syncService.getLastSyncedAt() != null) {
+            builder.withDetail("lastSyncedAt", syncService.getLastSyncedAt().toString());
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,64 @@
+package com.products.productservice.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Versioned cache entry for a Product.
+ * The version is the product's lastModified timestamp, which lets writers refuse to replace a newer entry
+ * with an older one. An entry without a product is a tombstone for a deleted product.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CachedProduct implements Serializable {
+
+    /**
+     * The version of the cached product, in epoch milliseconds of its lastModified timestamp.
+     */
+    private long version;
+
+    /**
+     * The cached product, or null if the product has been deleted.
+     */
+    private Product product;
+
+    /**
+     * Creates a cache entry for a product, versioned by its lastModified timestamp.
+     *
+     * @param product The product to cache.
+     * @return A CachedProduct wrapping the product.
+     */
+    public static CachedProduct of(Product product) {
+        return new CachedProduct(versionOf(product.getLastModified()), product);
+    }
+
+    /**
+     * Creates a tombstone entry for a deleted product.
+     *
+     * @param deletedAt The time at which the product was deleted.
+     * @return A CachedProduct without a product.
+     */
+    public static CachedProduct tombstone(Date deletedAt) {
+        return new CachedProduct(versionOf(deletedAt), null);
+    }
+
+    /**
+     * Indicates whether this entry marks a deleted product.
+     *
+     * @return true if the entry is a tombstone.
+     */
+    @JsonIgnore // Derived from the product; not a property of the JSON cache format
+    public boolean isTombstone() {
+        return product == null;
+    }
+
+    private static long versionOf(Date lastModified) {
+        return lastModified == null ? 0L : lastModified.getTime();
+    }
+}
@@ -4,8 +4,6 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Entity;
 import jakarta.persistence.OneToMany;
 import lombok.Data;
-import org.hibernate.annotations.Fetch;
-import org.hibernate.annotations.FetchMode;
 
 import java.io.Serializable;
 import java.util.List;
@@ -29,11 +27,10 @@ public class Category extends BaseModel implements Serializable {
      * The list of products associated with this category.
      * This is a one-to-many relationship, where a category can have multiple products.
      * - Mapped by the 'category' field in the Product entity.
-     * - Fetched eagerly using JOIN fetch mode to optimize performance.
+     * - Fetched lazily, so loading a product's category never pulls in every product of that category.
      * - Ignored during JSON serialization to prevent circular references.
      */
     @OneToMany(mappedBy = "category")
-    @Fetch(FetchMode.JOIN)
     @JsonIgnore
     private List<Product> products;
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package com.products.productservice.model;
+
+/**
+ * Enum representing the state of the AI enrichment of a product.
+ * Products saved without an image or description are enriched asynchronously by AI generation.
+ */
+public enum EnrichmentStatus {
+
+    /**
+     * The product was saved with all content; nothing needs to be generated.
+     */
+    NOT_REQUIRED,
+
+    /**
+     * The product is waiting for its missing image and/or description to be generated.
+     */
+    PENDING,
+
+    /**
+     * A worker has claimed the product and is generating its content.
+     */
+    IN_PROGRESS,
+
+    /**
+     * Generation finished and the missing content was stored.
+     */
+    COMPLETED,
+
+    /**
+     * The last generation attempt failed; it is retried until the attempt limit is reached.
+     */
+    FAILED
+}
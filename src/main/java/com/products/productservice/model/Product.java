@@ -6,6 +6,7 @@ import jakarta.persistence.ManyToOne;
 import lombok.Data;
 
 import java.io.Serializable;
+import java.util.Date;
 
 /**
  * Entity class representing a Product.
@@ -47,4 +48,30 @@ public class Product extends BaseModel implements Serializable {
      */
     @ManyToOne
     private Category category;
-}
\ No newline at end of file
+
+    /**
+     * The state of the asynchronous AI enrichment of the product.
+     * Pending while a missing image or description is still being generated.
+     */
+    @Enumerated(EnumType.STRING)
+    private EnrichmentStatus enrichmentStatus;
+
+    /**
+     * The number of enrichment attempts made so far, used to bound retries.
+     */
+    private int enrichmentAttempts;
+
+    /**
+     * The time at which a worker last claimed the product for enrichment.
+     * Used to detect and retry enrichments abandoned by a crashed worker.
+     */
+    private Date enrichmentClaimedAt;
+
+    /**
+     * Random token identifying the current enrichment claim.
+     * Only the job holding the latest claim may store its results or release the claim, so a job that was
+     * superseded, e.g. because the product was edited and claimed again, cannot write stale content.
+     */
+    @Column(length = 36)
+    private String enrichmentClaimToken;
+}
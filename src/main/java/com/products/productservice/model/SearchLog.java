@@ -20,6 +20,7 @@ public class SearchLog extends BaseModel {
     /**
      * The page number of the search results.
      * Indicates which page of results the user is viewing.
+     * 0 for the first page of a cursor search, and -1 for the pages that follow it.
      */
     private int pageNumber;
 
@@ -31,7 +32,8 @@ public class SearchLog extends BaseModel {
 
     /**
      * The parameter used to sort the search results.
-     * Example values could include "name", "price", or "date".
+     * One of the {@link com.products.productservice.services.SearchSort} parameters: "relevance", "price",
+     * "createdAt" or "name".
      */
     private String sortParam;
 }
\ No newline at end of file
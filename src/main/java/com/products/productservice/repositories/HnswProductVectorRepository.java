@@ -0,0 +1,1156 @@
+package com.products.productservice.repositories;
+
+import com.products.productservice.model.Product;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process implementation of {@link IProductVectorRepository}: an HNSW (hierarchical navigable small world)
+ * graph over the product embeddings, answering nearest-neighbour queries without a network round trip.
+ * Selected with {@code product.vector-store.type=hnsw}.
+ * <p>
+ * Embeddings are normalized and kept off-heap, so cosine distance is one dot product. Neighbours are selected with
+ * the diversity heuristic of the HNSW paper. Query latency and a sampled recall against an exact scan are published.
+ * Deleted and replaced products are tombstoned: they keep routing searches but are never returned, and the graph
+ * is rebuilt without them once they make up a quarter of the nodes. Selective filters are answered by an exact scan
+ * of the matching products; other filters are checked while the graph is searched, widening the search until
+ * enough products match.
+ * <p>
+ * The graph can also be searched with INT8 or binary codes, re-ranking the nearest candidates with the full vectors
+ * read from the mapped snapshot. This is not offered as a setting: on the benchmark neither mode searched faster
+ * than float vectors, and binary codes lost a third of the recall, so they only trade recall for memory.
+ * <p>
+ * The index is private to this process. It is written to a snapshot file periodically and on shutdown, and read
+ * back on startup. The sync state and the description hash of every node are saved in the same snapshot,
+ * so after a crash the sync resumes from the state the snapshot was taken with.
+ * <p>
+ * This is an alternative backend of the application's own {@link IProductVectorRepository}, not a Spring AI
+ * {@code VectorStore}. It takes the vector queries off Redis but not the application off Redis, which still holds
+ * the product caches, the job leases and the set of products with stale recommendations. A search saves the network
+ * round trip rather than running in microseconds: it costs in the order of a millisecond, growing with the
+ * dimensions and ef (see HnswProductVectorRepositoryBenchmark).
+ * <p>
+ * Without quantization every product takes 4 bytes per dimension off-heap (6 KB for text-embedding-3-small),
+ * plus its description and fields on the heap; the snapshot holds the same and the full vectors. Vectors are kept
+ * in chunks and the snapshot is mapped in regions, so the index is bounded by memory and disk rather than by the
+ * 2 GB a single buffer or mapping can hold.
+ */
+@Repository
+@ConditionalOnProperty(name = "product.vector-store.type", havingValue = "hnsw")
+public class HnswProductVectorRepository implements IProductVectorRepository {
+
+    private static final int SNAPSHOT_MAGIC = 0x484E5357; // "HNSW"
+    private static final int SNAPSHOT_VERSION = 3;        // Version 3 added the description hash of each node
+    private static final double COMPACTION_RATIO = 0.25;  // Share of tombstoned nodes that triggers a rebuild
+    private static final int MAX_LEVEL = 16;              // Cap on the number of graph layers
+    private static final int RECALL_SCAN_CHUNK = 1024;    // Nodes whose vectors recall sampling copies per read lock
+    private static final int MAX_FILTER_WIDENING = 16;    // Growth of the candidate list before filtered searches scan
+
+    private final EmbeddingModel embeddingModel;  // Model used to embed text queries
+    private final Path snapshotPath;              // File the index is persisted to
+    private final int maxConnections;             // Links per node on the upper layers; twice as many on layer 0
+    private final int efConstruction;             // Candidate list size when inserting
+    private final int efSearch;                   // Minimum candidate list size when searching
+    private final VectorQuantization quantization; // Encoding of the vectors the graph is searched with
+    private final int rerankFactor;               // Candidates re-ranked with the full vectors, per result
+    private final double recallSampleRate;        // Share of queries whose recall is measured
+    private final Timer queryTimer;               // Latency of vector searches
+    private final DistributionSummary recall;     // Share of the exact nearest products found by sampled searches
+    private final ThreadPoolExecutor recallSampler; // Single thread running the exact scans, dropping samples when busy
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(); // Searches share, writes exclude
+    private final Map<String, String> syncState = new HashMap<>(); // Sync state, persisted with the graph
+    private Graph graph;                          // Current graph, replaced on compaction
+    private long modifications;                   // Number of writes since startup
+    private long persistedModifications;          // Number of writes included in the last snapshot
+
+    /**
+     * Constructor for HnswProductVectorRepository, searching with float vectors. Loads the snapshot if one exists.
+     *
+     * @param embeddingModel The embedding model used for text queries.
+     * @param meterRegistry  The registry where the index size is published.
+     * @param snapshotPath   The file the index is persisted to.
+     * @param maxConnections The number of links per node on the upper layers.
+     * @param efConstruction The candidate list size used when inserting.
+     * @param efSearch       The minimum candidate list size used when searching.
+     * @param recallSampleRate The share of queries whose recall is measured against an exact scan.
+     */
+    @Autowired
+    public HnswProductVectorRepository(@Qualifier("openAiEmbeddingModel") EmbeddingModel embeddingModel,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${product.vector-store.hnsw.snapshot-path:data/product-vectors.hnsw}") Path snapshotPath,
+                                       @Value("${product.vector-store.hnsw.max-connections:16}") int maxConnections,
+                                       @Value("${product.vector-store.hnsw.ef-construction:200}") int efConstruction,
+                                       @Value("${product.vector-store.hnsw.ef-search:64}") int efSearch,
+                                       @Value("${product.vector-store.hnsw.recall-sample-rate:0.01}") double recallSampleRate) {
+        this(embeddingModel, meterRegistry, snapshotPath, maxConnections, efConstruction, efSearch,
+                VectorQuantization.NONE, 1, recallSampleRate);
+    }
+
+    /**
+     * Constructor for HnswProductVectorRepository with a quantization, used by the tests and the benchmark.
+     *
+     * @param quantization The encoding of the vectors the graph is searched with.
+     * @param rerankFactor The number of candidates re-ranked with the full vectors per requested result.
+     * @see #HnswProductVectorRepository(EmbeddingModel, MeterRegistry, Path, int, int, int, double)
+     */
+    HnswProductVectorRepository(EmbeddingModel embeddingModel, MeterRegistry meterRegistry, Path snapshotPath,
+                                int maxConnections, int efConstruction, int efSearch, VectorQuantization quantization,
+                                int rerankFactor, double recallSampleRate) {
+        this.embeddingModel = embeddingModel;
+        this.snapshotPath = snapshotPath;
+        this.maxConnections = maxConnections;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.quantization = quantization;
+        this.rerankFactor = Math.max(1, rerankFactor);
+        this.recallSampleRate = recallSampleRate;
+        this.queryTimer = Timer.builder("product.vector.hnsw.query")
+                .tag("quantization", quantization.name())
+                .register(meterRegistry);
+        this.recall = DistributionSummary.builder("product.vector.hnsw.recall")
+                .tag("quantization", quantization.name())
+                .register(meterRegistry);
+        this.recallSampler = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1),
+                Thread.ofPlatform().name("hnsw-recall").daemon().factory(), new ThreadPoolExecutor.DiscardPolicy());
+        this.graph = new Graph(0, maxConnections, efConstruction, quantization);
+        if (Files.exists(snapshotPath)) {
+            try {
+                load();
+            } catch (IOException | RuntimeException e) {
+                // Start empty; the sync rebuilds the index since the sync state is gone as well
+                System.err.println("Could not load vector index snapshot " + snapshotPath + ": " + e.getMessage());
+                graph = new Graph(0, maxConnections, efConstruction, quantization);
+                syncState.clear();
+            }
+        }
+        meterRegistry.gauge("product.vector.hnsw.documents", this, repository -> repository.documentCount());
+        meterRegistry.gauge("product.vector.hnsw.vector.bytes-per-document", this, repository -> repository.bytesPerVector());
+    }
+
+    /**
+     * Returns the stored, normalized embedding of a product.
+     *
+     * @param productId The ID of the product.
+     * @return The embedding, or empty if the product has not been indexed.
+     */
+    @Override
+    public Optional<float[]> findEmbeddingByProductId(long productId) {
+        lock.readLock().lock();
+        try {
+            Integer node = graph.nodeByProductId.get(productId);
+            return node == null ? Optional.empty() : Optional.of(graph.vector(node));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the stored, normalized embeddings of several products.
+     *
+     * @param productIds The IDs of the products.
+     * @return The embeddings by product ID; products that have not been indexed are omitted.
+     */
+    @Override
+    public Map<Long, float[]> findEmbeddingsByProductIds(Collection<Long> productIds) {
+        Map<Long, float[]> embeddings = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            for (Long productId : productIds) {
+                Integer node = graph.nodeByProductId.get(productId);
+                if (node != null) {
+                    embeddings.put(productId, graph.vector(node));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return embeddings;
+    }
+
+    /**
+     * Searches the graph for the products matching a filter that are nearest to a vector.
+     * A filter matching fewer products than {@code MAX_FILTER_WIDENING} times the candidate list size is answered
+     * by comparing the query with the full vector of each of them, which is exact and cheaper than walking the graph
+     * for them. For other filters the candidate list is widened until enough products match, up to that size, after
+     * which the matching products are compared with the query as well.
+     * With quantization, {@code rerankFactor} times topK matches are collected with approximate distances and the
+     * closest topK by full-vector distance are returned.
+     *
+     * @param embedding The query vector.
+     * @param topK      The maximum number of products to return.
+     * @param filter    The filter the products must match.
+     * @return The nearest matching product documents, closest first.
+     */
+    @Override
+    public List<Document> findNearest(float[] embedding, int topK, VectorSearchFilter filter) {
+        float[] query = normalize(embedding);
+        long start = System.nanoTime();
+        Graph searched;
+        List<Candidate> matches;
+        List<Document> documents;
+        lock.readLock().lock();
+        try {
+            searched = graph;
+            if (searched.entryPoint < 0 || topK <= 0) {
+                return List.of();
+            }
+            boolean reranks = searched.vectors.reranks();
+            int wanted = reranks ? topK * rerankFactor : topK;
+            int ef = Math.max(efSearch, wanted);
+            int maxEf = ef * MAX_FILTER_WIDENING;
+            // A search of maxEf candidates compares the query with more nodes than a selective filter matches
+            int[] filtered = filter.equals(VectorSearchFilter.NONE) ? null : searched.matching(filter, maxEf);
+            boolean scanned = filtered != null;
+            if (scanned) {
+                matches = searched.scan(query, topK, filtered);
+            } else {
+                while (true) {
+                    matches = new ArrayList<>(wanted);
+                    for (Candidate candidate : searched.search(query, ef)) {
+                        if (!searched.deleted.get(candidate.node()) && searched.matches(candidate.node(), filter)) {
+                            matches.add(candidate);
+                            if (matches.size() == wanted) {
+                                break;
+                            }
+                        }
+                    }
+                    if (matches.size() == wanted || ef >= searched.size) {
+                        break;
+                    }
+                    if (ef >= maxEf) {
+                        // The matching products are far from the query; compare it with all of them
+                        matches = searched.scan(query, topK, searched.matching(filter, Integer.MAX_VALUE));
+                        scanned = true;
+                        break;
+                    }
+                    ef = (int) Math.min(maxEf, ef * 4L); // Selective filter; look further
+                }
+            }
+
+            if (reranks && !scanned) {
+                List<Candidate> reranked = new ArrayList<>(matches.size());
+                for (Candidate match : matches) {
+                    reranked.add(new Candidate(match.node(), searched.vectors.exactDistance(query, match.node())));
+                }
+                reranked.sort(Comparator.comparingDouble(Candidate::distance));
+                matches = reranked.subList(0, Math.min(topK, reranked.size()));
+            }
+
+            documents = new ArrayList<>(matches.size());
+            for (Candidate match : matches) {
+                documents.add(searched.toDocument(match));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        queryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (ThreadLocalRandom.current().nextDouble() < recallSampleRate) {
+            List<Integer> found = matches.stream().map(Candidate::node).toList();
+            recallSampler.execute(() -> sampleRecall(searched, query, topK, filter, found));
+        }
+        return documents;
+    }
+
+    /**
+     * Compares the nodes a search returned with the exact nearest matching nodes, found by scanning every node
+     * with its full vector, and records the share that was found.
+     * The full vectors of the matching live nodes are copied a chunk at a time under the read lock and compared
+     * outside it, so a scan never holds the lock for long and writes can proceed between chunks.
+     */
+    private void sampleRecall(Graph searched, float[] query, int topK, VectorSearchFilter filter, List<Integer> found) {
+        PriorityQueue<Candidate> nearest = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance).reversed());
+        int[] nodes = new int[RECALL_SCAN_CHUNK];
+        float[][] vectors = new float[RECALL_SCAN_CHUNK][];
+        boolean scanned = false;
+        for (int start = 0; !scanned; start += RECALL_SCAN_CHUNK) {
+            int copied = 0;
+            lock.readLock().lock();
+            try {
+                if (searched != graph) {
+                    return; // Compacted or rebuilt since; node numbers changed
+                }
+                int end = Math.min(searched.size, start + RECALL_SCAN_CHUNK);
+                for (int node = start; node < end; node++) {
+                    if (!searched.deleted.get(node) && searched.matches(node, filter)) {
+                        nodes[copied] = node;
+                        vectors[copied++] = searched.vector(node);
+                    }
+                }
+                scanned = end == searched.size;
+            } finally {
+                lock.readLock().unlock();
+            }
+            for (int i = 0; i < copied; i++) {
+                nearest.add(new Candidate(nodes[i], 1f - dot(query, vectors[i])));
+                if (nearest.size() > topK) {
+                    nearest.poll();
+                }
+            }
+        }
+        if (nearest.isEmpty()) {
+            return;
+        }
+        long hits = nearest.stream().filter(candidate -> found.contains(candidate.node())).count();
+        recall.record((double) hits / nearest.size());
+    }
+
+    /**
+     * Embeds a text and searches the graph with it.
+     *
+     * @param text   The query text.
+     * @param topK   The maximum number of products to return.
+     * @param filter The filter the products must match.
+     * @return The nearest matching product documents, closest first.
+     */
+    @Override
+    public List<Document> findNearest(String text, int topK, VectorSearchFilter filter) {
+        return findNearest(embeddingModel.embed(text), topK, filter);
+    }
+
+    /**
+     * Inserts the products into the graph, tombstoning the nodes of products that were already indexed.
+     *
+     * @param products   The products, with their descriptions.
+     * @param embeddings The embeddings of the product descriptions, in the order of the products.
+     */
+    @Override
+    public void saveAll(List<Product> products, List<float[]> embeddings) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < products.size(); i++) {
+                Product product = products.get(i);
+                graph.remove(product.getId());
+                graph.insert(product.getId(), normalize(embeddings.get(i)), product.getDescription(),
+                        IProductVectorRepository.descriptionHashOf(product.getDescription()), fieldsOf(product));
+            }
+            modifications++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the description hashes stored with the nodes of products.
+     *
+     * @param productIds The IDs of the products.
+     * @return The hashes by product ID; products that have not been indexed, or whose node was loaded from a
+     *         snapshot without hashes, are omitted.
+     */
+    @Override
+    public Map<Long, String> findDescriptionHashes(Collection<Long> productIds) {
+        Map<Long, String> hashes = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (Long productId : productIds) {
+                Integer node = graph.nodeByProductId.get(productId);
+                if (node != null && graph.descriptionHashes.get(node) != null) {
+                    hashes.put(productId, graph.descriptionHashes.get(node));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return hashes;
+    }
+
+    /**
+     * Replaces the stored product fields of indexed products.
+     *
+     * @param products The products to update.
+     * @return The products that are not in the graph.
+     */
+    @Override
+    public List<Product> updateMetadata(List<Product> products) {
+        List<Product> missing = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            for (Product product : products) {
+                Integer node = graph.nodeByProductId.get(product.getId());
+                if (node == null) {
+                    missing.add(product);
+                } else {
+                    graph.contents.set(node, product.getDescription());
+                    graph.fields.set(node, fieldsOf(product));
+                    graph.indexFilterFields(node);
+                }
+            }
+            modifications++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return missing;
+    }
+
+    /**
+     * Tombstones the nodes of products.
+     *
+     * @param productIds The IDs of the products to remove.
+     */
+    @Override
+    public void deleteAllByProductIds(Collection<Long> productIds) {
+        lock.writeLock().lock();
+        try {
+            for (Long productId : productIds) {
+                graph.remove(productId);
+            }
+            modifications++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Empties the graph, since a rebuild writes every product again.
+     */
+    @Override
+    public void prepareRebuild() {
+        lock.writeLock().lock();
+        try {
+            graph = new Graph(0, maxConnections, efConstruction, quantization);
+            modifications++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isShared() {
+        return false; // Every node holds and syncs its own graph
+    }
+
+    @Override
+    public Optional<String> findSyncState(String name) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(syncState.get(name));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void saveSyncState(String name, String value) {
+        lock.writeLock().lock();
+        try {
+            syncState.put(name, value);
+            modifications++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteSyncState(String... names) {
+        lock.writeLock().lock();
+        try {
+            for (String name : names) {
+                syncState.remove(name);
+            }
+            modifications++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Compacts the graph if too many nodes are tombstoned, and writes a snapshot if the index changed since the
+     * last one.
+     */
+    @Scheduled(fixedDelayString = "${product.vector-store.hnsw.snapshot-interval:PT5M}",
+            initialDelayString = "${product.vector-store.hnsw.snapshot-interval:PT5M}")
+    public void snapshot() {
+        compactIfNeeded();
+        writeSnapshot();
+    }
+
+    /**
+     * Writes a final snapshot when the application shuts down.
+     */
+    @PreDestroy
+    public void close() {
+        recallSampler.shutdownNow();
+        writeSnapshot();
+    }
+
+    /**
+     * Rebuilds the graph from its live nodes once tombstones make up too large a share of it.
+     * The new graph is built under the read lock, so searches continue while writes wait, and is only swapped in
+     * if no write slipped in between releasing the read lock and taking the write lock.
+     */
+    private void compactIfNeeded() {
+        Graph source;
+        Graph compacted;
+        long startedAt;
+        lock.readLock().lock();
+        try {
+            source = graph;
+            if (source.deleted.cardinality() <= source.size * COMPACTION_RATIO) {
+                return;
+            }
+            startedAt = modifications;
+            List<Integer> live = new ArrayList<>(source.nodeByProductId.values());
+            live.sort(null); // Keep insertion order
+            compacted = new Graph(live.size(), maxConnections, efConstruction, quantization);
+            for (int node : live) {
+                compacted.insert(source.productIds[node], source.vector(node), source.contents.get(node),
+                        source.descriptionHashes.get(node), source.fields.get(node));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (modifications == startedAt && graph == source) {
+                graph = compacted;
+                modifications++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the graph and the sync state to a temporary file and moves it over the snapshot,
+     * so a crash while writing leaves the previous snapshot intact.
+     * With quantization the vectors of the new snapshot are then mapped, and the full vectors it holds are read
+     * from it instead of the heap.
+     */
+    private void writeSnapshot() {
+        Graph written;
+        SnapshotVectors mapped = null;
+        lock.readLock().lock();
+        try {
+            if (modifications == persistedModifications) {
+                return;
+            }
+            Path directory = snapshotPath.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, snapshotPath.getFileName().toString(), ".tmp");
+            long vectorOffset;
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(syncState.size());
+                for (Map.Entry<String, String> entry : syncState.entrySet()) {
+                    writeString(out, entry.getKey());
+                    writeString(out, entry.getValue());
+                }
+                graph.writeNodes(out);
+                out.flush();
+                vectorOffset = channel.position();
+                graph.writeVectors(out);
+            }
+            if (quantization != VectorQuantization.NONE && graph.size > 0) {
+                // Mapped before the move, so the mapping is of this very file whatever snapshot follows
+                mapped = SnapshotVectors.map(temporary, vectorOffset, graph.vectors.dimensions(), graph.size,
+                        SnapshotVectors.MAX_REGION_BYTES);
+            }
+            Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            persistedModifications = modifications;
+            written = graph;
+        } catch (IOException e) {
+            System.err.println("Could not write vector index snapshot " + snapshotPath + ": " + e.getMessage());
+            return;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (mapped == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (graph == written) { // Nodes are only appended, so the written ones are unchanged
+                graph.vectors.attachSnapshot(mapped);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the graph and the sync state from the snapshot file, then maps the vectors at its end.
+     *
+     * Snapshots of version 2 are read without description hashes, so their products are embedded again the next
+     * time they change.
+     *
+     * @throws IOException If the file cannot be read or is not a snapshot of a supported version.
+     */
+    private void load() throws IOException {
+        Graph loaded;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath), 1 << 16))) {
+            int version;
+            if (in.readInt() != SNAPSHOT_MAGIC || (version = in.readInt()) < 2 || version > SNAPSHOT_VERSION) {
+                throw new IOException("Not a vector index snapshot of version 2 to " + SNAPSHOT_VERSION);
+            }
+            int stateSize = in.readInt();
+            for (int i = 0; i < stateSize; i++) {
+                syncState.put(readString(in), readString(in));
+            }
+            loaded = Graph.readNodes(in, version, maxConnections, efConstruction, quantization);
+        }
+        if (loaded.size > 0) {
+            // The vectors fill the end of the file
+            int dimensions = loaded.vectors.dimensions();
+            long vectorOffset = Files.size(snapshotPath) - (long) loaded.size * dimensions * Float.BYTES;
+            loaded.readVectors(SnapshotVectors.map(snapshotPath, vectorOffset, dimensions, loaded.size,
+                    SnapshotVectors.MAX_REGION_BYTES));
+        }
+        graph = loaded;
+    }
+
+    private int bytesPerVector() {
+        lock.readLock().lock();
+        try {
+            return graph.bytesPerVector();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int documentCount() {
+        lock.readLock().lock();
+        try {
+            return graph.nodeByProductId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Converts the metadata of a product into the string fields stored with its node,
+     * matching the values returned by the Redis index.
+     *
+     * @param product The product.
+     * @return The fields by name.
+     */
+    private static Map<String, String> fieldsOf(Product product) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> field : IProductVectorRepository.metadataOf(product).entrySet()) {
+            fields.put(field.getKey(), field.getValue().toString());
+        }
+        return fields;
+    }
+
+    /**
+     * Computes the dot product of two vectors of the same length, which is their cosine similarity when both are
+     * normalized.
+     */
+    private static float dot(float[] a, float[] b) {
+        float dot = 0f;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return dot;
+    }
+
+    /**
+     * Scales a vector to unit length, so cosine distance reduces to one minus the dot product.
+     *
+     * @param vector The vector.
+     * @return A normalized copy of the vector.
+     */
+    private static float[] normalize(float[] vector) {
+        double norm = 0.0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float[] normalized = vector.clone();
+        if (norm > 0.0) {
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < normalized.length; i++) {
+                normalized[i] *= scale;
+            }
+        }
+        return normalized;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A node reached by a search, with its distance to the query.
+     */
+    private record Candidate(int node, float distance) {
+    }
+
+    /**
+     * The HNSW graph. Not thread-safe; guarded by the repository's lock.
+     * Nodes are numbered in insertion order, which is also the order of their vectors in the vector storage.
+     */
+    private static final class Graph {
+        private static final int[] NO_LINKS = new int[0];
+
+        private final int maxConnections;                      // Links per node on the upper layers
+        private final int efConstruction;                      // Candidate list size when inserting
+        private final VectorQuantization quantization;         // Encoding of the in-memory vectors
+        private final Map<Long, Integer> nodeByProductId = new HashMap<>(); // Live node of each product
+        private final BitSet deleted = new BitSet();           // Tombstoned nodes
+        private final List<String> contents = new ArrayList<>();              // Description per node
+        private final List<String> descriptionHashes = new ArrayList<>();     // Hash of the embedded description per node
+        private final List<Map<String, String>> fields = new ArrayList<>();   // Product fields per node
+        private QuantizedVectorStorage vectors;                // Normalized vectors, created by the first insert
+        private long[] productIds;                             // Product ID per node
+        private String[] categories;                           // Category per node, for filtering
+        private double[] prices;                               // Price per node, for filtering
+        private int[][][] links;                               // Neighbours per node and layer
+        private int size;                                      // Number of nodes, including tombstoned ones
+        private int entryPoint = -1;                           // Node on the top layer where searches start
+        private int maxLevel = -1;                             // Top layer
+
+        Graph(int capacity, int maxConnections, int efConstruction, VectorQuantization quantization) {
+            this.maxConnections = maxConnections;
+            this.efConstruction = efConstruction;
+            this.quantization = quantization;
+            this.productIds = new long[capacity];
+            this.categories = new String[capacity];
+            this.prices = new double[capacity];
+            this.links = new int[capacity][][];
+        }
+
+        /**
+         * Adds a node for a product and links it into every layer up to a randomly drawn level.
+         */
+        void insert(long productId, float[] vector, String content, String descriptionHash, Map<String, String> nodeFields) {
+            if (vectors == null) {
+                vectors = new QuantizedVectorStorage(quantization, vector.length, productIds.length);
+            } else if (vector.length != vectors.dimensions()) {
+                throw new IllegalArgumentException("Expected an embedding of " + vectors.dimensions() + " dimensions, got " + vector.length);
+            }
+            int level = randomLevel();
+            int node = allocate(productId, vector, content, descriptionHash, nodeFields, level);
+            nodeByProductId.put(productId, node);
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return;
+            }
+
+            // Descend greedily to the node's top layer, then link it on each layer below
+            int entry = entryPoint;
+            for (int layer = maxLevel; layer > level; layer--) {
+                entry = searchLayer(vector, entry, 1, layer).get(0).node();
+            }
+            for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+                List<Candidate> candidates = searchLayer(vector, entry, efConstruction, layer);
+                int[] nodes = new int[candidates.size()];
+                float[] distances = new float[candidates.size()];
+                for (int i = 0; i < nodes.length; i++) {
+                    nodes[i] = candidates.get(i).node();
+                    distances[i] = candidates.get(i).distance();
+                }
+                int[] neighbours = selectNeighbours(nodes, distances, nodes.length, maxConnections);
+                links[node][layer] = neighbours;
+                int layerLimit = layer == 0 ? 2 * maxConnections : maxConnections;
+                for (int neighbour : neighbours) {
+                    link(neighbour, node, layer, layerLimit);
+                }
+                entry = candidates.get(0).node();
+            }
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+        }
+
+        /**
+         * Tombstones the node of a product, if it has one.
+         */
+        void remove(long productId) {
+            Integer node = nodeByProductId.remove(productId);
+            if (node != null) {
+                deleted.set(node);
+            }
+        }
+
+        /**
+         * Searches the bottom layer, returning up to ef nodes closest first, tombstoned ones included.
+         */
+        List<Candidate> search(float[] query, int ef) {
+            int entry = entryPoint;
+            for (int layer = maxLevel; layer > 0; layer--) {
+                entry = searchLayer(query, entry, 1, layer).get(0).node();
+            }
+            return searchLayer(query, entry, ef, 0);
+        }
+
+        /**
+         * Compares a query with the full vectors of the given nodes.
+         *
+         * @return Up to topK of the nodes, closest first.
+         */
+        List<Candidate> scan(float[] query, int topK, int[] nodes) {
+            int[] nearest = new int[Math.min(topK, nodes.length)];
+            float[] distances = new float[nearest.length];
+            int count = 0;
+            for (int node : nodes) {
+                float distance = vectors.exactDistance(query, node);
+                if (count == nearest.length && distance >= distances[count - 1]) {
+                    continue;
+                }
+                // Insertion into the nearest nodes so far, dropping the furthest when full
+                int position = count == nearest.length ? count - 1 : count++;
+                for (; position > 0 && distances[position - 1] > distance; position--) {
+                    nearest[position] = nearest[position - 1];
+                    distances[position] = distances[position - 1];
+                }
+                nearest[position] = node;
+                distances[position] = distance;
+            }
+            List<Candidate> results = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                results.add(new Candidate(nearest[i], distances[i]));
+            }
+            return results;
+        }
+
+        /**
+         * Best-first search of one layer from an entry node.
+         *
+         * @return Up to ef nodes, closest first.
+         */
+        private List<Candidate> searchLayer(float[] query, int entry, int ef, int layer) {
+            BitSet visited = new BitSet(size);
+            PriorityQueue<Candidate> toVisit = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance));
+            PriorityQueue<Candidate> nearest = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance).reversed());
+            Candidate start = new Candidate(entry, distance(query, entry));
+            visited.set(entry);
+            toVisit.add(start);
+            nearest.add(start);
+            while (!toVisit.isEmpty()) {
+                Candidate current = toVisit.poll();
+                if (nearest.size() >= ef && current.distance() > nearest.peek().distance()) {
+                    break; // Every remaining candidate is further than the furthest result
+                }
+                for (int neighbour : links[current.node()][layer]) {
+                    if (visited.get(neighbour)) {
+                        continue;
+                    }
+                    visited.set(neighbour);
+                    float distance = distance(query, neighbour);
+                    if (nearest.size() < ef || distance < nearest.peek().distance()) {
+                        Candidate candidate = new Candidate(neighbour, distance);
+                        toVisit.add(candidate);
+                        nearest.add(candidate);
+                        if (nearest.size() > ef) {
+                            nearest.poll();
+                        }
+                    }
+                }
+            }
+            List<Candidate> results = new ArrayList<>(nearest);
+            results.sort(Comparator.comparingDouble(Candidate::distance));
+            return results;
+        }
+
+        /**
+         * Adds a link from one node to another. Once the layer limit is reached, the node's neighbours are selected
+         * again from its current ones and the new one.
+         */
+        private void link(int from, int to, int layer, int layerLimit) {
+            int[] current = links[from][layer];
+            int count = current.length + 1;
+            int[] nodes = Arrays.copyOf(current, count);
+            nodes[current.length] = to;
+            if (count <= layerLimit) {
+                links[from][layer] = nodes;
+                return;
+            }
+            float[] origin = vectors.decode(from); // Compare as searches do
+            float[] distances = new float[count];
+            for (int i = 0; i < count; i++) {
+                distances[i] = vectors.approximateDistance(origin, nodes[i]);
+            }
+            // Insertion sort by distance; there are at most twice maxConnections neighbours
+            for (int i = 1; i < count; i++) {
+                int node = nodes[i];
+                float distance = distances[i];
+                int j = i - 1;
+                for (; j >= 0 && distances[j] > distance; j--) {
+                    nodes[j + 1] = nodes[j];
+                    distances[j + 1] = distances[j];
+                }
+                nodes[j + 1] = node;
+                distances[j + 1] = distance;
+            }
+            links[from][layer] = selectNeighbours(nodes, distances, count, layerLimit);
+        }
+
+        /**
+         * Selects the neighbours of a node with the heuristic of the HNSW paper (Algorithm 4): going from the closest
+         * candidate outwards, a candidate is kept only if it is closer to the node than to every neighbour kept so far.
+         * Links thereby point in different directions instead of all into the nearest cluster, which keeps the graph
+         * navigable between clusters.
+         *
+         * @param nodes     The candidates, closest first.
+         * @param distances The distance of each candidate to the node.
+         * @param count     The number of candidates.
+         * @param limit     The maximum number of neighbours.
+         * @return The selected neighbours, closest first.
+         */
+        private int[] selectNeighbours(int[] nodes, float[] distances, int count, int limit) {
+            int[] selected = new int[Math.min(limit, count)];
+            int size = 0;
+            for (int i = 0; i < count && size < selected.length; i++) {
+                boolean diverse = true;
+                if (size > 0) {
+                    float[] candidate = vectors.decode(nodes[i]);
+                    for (int j = 0; j < size && diverse; j++) {
+                        diverse = vectors.approximateDistance(candidate, selected[j]) > distances[i];
+                    }
+                }
+                if (diverse) {
+                    selected[size++] = nodes[i];
+                }
+            }
+            return size == selected.length ? selected : Arrays.copyOf(selected, size);
+        }
+
+        private int allocate(long productId, float[] vector, String content, String descriptionHash,
+                             Map<String, String> nodeFields, int level) {
+            int node = size;
+            if (node == productIds.length) {
+                int capacity = Math.max(16, productIds.length * 2);
+                productIds = Arrays.copyOf(productIds, capacity);
+                categories = Arrays.copyOf(categories, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                links = Arrays.copyOf(links, capacity);
+            }
+            vectors.add(node, vector, false);
+            productIds[node] = productId;
+            links[node] = new int[level + 1][];
+            Arrays.fill(links[node], NO_LINKS);
+            contents.add(content);
+            descriptionHashes.add(descriptionHash);
+            fields.add(nodeFields);
+            indexFilterFields(node);
+            size++;
+            return node;
+        }
+
+        private int randomLevel() {
+            double levelMultiplier = 1.0 / Math.log(maxConnections);
+            double uniform = 1.0 - ThreadLocalRandom.current().nextDouble(); // In (0, 1]
+            return Math.min(MAX_LEVEL, (int) (-Math.log(uniform) * levelMultiplier));
+        }
+
+        private float distance(float[] query, int node) {
+            return vectors.approximateDistance(query, node);
+        }
+
+        /**
+         * Returns the full vector of a node.
+         */
+        float[] vector(int node) {
+            return vectors.exact(node);
+        }
+
+        /**
+         * Returns the number of bytes of vectors kept in memory per node.
+         */
+        int bytesPerVector() {
+            return vectors == null ? 0 : vectors.bytesPerVector();
+        }
+
+        /**
+         * Copies the filtered fields of a node out of its field map, so filters are checked without parsing them.
+         */
+        void indexFilterFields(int node) {
+            Map<String, String> nodeFields = fields.get(node);
+            String price = nodeFields.get("price");
+            String category = nodeFields.get("category");
+            categories[node] = category == null || category.isEmpty() ? null : category;
+            prices[node] = price == null ? 0.0 : Double.parseDouble(price);
+        }
+
+        boolean matches(int node, VectorSearchFilter filter) {
+            return filter.matches(productIds[node], categories[node], prices[node]);
+        }
+
+        /**
+         * Lists the live nodes matching a filter, unless there are more than a limit.
+         *
+         * @return The matching nodes, or null if more than limit nodes match.
+         */
+        int[] matching(VectorSearchFilter filter, int limit) {
+            int[] nodes = new int[Math.min(limit, 64)];
+            int count = 0;
+            for (int node = 0; node < size; node++) {
+                if (deleted.get(node) || !matches(node, filter)) {
+                    continue;
+                }
+                if (count == limit) {
+                    return null;
+                }
+                if (count == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, (int) Math.min(limit, nodes.length * 2L));
+                }
+                nodes[count++] = node;
+            }
+            return Arrays.copyOf(nodes, count);
+        }
+
+        Document toDocument(Candidate candidate) {
+            Map<String, Object> metadata = new HashMap<>(fields.get(candidate.node()));
+            metadata.put(DISTANCE_METADATA_KEY, (double) candidate.distance());
+            String content = contents.get(candidate.node());
+            return new Document(Long.toString(productIds[candidate.node()]), content == null ? "" : content, metadata);
+        }
+
+        /**
+         * Writes the nodes; their full vectors follow them in the snapshot, written by {@link #writeVectors}.
+         */
+        void writeNodes(DataOutputStream out) throws IOException {
+            out.writeInt(vectors == null ? 0 : vectors.dimensions());
+            out.writeInt(size);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            for (int node = 0; node < size; node++) {
+                out.writeLong(productIds[node]);
+                out.writeBoolean(deleted.get(node));
+                out.writeInt(links[node].length);
+                for (int[] layerLinks : links[node]) {
+                    out.writeInt(layerLinks.length);
+                    for (int neighbour : layerLinks) {
+                        out.writeInt(neighbour);
+                    }
+                }
+                writeString(out, contents.get(node));
+                writeString(out, descriptionHashes.get(node));
+                out.writeInt(fields.get(node).size());
+                for (Map.Entry<String, String> field : fields.get(node).entrySet()) {
+                    writeString(out, field.getKey());
+                    writeString(out, field.getValue());
+                }
+            }
+        }
+
+        /**
+         * Writes the full vectors of all nodes in node order, at the end of the snapshot.
+         */
+        void writeVectors(DataOutputStream out) throws IOException {
+            for (int node = 0; node < size; node++) {
+                for (float value : vectors.exact(node)) {
+                    out.writeFloat(value);
+                }
+            }
+        }
+
+        /**
+         * Reads the nodes written by {@link #writeNodes(DataOutputStream)}. The vectors are read separately, from
+         * the mapped end of the snapshot, with {@link #readVectors(SnapshotVectors)}.
+         * Version 2 snapshots hold no description hashes.
+         */
+        static Graph readNodes(DataInputStream in, int version, int maxConnections, int efConstruction,
+                               VectorQuantization quantization) throws IOException {
+            int dimensions = in.readInt();
+            int size = in.readInt();
+            Graph graph = new Graph(size, maxConnections, efConstruction, quantization);
+            graph.entryPoint = in.readInt();
+            graph.maxLevel = in.readInt();
+            for (int node = 0; node < size; node++) {
+                graph.productIds[node] = in.readLong();
+                boolean deleted = in.readBoolean();
+                int[][] nodeLinks = new int[in.readInt()][];
+                for (int layer = 0; layer < nodeLinks.length; layer++) {
+                    nodeLinks[layer] = new int[in.readInt()];
+                    for (int i = 0; i < nodeLinks[layer].length; i++) {
+                        nodeLinks[layer][i] = in.readInt();
+                    }
+                }
+                graph.links[node] = nodeLinks;
+                graph.contents.add(readString(in));
+                graph.descriptionHashes.add(version >= 3 ? readString(in) : null);
+                int fieldCount = in.readInt();
+                Map<String, String> nodeFields = new LinkedHashMap<>();
+                for (int i = 0; i < fieldCount; i++) {
+                    nodeFields.put(readString(in), readString(in));
+                }
+                graph.fields.add(nodeFields);
+                graph.indexFilterFields(node);
+                if (deleted) {
+                    graph.deleted.set(node);
+                } else {
+                    graph.nodeByProductId.put(graph.productIds[node], node);
+                }
+            }
+            graph.size = size;
+            if (size > 0) {
+                graph.vectors = new QuantizedVectorStorage(quantization, dimensions, size);
+            }
+            return graph;
+        }
+
+        /**
+         * Stores the vectors of the nodes read from a snapshot. Quantized vectors are encoded from the full vectors,
+         * which stay in the snapshot for re-ranking.
+         */
+        void readVectors(SnapshotVectors snapshotVectors) {
+            float[] vector = new float[vectors.dimensions()];
+            for (int node = 0; node < size; node++) {
+                snapshotVectors.read(node, vector);
+                vectors.add(node, vector, true);
+            }
+            vectors.attachSnapshot(snapshotVectors);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.products.productservice.repositories;
 
 import com.products.productservice.model.Category;
-import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -15,12 +14,12 @@ import java.util.Optional;
 public interface ICategoryRepository extends JpaRepository<Category, Long> {
 
     /**
-     * Finds a Category by its name, loading its associated products eagerly.
+     * Finds a Category by its name.
+     * Its products are not loaded, so resolving the category of a new product stays a single-row lookup.
      *
      * @param name The name of the Category to find.
      * @return An Optional containing the Category if found, or empty if not found.
      */
-    @EntityGraph(attributePaths = "products")
     Optional<Category> findByName(String name);
 
     /**
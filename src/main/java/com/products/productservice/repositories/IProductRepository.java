@@ -1,18 +1,28 @@
 package com.products.productservice.repositories;
 
+import com.products.productservice.dtos.ProductSearchHitDto;
+import com.products.productservice.dtos.ProductVersionDto;
 import com.products.productservice.model.Category;
+import com.products.productservice.model.EnrichmentStatus;
 import com.products.productservice.model.Product;
-import org.springframework.data.domain.Page;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for managing Product entities.
@@ -21,6 +31,23 @@ import java.util.Optional;
 @Repository
 public interface IProductRepository extends JpaRepository<Product, Long> {
 
+    /**
+     * Relevance of every product matching full-text search terms, from the product and category indexes.
+     * InnoDB does not index words shorter than innodb_ft_min_token_size (3), so words such as "tv" or "4k" are
+     * matched separately against the start of product names with {@code :namePattern}, read in order from
+     * idx_product_search_name; each product matching it gains a score of 1. A null pattern matches nothing.
+     */
+    String FULLTEXT_HITS = "SELECT id, sum(score) AS score FROM (" +
+            "SELECT id, 2 * MATCH(name) AGAINST (:terms IN BOOLEAN MODE) " +
+            "+ MATCH(name, description) AGAINST (:terms IN BOOLEAN MODE) AS score " +
+            "FROM product WHERE MATCH(name, description) AGAINST (:terms IN BOOLEAN MODE) " +
+            "UNION ALL " +
+            "SELECT p.id, MATCH(c.name) AGAINST (:terms IN BOOLEAN MODE) AS score " +
+            "FROM category c JOIN product p ON p.category_id = c.id WHERE MATCH(c.name) AGAINST (:terms IN BOOLEAN MODE) " +
+            "UNION ALL " +
+            "SELECT id, 1 AS score FROM product WHERE is_deleted = false AND name LIKE :namePattern" +
+            ") matches GROUP BY id";
+
     /**
      * Finds a Product by its unique ID.
      *
@@ -38,6 +65,69 @@ public interface IProductRepository extends JpaRepository<Product, Long> {
     @Query("SELECT p FROM Product p WHERE p.isDeleted = false")
     List<Product> findAll();
 
+    /**
+     * Retrieves the ID and version of the non-deleted Products and their categories following the given ID, ordered by ID.
+     * Seeks on the primary key, so every page costs the same regardless of its position.
+     *
+     * @param afterId The ID after which to start (exclusive).
+     * @param limit   The maximum number of versions to return.
+     * @return A list of product versions.
+     */
+    @Query("SELECT new com.products.productservice.dtos.ProductVersionDto(p.id, p.lastModified, c.lastModified) " +
+            "FROM Product p LEFT JOIN p.category c WHERE p.id > :afterId AND p.isDeleted = false ORDER BY p.id")
+    List<ProductVersionDto> findVersionsAfterId(@Param("afterId") long afterId, Limit limit);
+
+    /**
+     * Streams all non-deleted Products with their categories, ordered by ID.
+     * The fetch size of Integer.MIN_VALUE makes the MySQL driver stream rows instead of buffering the
+     * whole result set, and the read-only hint skips dirty-checking snapshots.
+     * Must be consumed inside a transaction and closed after use.
+     *
+     * @return A stream of Products.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p FROM Product p JOIN FETCH p.category WHERE p.isDeleted = false ORDER BY p.id")
+    Stream<Product> streamAll();
+
+    /**
+     * Retrieves the non-deleted Products with the given IDs, fetching their categories in the same query.
+     *
+     * @param ids The IDs of the Products to retrieve.
+     * @return A list of the matching Products, in no particular order.
+     */
+    @Query("SELECT p FROM Product p JOIN FETCH p.category WHERE p.id IN :ids AND p.isDeleted = false")
+    List<Product> findAllWithCategoryByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Retrieves the non-deleted Products following the given ID with their categories, ordered by ID.
+     * Lets batch jobs walk the whole catalogue in fixed-size pages without holding it in memory.
+     *
+     * @param afterId The ID after which to start (exclusive).
+     * @param limit   The maximum number of Products to return.
+     * @return A list of Products.
+     */
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.id > :afterId AND p.isDeleted = false ORDER BY p.id")
+    List<Product> findPageAfterId(@Param("afterId") long afterId, Limit limit);
+
+    /**
+     * Retrieves Products, including soft-deleted ones, changed after the given position in (lastModified, ID) order.
+     * Lets incremental indexers page through changes with a keyset cursor, so the cost of a sync is
+     * proportional to the number of changed Products. The scan is backed by the (last_modified, id) index
+     * added by the V3 migration.
+     *
+     * @param since   The lastModified of the cursor position.
+     * @param afterId The ID of the cursor position; Products modified exactly at since are returned only after it.
+     * @param limit   The maximum number of Products to return.
+     * @return A list of Products with their categories, ordered by lastModified and ID.
+     */
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category " +
+            "WHERE p.lastModified > :since OR (p.lastModified = :since AND p.id > :afterId) " +
+            "ORDER BY p.lastModified, p.id")
+    List<Product> findChangedAfter(@Param("since") Date since, @Param("afterId") long afterId, Limit limit);
+
     /**
      * Saves a Product entity to the database.
      *
@@ -48,38 +138,231 @@ public interface IProductRepository extends JpaRepository<Product, Long> {
 
     /**
      * Performs a soft delete by setting the isDeleted field to true for the given Product ID.
+     * Also stamps lastModified so that caches and incremental indexers observe the deletion.
+     *
+     * @param id           The ID of the Product to soft delete.
+     * @param lastModified The time of the deletion.
+     * @return The number of rows affected.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Product SET isDeleted = true, lastModified = :lastModified WHERE id = :id")
+     int softDeleteById(@Param("id") long id, @Param("lastModified") Date lastModified);
+
+
+    /**
+     * Claims a Product for AI enrichment by moving it to the claimed status and counting the attempt.
+     * Succeeds only if the Product is waiting for enrichment (or its previous claim is older than
+     * stuckBefore) and has attempts left, so concurrent workers never enrich the same Product twice.
+     * The claim stores a new claim token, which supersedes any earlier claim of the Product.
      *
-     * @param id The ID of the Product to soft delete.
+     * @param id          The ID of the Product to claim.
+     * @param claimToken  The token identifying this claim.
+     * @param claimable   The statuses from which the Product may be claimed.
+     * @param claimed     The status marking the Product as claimed.
+     * @param maxAttempts The maximum number of enrichment attempts.
+     * @param stuckBefore Claims older than this are considered abandoned.
+     * @param now         The time of the claim.
+     * @return The number of rows affected (1 if the claim succeeded).
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Product p SET p.enrichmentStatus = :claimed, p.enrichmentAttempts = p.enrichmentAttempts + 1, p.enrichmentClaimedAt = :now, " +
+            "p.enrichmentClaimToken = :claimToken " +
+            "WHERE p.id = :id AND p.isDeleted = false AND p.enrichmentAttempts < :maxAttempts " +
+            "AND (p.enrichmentStatus IN :claimable OR (p.enrichmentStatus = :claimed AND p.enrichmentClaimedAt < :stuckBefore))")
+    int claimForEnrichment(@Param("id") long id,
+                           @Param("claimToken") String claimToken,
+                           @Param("claimable") Collection<EnrichmentStatus> claimable,
+                           @Param("claimed") EnrichmentStatus claimed,
+                           @Param("maxAttempts") int maxAttempts,
+                           @Param("stuckBefore") Date stuckBefore,
+                           @Param("now") Date now);
+
+    /**
+     * Finds the IDs of Products that still need AI enrichment: waiting or failed Products with attempts left,
+     * and claimed Products whose claim is older than stuckBefore.
+     *
+     * @param claimable   The statuses of Products waiting for enrichment.
+     * @param claimed     The status marking a Product as claimed.
+     * @param maxAttempts The maximum number of enrichment attempts.
+     * @param stuckBefore Claims older than this are considered abandoned.
+     * @param limit       The maximum number of IDs to return.
+     * @return A list of Product IDs, oldest first.
+     */
+    @Query("SELECT p.id FROM Product p WHERE p.isDeleted = false AND p.enrichmentAttempts < :maxAttempts " +
+            "AND (p.enrichmentStatus IN :claimable OR (p.enrichmentStatus = :claimed AND p.enrichmentClaimedAt < :stuckBefore)) " +
+            "ORDER BY p.id")
+    List<Long> findIdsAwaitingEnrichment(@Param("claimable") Collection<EnrichmentStatus> claimable,
+                                         @Param("claimed") EnrichmentStatus claimed,
+                                         @Param("maxAttempts") int maxAttempts,
+                                         @Param("stuckBefore") Date stuckBefore,
+                                         Limit limit);
+
+    /**
+     * Stores the outcome of an AI enrichment job on a claimed Product.
+     * Only the enrichment columns are written, and the generated image URL and description only fill columns that
+     * are still empty, so edits of the Product made while the job was running are never overwritten.
+     * The status is completed if both columns end up filled, and failed otherwise. Nothing is written unless the
+     * Product is still held by the same claim, so a job superseded by a later claim never stores its content.
+     *
+     * @param id           The ID of the Product.
+     * @param claimToken   The token of the job's claim.
+     * @param imageUrl     The generated image URL, or null if generation failed.
+     * @param description  The generated description, or null if generation failed.
+     * @param claimed      The status marking the Product as claimed.
+     * @param completed    The status of a Product that has both an image and a description.
+     * @param failed       The status of a Product still missing either of them.
+     * @param lastModified The time of the update.
+     * @return The number of rows affected (0 if the claim was lost, e.g. because the Product was deleted or edited).
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Product p SET " +
+            // Assigned first, so that it is computed from the columns as they were before this update
+            "p.enrichmentStatus = CASE WHEN ((p.imageUrl IS NOT NULL AND p.imageUrl <> '') OR :imageUrl IS NOT NULL) " +
+            "AND ((p.description IS NOT NULL AND p.description <> '') OR :description IS NOT NULL) THEN :completed ELSE :failed END, " +
+            "p.imageUrl = CASE WHEN p.imageUrl IS NULL OR p.imageUrl = '' THEN :imageUrl ELSE p.imageUrl END, " +
+            "p.description = CASE WHEN p.description IS NULL OR p.description = '' THEN :description ELSE p.description END, " +
+            "p.lastModified = :lastModified " +
+            "WHERE p.id = :id AND p.isDeleted = false AND p.enrichmentStatus = :claimed AND p.enrichmentClaimToken = :claimToken")
+    int completeEnrichment(@Param("id") long id,
+                           @Param("claimToken") String claimToken,
+                           @Param("imageUrl") String imageUrl,
+                           @Param("description") String description,
+                           @Param("claimed") EnrichmentStatus claimed,
+                           @Param("completed") EnrichmentStatus completed,
+                           @Param("failed") EnrichmentStatus failed,
+                           @Param("lastModified") Date lastModified);
+
+    /**
+     * Releases the claim of an enrichment job that was interrupted, e.g. on shutdown, without counting the attempt.
+     * The Product is then picked up again by the next sweep instead of waiting for the stuck timeout.
+     * Only the job holding the latest claim may release it.
+     *
+     * @param id         The ID of the claimed Product.
+     * @param claimToken The token of the job's claim.
+     * @param claimed    The status marking the Product as claimed.
+     * @param pending    The status of a Product waiting for enrichment.
      * @return The number of rows affected.
      */
     @Modifying
     @Transactional
-    @Query("UPDATE Product SET isDeleted = true WHERE id = :id")
-     int softDeleteById(@Param("id") long id);
+    @Query("UPDATE Product p SET p.enrichmentStatus = :pending, p.enrichmentAttempts = p.enrichmentAttempts - 1 " +
+            "WHERE p.id = :id AND p.enrichmentStatus = :claimed AND p.enrichmentClaimToken = :claimToken")
+    int releaseEnrichmentClaim(@Param("id") long id,
+                               @Param("claimToken") String claimToken,
+                               @Param("claimed") EnrichmentStatus claimed,
+                               @Param("pending") EnrichmentStatus pending);
 
+    /**
+     * Searches Products with the InnoDB full-text indexes over product names and descriptions and category names.
+     * Each index is probed separately and the hits are merged, since a MATCH inside an OR cannot use the index.
+     * Products are ranked by the summed relevance, with name matches counted twice.
+     * Returns a slice rather than a page, so no count query is run.
+     *
+     * @param terms       The search terms in boolean mode syntax, e.g. {@code "red* shoe*"}.
+     * @param namePattern The LIKE pattern matching names that start with the words too short for the full-text
+     *                    index, e.g. {@code "4k%tv%"}, or null if there are none.
+     * @param pageable    The pagination information.
+     * @return A slice of matching Products, most relevant first.
+     */
+    @Query(value = "SELECT p.* FROM product p JOIN (" + FULLTEXT_HITS + ") hits ON hits.id = p.id " +
+            "WHERE p.is_deleted = false ORDER BY hits.score DESC, p.id",
+            nativeQuery = true)
+    Slice<Product> searchFullText(@Param("terms") String terms, @Param("namePattern") String namePattern,
+                                  Pageable pageable);
+
+    /**
+     * Searches Products with the full-text indexes, cheapest first.
+     * The join order is left to MySQL: for selective terms it sorts the few matches, and for broad terms it may
+     * read products in order from idx_product_search_price and stop once a page of matches is found. Forcing the
+     * index scan would walk the whole catalogue for a query matching a handful of products.
+     *
+     * @param terms       The search terms in boolean mode syntax.
+     * @param namePattern The LIKE pattern for words too short for the full-text index, or null.
+     * @param pageable    The pagination information.
+     * @return A slice of matching Products, cheapest first.
+     */
+    @Query(value = "SELECT p.* FROM product p JOIN (" + FULLTEXT_HITS + ") hits ON hits.id = p.id " +
+            "WHERE p.is_deleted = false ORDER BY p.price, p.id",
+            nativeQuery = true)
+    Slice<Product> searchFullTextByPrice(@Param("terms") String terms, @Param("namePattern") String namePattern,
+                                         Pageable pageable);
+
+    /**
+     * Searches Products with the full-text indexes, newest first. As for price, MySQL chooses between sorting the
+     * matches and reading products in order from idx_product_search_created_at.
+     *
+     * @param terms       The search terms in boolean mode syntax.
+     * @param namePattern The LIKE pattern for words too short for the full-text index, or null.
+     * @param pageable    The pagination information.
+     * @return A slice of matching Products, newest first.
+     */
+    @Query(value = "SELECT p.* FROM product p JOIN (" + FULLTEXT_HITS + ") hits ON hits.id = p.id " +
+            "WHERE p.is_deleted = false ORDER BY p.created_at DESC, p.id DESC",
+            nativeQuery = true)
+    Slice<Product> searchFullTextByCreatedAt(@Param("terms") String terms, @Param("namePattern") String namePattern,
+                                             Pageable pageable);
+
+    /**
+     * Searches Products with the full-text indexes, alphabetically by name. As for price, MySQL chooses between
+     * sorting the matches and reading products in order from idx_product_search_name.
+     *
+     * @param terms       The search terms in boolean mode syntax.
+     * @param namePattern The LIKE pattern for words too short for the full-text index, or null.
+     * @param pageable    The pagination information.
+     * @return A slice of matching Products, ordered by name.
+     */
+    @Query(value = "SELECT p.* FROM product p JOIN (" + FULLTEXT_HITS + ") hits ON hits.id = p.id " +
+            "WHERE p.is_deleted = false ORDER BY p.name, p.id",
+            nativeQuery = true)
+    Slice<Product> searchFullTextByName(@Param("terms") String terms, @Param("namePattern") String namePattern,
+                                        Pageable pageable);
 
     /**
-     * Searches for Products with names containing the specified query string.
+     * Searches Products like {@link #searchFullText(String, String, Pageable)}, seeking past the last hit of the previous
+     * page instead of skipping an offset. Only IDs, versions (of products and categories) and scores are read; the products are served from cache.
      *
-     * @param query    The search query to match against Product names.
-     * @param pageable The pagination information.
-     * @return A paginated list of Products matching the search query.
+     * @param terms       The search terms in boolean mode syntax.
+     * @param namePattern The LIKE pattern for words too short for the full-text index, or null.
+     * @param first       Whether this is the first page, in which case afterScore and afterId are ignored.
+     * @param afterScore  The score of the last hit of the previous page.
+     * @param afterId     The ID of the last hit of the previous page.
+     * @param limit       The maximum number of hits to return.
+     * @return The matching hits after the given one, most relevant first.
      */
-    @Query("SELECT p FROM Product p WHERE p.name LIKE %:query% AND p.isDeleted = false")
-    Page<Product> findByNameContaining(@Param("query") String query, Pageable pageable);
+    @Query(value = "SELECT p.id AS id, p.last_modified AS lastModified, c.last_modified AS categoryLastModified, " +
+            "hits.score AS score FROM product p JOIN (" + FULLTEXT_HITS + ") hits ON hits.id = p.id " +
+            "LEFT JOIN category c ON c.id = p.category_id " +
+            "WHERE p.is_deleted = false " +
+            "AND (:first OR hits.score < :afterScore OR (hits.score = :afterScore AND p.id > :afterId)) " +
+            "ORDER BY hits.score DESC, p.id",
+            nativeQuery = true)
+    List<ProductSearchHitDto> searchFullTextAfter(@Param("terms") String terms,
+                                                  @Param("namePattern") String namePattern,
+                                                  @Param("first") boolean first,
+                                                  @Param("afterScore") double afterScore,
+                                                  @Param("afterId") long afterId,
+                                                  Limit limit);
 
     /**
      * Finds similar products within the same category based on price range, excluding a specific product ID.
+     * Categories are fetched in the same query. Products closest in price to the target come first.
      *
-     * @param category  The category of the products to search within.
-     * @param minPrice  The minimum price of the products to include in the search.
-     * @param maxPrice  The maximum price of the products to include in the search.
-     * @param excludeId The ID of the product to exclude from the search results.
+     * @param category    The category of the products to search within.
+     * @param targetPrice The price the results are ordered by closeness to.
+     * @param minPrice    The minimum price of the products to include in the search.
+     * @param maxPrice    The maximum price of the products to include in the search.
+     * @param excludeId   The ID of the product to exclude from the search results.
+     * @param limit       The maximum number of products to return.
      * @return A list of products that match the specified criteria.
      */
-    @Query("SELECT p from Product p where p.category=:category and p.price between :minPrice and :maxPrice and p.id !=:excludeId and p.isDeleted = false")
+    @Query("SELECT p from Product p JOIN FETCH p.category c where c=:category and p.price between :minPrice and :maxPrice and p.id !=:excludeId and p.isDeleted = false ORDER BY abs(p.price - :targetPrice), p.id")
     List<Product> findSimilarInCategory(@Param("category") Category category,
+                                        @Param("targetPrice") double targetPrice,
                                         @Param("minPrice") double minPrice,
                                         @Param("maxPrice") double maxPrice,
-                                        @Param("excludeId") long excludeId);
-}
\ No newline at end of file
+                                        @Param("excludeId") long excludeId,
+                                        Limit limit);
+}
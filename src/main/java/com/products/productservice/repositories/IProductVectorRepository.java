@@ -0,0 +1,183 @@
+package com.products.productservice.repositories;
+
+import com.products.productservice.model.Product;
+import org.springframework.ai.document.Document;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Repository interface for the product embedding index.
+ * Every product has at most one document, identified by the product ID, holding the product description,
+ * its embedding, the hash of the description it was embedded from and the product fields listed by
+ * {@link #metadataOf(Product)}. The hash lives in the document, so it always describes the embedding the index
+ * holds, including for stores that live in the application process.
+ * Returned documents carry the product description as text and the stored product fields as metadata,
+ * plus the cosine distance to the query under {@link #DISTANCE_METADATA_KEY}.
+ * <p>
+ * The index also keeps the state of the sync that fills it, so the state always describes what the index holds,
+ * including for stores that live in the application process.
+ */
+public interface IProductVectorRepository {
+
+    /**
+     * Metadata key holding the cosine distance between a hit and the query vector.
+     */
+    String DISTANCE_METADATA_KEY = "distance";
+
+    /**
+     * Finds the stored embedding of a product.
+     *
+     * @param productId The ID of the product.
+     * @return The embedding, or empty if the product has not been indexed.
+     */
+    Optional<float[]> findEmbeddingByProductId(long productId);
+
+    /**
+     * Finds the stored embeddings of several products.
+     *
+     * @param productIds The IDs of the products.
+     * @return The embeddings by product ID; products that have not been indexed are omitted.
+     */
+    default Map<Long, float[]> findEmbeddingsByProductIds(Collection<Long> productIds) {
+        Map<Long, float[]> embeddings = new LinkedHashMap<>();
+        for (Long productId : productIds) {
+            findEmbeddingByProductId(productId).ifPresent(embedding -> embeddings.put(productId, embedding));
+        }
+        return embeddings;
+    }
+
+    /**
+     * Finds the products matching a filter that are nearest to a vector.
+     *
+     * @param embedding The query vector.
+     * @param topK      The maximum number of products to return.
+     * @param filter    The filter the products must match before they are ranked.
+     * @return The nearest matching product documents, closest first.
+     */
+    List<Document> findNearest(float[] embedding, int topK, VectorSearchFilter filter);
+
+    /**
+     * Finds the products matching a filter that are nearest to a text, embedding the text first.
+     *
+     * @param text   The query text.
+     * @param topK   The maximum number of products to return.
+     * @param filter The filter the products must match before they are ranked.
+     * @return The nearest matching product documents, closest first.
+     */
+    List<Document> findNearest(String text, int topK, VectorSearchFilter filter);
+
+    /**
+     * Finds the hashes of the descriptions the documents of products were embedded from.
+     *
+     * @param productIds The IDs of the products.
+     * @return The hashes by product ID, as computed by {@link #descriptionHashOf(String)}; products without a
+     *         document, or whose document predates the hash, are omitted.
+     */
+    Map<Long, String> findDescriptionHashes(Collection<Long> productIds);
+
+    /**
+     * Writes the documents of products, replacing any existing document.
+     * The hash of each description is stored with the document.
+     * @param products   The products, with their descriptions.
+     * @param embeddings The embeddings of the product descriptions, in the order of the products.
+     */
+    void saveAll(List<Product> products, List<float[]> embeddings);
+
+    /**
+     * Updates the stored product fields of already indexed products, keeping their embeddings.
+     *
+     * @param products The products to update.
+     * @return The products that have no document and must be saved instead.
+     */
+    List<Product> updateMetadata(List<Product> products);
+
+    /**
+     * Deletes the documents of products.
+     *
+     * @param productIds The IDs of the products to remove.
+     */
+    void deleteAllByProductIds(Collection<Long> productIds);
+
+    /**
+     * Indicates whether the index is shared by all nodes, in which case the jobs writing it must run on one node
+     * at a time. Indexes held in the application process are written by every node for itself.
+     *
+     * @return True if all nodes read and write the same index.
+     */
+    default boolean isShared() {
+        return true;
+    }
+
+    /**
+     * Prepares the index for a rebuild from scratch.
+     */
+    void prepareRebuild();
+
+    /**
+     * Reads a value of the sync state.
+     *
+     * @param name The name of the value.
+     * @return The value, or empty if it is not set.
+     */
+    Optional<String> findSyncState(String name);
+
+    /**
+     * Sets a value of the sync state.
+     *
+     * @param name  The name of the value.
+     * @param value The value.
+     */
+    void saveSyncState(String name, String value);
+
+    /**
+     * Clears values of the sync state.
+     *
+     * @param names The names of the values.
+     */
+    void deleteSyncState(String... names);
+
+    /**
+     * Hashes the description a product is embedded from.
+     *
+     * @param description The description.
+     * @return The hex-encoded SHA-256 hash.
+     */
+    static String descriptionHashOf(String description) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(description.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Returns the product fields stored with a product's document.
+     * Besides the indexed id, category and price, the document carries every other field of the product
+     * response, so recommendations can be served without loading the products from the database.
+     *
+     * @param product The product.
+     * @return The metadata fields by name; fields without a value are omitted.
+     */
+    static Map<String, Object> metadataOf(Product product) {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("id", product.getId());
+        metadata.put("category", product.getCategory() == null ? "" : product.getCategory().getName());
+        metadata.put("price", product.getPrice());
+        metadata.put("name", product.getName());
+        metadata.put("imageUrl", product.getImageUrl());
+        metadata.put("enrichmentStatus", product.getEnrichmentStatus() == null ? null : product.getEnrichmentStatus().name());
+        metadata.put("lastModified", product.getLastModified() == null ? null : product.getLastModified().getTime());
+        metadata.values().removeIf(Objects::isNull);
+        return metadata;
+    }
+}
@@ -0,0 +1,295 @@
+package com.products.productservice.repositories;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Off-heap storage of the normalized embeddings of an HNSW graph, by node number.
+ * <p>
+ * Without quantization the float vectors are kept in memory and used for everything. With quantization only the
+ * codes are kept in memory and the graph is searched with approximate distances; the full vectors are read from
+ * the memory-mapped snapshot, where the operating system pages them in for re-ranking and evicts them under
+ * memory pressure. Vectors added since the last snapshot are held on the heap until the next one.
+ * <p>
+ * The vectors are kept in direct buffers of at most {@code maxChunkBytes} each, holding a power-of-two number of
+ * vectors, so the index is not bounded by the 2 GB limit of a single buffer and growing it never copies the
+ * vectors already stored. Until the first chunk is full it is grown by doubling, so small catalogues stay small.
+ * <p>
+ * Not thread-safe; guarded by the repository's lock.
+ */
+final class QuantizedVectorStorage {
+
+    static final int MAX_CHUNK_BYTES = 1 << 28; // Size of a full chunk of vectors (256 MB)
+
+    private final VectorQuantization quantization;
+    private final int dimensions;
+    private final int wordsPerVector;                // Longs per binary code
+    private final float binaryScale;                 // Magnitude of each dimension of a decoded binary code
+    private final int chunkShift;                    // log2 of the number of vectors per full chunk
+    private final int chunkMask;                     // Position of a vector within its chunk
+    private final Map<Integer, float[]> pending = new HashMap<>(); // Full vectors not in the snapshot yet
+    private int capacity;                            // Number of vectors the chunks hold
+    private FloatBuffer[] floats = new FloatBuffer[0]; // NONE: the vectors
+    private ByteBuffer[] codes = new ByteBuffer[0];    // INT8: one byte per dimension
+    private float[] scales;                          // INT8: value of one code step, per vector
+    private LongBuffer[] bits = new LongBuffer[0];     // BINARY: one bit per dimension
+    private SnapshotVectors snapshot;                // Full vectors of older nodes, in the mapped snapshot
+
+    QuantizedVectorStorage(VectorQuantization quantization, int dimensions, int capacity) {
+        this(quantization, dimensions, capacity, MAX_CHUNK_BYTES);
+    }
+
+    QuantizedVectorStorage(VectorQuantization quantization, int dimensions, int capacity, int maxChunkBytes) {
+        this.quantization = quantization;
+        this.dimensions = dimensions;
+        this.wordsPerVector = (dimensions + Long.SIZE - 1) / Long.SIZE;
+        this.binaryScale = (float) (1.0 / Math.sqrt(dimensions));
+        this.chunkShift = Math.max(0, 31 - Integer.numberOfLeadingZeros(maxChunkBytes / chunkBytesPerVector()));
+        this.chunkMask = (1 << chunkShift) - 1;
+        grow(Math.max(16, capacity));
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Returns whether search results must be re-ranked with the full vectors.
+     */
+    boolean reranks() {
+        return quantization != VectorQuantization.NONE;
+    }
+
+    /**
+     * Returns the number of bytes kept in memory per vector, excluding vectors pending a snapshot.
+     */
+    int bytesPerVector() {
+        return switch (quantization) {
+            case NONE -> dimensions * Float.BYTES;
+            case INT8 -> dimensions + Float.BYTES;
+            case BINARY -> wordsPerVector * Long.BYTES;
+        };
+    }
+
+    /**
+     * Returns the number of bytes a vector takes in its chunk; INT8 scales are kept on the heap.
+     */
+    private int chunkBytesPerVector() {
+        return quantization == VectorQuantization.INT8 ? dimensions : bytesPerVector();
+    }
+
+    /**
+     * Stores the vector of a node; nodes are added in order.
+     *
+     * @param persisted Whether the full vector is already in the snapshot about to be attached, so it is not kept.
+     */
+    void add(int node, float[] vector, boolean persisted) {
+        while (node >= capacity) {
+            grow(capacity * 2);
+        }
+        int chunk = node >>> chunkShift;
+        int index = node & chunkMask;
+        switch (quantization) {
+            case NONE -> floats[chunk].put(index * dimensions, vector);
+            case INT8 -> {
+                float maxAbs = 0f;
+                for (float value : vector) {
+                    maxAbs = Math.max(maxAbs, Math.abs(value));
+                }
+                float scale = maxAbs / 127f;
+                scales[node] = scale;
+                for (int i = 0; i < dimensions; i++) {
+                    codes[chunk].put(index * dimensions + i, scale == 0f ? 0 : (byte) Math.round(vector[i] / scale));
+                }
+                if (!persisted) {
+                    pending.put(node, vector);
+                }
+            }
+            case BINARY -> {
+                for (int word = 0; word < wordsPerVector; word++) {
+                    long signs = 0L;
+                    for (int bit = 0; bit < Long.SIZE && word * Long.SIZE + bit < dimensions; bit++) {
+                        if (vector[word * Long.SIZE + bit] > 0f) {
+                            signs |= 1L << bit;
+                        }
+                    }
+                    bits[chunk].put(index * wordsPerVector + word, signs);
+                }
+                if (!persisted) {
+                    pending.put(node, vector);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cosine distance between a normalized query and a node, computed from the in-memory encoding.
+     */
+    float approximateDistance(float[] query, int node) {
+        int chunk = node >>> chunkShift;
+        int index = node & chunkMask;
+        float dot = 0f;
+        switch (quantization) {
+            case NONE -> {
+                FloatBuffer vectors = floats[chunk];
+                int offset = index * dimensions;
+                for (int i = 0; i < dimensions; i++) {
+                    dot += query[i] * vectors.get(offset + i);
+                }
+            }
+            case INT8 -> {
+                ByteBuffer vectors = codes[chunk];
+                int offset = index * dimensions;
+                for (int i = 0; i < dimensions; i++) {
+                    dot += query[i] * vectors.get(offset + i);
+                }
+                dot *= scales[node];
+            }
+            case BINARY -> {
+                LongBuffer vectors = bits[chunk];
+                for (int word = 0; word < wordsPerVector; word++) {
+                    long signs = vectors.get(index * wordsPerVector + word);
+                    for (int bit = 0; bit < Long.SIZE && word * Long.SIZE + bit < dimensions; bit++) {
+                        float value = query[word * Long.SIZE + bit];
+                        dot += (signs & (1L << bit)) != 0 ? value : -value;
+                    }
+                }
+                dot *= binaryScale;
+            }
+        }
+        return 1f - dot;
+    }
+
+    /**
+     * Cosine distance between a normalized query and a node, computed from the full vector.
+     */
+    float exactDistance(float[] query, int node) {
+        if (quantization == VectorQuantization.NONE) {
+            return approximateDistance(query, node);
+        }
+        float[] vector = pending.get(node);
+        if (vector == null) {
+            return 1f - snapshot.dot(query, node);
+        }
+        float dot = 0f;
+        for (int i = 0; i < dimensions; i++) {
+            dot += query[i] * vector[i];
+        }
+        return 1f - dot;
+    }
+
+    /**
+     * Returns the vector the in-memory encoding stands for, used to link nodes consistently with searches.
+     */
+    float[] decode(int node) {
+        int chunk = node >>> chunkShift;
+        int index = node & chunkMask;
+        float[] vector = new float[dimensions];
+        switch (quantization) {
+            case NONE -> floats[chunk].get(index * dimensions, vector);
+            case INT8 -> {
+                for (int i = 0; i < dimensions; i++) {
+                    vector[i] = codes[chunk].get(index * dimensions + i) * scales[node];
+                }
+            }
+            case BINARY -> {
+                for (int i = 0; i < dimensions; i++) {
+                    long signs = bits[chunk].get(index * wordsPerVector + i / Long.SIZE);
+                    vector[i] = (signs & (1L << (i % Long.SIZE))) != 0 ? binaryScale : -binaryScale;
+                }
+            }
+        }
+        return vector;
+    }
+
+    /**
+     * Returns the full vector of a node.
+     */
+    float[] exact(int node) {
+        if (quantization == VectorQuantization.NONE) {
+            return decode(node);
+        }
+        float[] vector = pending.get(node);
+        if (vector != null) {
+            return vector.clone();
+        }
+        vector = new float[dimensions];
+        snapshot.read(node, vector);
+        return vector;
+    }
+
+    /**
+     * Reads the full vectors of older nodes from a snapshot instead of the heap from now on.
+     *
+     * @param vectors The full vectors held by the mapped snapshot.
+     */
+    void attachSnapshot(SnapshotVectors vectors) {
+        if (quantization == VectorQuantization.NONE) {
+            return; // The vectors are in memory already
+        }
+        snapshot = vectors;
+        pending.keySet().removeIf(node -> node < vectors.count());
+    }
+
+    /**
+     * Grows the storage to hold at least the given number of vectors: the first chunk is replaced by one twice as
+     * large until it is full, after which full chunks are added.
+     */
+    private void grow(int newCapacity) {
+        int fullChunk = 1 << chunkShift;
+        int chunkCount = newCapacity <= fullChunk ? 1 : (newCapacity + chunkMask) >>> chunkShift;
+        int firstChunk = chunkCount == 1 ? newCapacity : fullChunk;
+        int allocatedChunks = switch (quantization) {
+            case NONE -> floats.length;
+            case INT8 -> codes.length;
+            case BINARY -> bits.length;
+        };
+        floats = Arrays.copyOf(floats, quantization == VectorQuantization.NONE ? chunkCount : 0);
+        codes = Arrays.copyOf(codes, quantization == VectorQuantization.INT8 ? chunkCount : 0);
+        bits = Arrays.copyOf(bits, quantization == VectorQuantization.BINARY ? chunkCount : 0);
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            int vectors = chunk == 0 ? firstChunk : fullChunk;
+            if (chunk >= allocatedChunks || (chunk == 0 && capacity < vectors)) {
+                allocateChunk(chunk, vectors);
+            }
+        }
+        capacity = chunkCount == 1 ? firstChunk : chunkCount * fullChunk;
+        if (quantization == VectorQuantization.INT8) {
+            scales = scales == null ? new float[capacity] : Arrays.copyOf(scales, capacity);
+        }
+    }
+
+    /**
+     * Allocates a chunk for the given number of vectors, copying the vectors of the chunk it replaces.
+     */
+    private void allocateChunk(int chunk, int vectors) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(vectors * chunkBytesPerVector()).order(ByteOrder.nativeOrder());
+        switch (quantization) {
+            case NONE -> {
+                FloatBuffer grown = buffer.asFloatBuffer();
+                if (floats[chunk] != null) {
+                    grown.put(0, floats[chunk], 0, floats[chunk].capacity());
+                }
+                floats[chunk] = grown;
+            }
+            case INT8 -> {
+                if (codes[chunk] != null) {
+                    buffer.put(0, codes[chunk], 0, codes[chunk].capacity());
+                }
+                codes[chunk] = buffer;
+            }
+            case BINARY -> {
+                LongBuffer grown = buffer.asLongBuffer();
+                if (bits[chunk] != null) {
+                    grown.put(0, bits[chunk], 0, bits[chunk].capacity());
+                }
+                bits[chunk] = grown;
+            }
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package com.products.productservice.repositories;
+
+import com.products.productservice.config.RedisVectorConfig;
+import com.products.productservice.model.Product;
+import org.json.JSONArray;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.PipelineBase;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.json.Path2;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
+import redis.clients.jedis.search.Query;
+import redis.clients.jedis.search.RediSearchUtil;
+import redis.clients.jedis.search.SearchResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Redis implementation of {@link IProductVectorRepository} over the product-recommendations index.
+ * Queries the index directly with KNN, so a product's stored embedding can be reused as the query vector
+ * without calling the embedding API, and filters are applied inside the index before the neighbours are ranked.
+ * Writes of a batch are sent in a single pipeline.
+ */
+@Repository
+@ConditionalOnProperty(name = "product.vector-store.type", havingValue = "redis", matchIfMissing = true)
+public class RedisProductVectorRepository implements IProductVectorRepository {
+
+    private static final String SCORE_FIELD = "vector_score"; // Cosine distance returned by the KNN query
+    private static final Path2 EMBEDDING_PATH = Path2.of("$.embedding"); // Path of the embedding in a document
+    private static final String DESCRIPTION_HASH_FIELD = "descriptionHash"; // Hash of the embedded description
+    private static final String[] RETURN_FIELDS = {
+            "content", "id", "category", "price", "name", "imageUrl", "enrichmentStatus", "lastModified", SCORE_FIELD
+    };
+
+    private final JedisPooled jedisPooled;       // Redis connection holding the index
+    private final EmbeddingModel embeddingModel; // Model used to embed text queries
+
+    /**
+     * Constructor for RedisProductVectorRepository.
+     *
+     * @param jedisPooled    The Redis connection pool.
+     * @param embeddingModel The embedding model used for text queries.
+     */
+    public RedisProductVectorRepository(JedisPooled jedisPooled,
+                                        @Qualifier("openAiEmbeddingModel") EmbeddingModel embeddingModel) {
+        this.jedisPooled = jedisPooled;
+        this.embeddingModel = embeddingModel;
+    }
+
+    /**
+     * Reads the embedding stored in a product's document.
+     *
+     * @param productId The ID of the product.
+     * @return The embedding, or empty if the document does not exist.
+     */
+    @Override
+    public Optional<float[]> findEmbeddingByProductId(long productId) {
+        return toEmbedding(jedisPooled.jsonGet(RedisVectorConfig.PREFIX + productId, EMBEDDING_PATH));
+    }
+
+    /**
+     * Reads the embeddings stored in several products' documents in one pipeline.
+     *
+     * @param productIds The IDs of the products.
+     * @return The embeddings by product ID; products without a document are omitted.
+     */
+    @Override
+    public Map<Long, float[]> findEmbeddingsByProductIds(Collection<Long> productIds) {
+        Map<Long, Response<Object>> responses = new LinkedHashMap<>();
+        try (PipelineBase pipeline = jedisPooled.pipelined()) {
+            for (Long productId : productIds) {
+                responses.put(productId, pipeline.jsonGet(RedisVectorConfig.PREFIX + productId, EMBEDDING_PATH));
+            }
+            pipeline.sync();
+        }
+        Map<Long, float[]> embeddings = new LinkedHashMap<>();
+        responses.forEach((productId, response) ->
+                toEmbedding(response.get()).ifPresent(embedding -> embeddings.put(productId, embedding)));
+        return embeddings;
+    }
+
+    /**
+     * Parses the result of a JSONPath query for a document's embedding.
+     *
+     * @param result The query result.
+     * @return The embedding, or empty if the document does not exist.
+     */
+    private static Optional<float[]> toEmbedding(Object result) {
+        // A JSONPath query returns an array of matches; the single match is the embedding array
+        if (!(result instanceof JSONArray matches) || matches.isEmpty() || !(matches.get(0) instanceof JSONArray values)) {
+            return Optional.empty();
+        }
+        float[] embedding = new float[values.length()];
+        for (int i = 0; i < embedding.length; i++) {
+            embedding[i] = values.getFloat(i);
+        }
+        return Optional.of(embedding);
+    }
+
+    /**
+     * Runs a KNN query over the index, pre-filtered on the indexed metadata fields.
+     *
+     * @param embedding The query vector.
+     * @param topK      The maximum number of products to return.
+     * @param filter    The filter the products must match before they are ranked.
+     * @return The nearest matching product documents, closest first.
+     */
+    @Override
+    public List<Document> findNearest(float[] embedding, int topK, VectorSearchFilter filter) {
+        Query query = new Query(toQuery(filter) + "=>[KNN " + topK + " @embedding $BLOB AS " + SCORE_FIELD + "]")
+                .addParam("BLOB", RediSearchUtil.toByteArray(embedding))
+                .returnFields(RETURN_FIELDS)
+                .setSortBy(SCORE_FIELD, true)
+                .limit(0, topK)
+                .dialect(2);
+        SearchResult result = jedisPooled.ftSearch(RedisVectorConfig.INDEX_NAME, query);
+
+        List<Document> documents = new ArrayList<>(result.getDocuments().size());
+        for (redis.clients.jedis.search.Document hit : result.getDocuments()) {
+            documents.add(toDocument(hit));
+        }
+        return documents;
+    }
+
+    /**
+     * Embeds a text and runs a pre-filtered KNN query with it.
+     *
+     * @param text   The query text.
+     * @param topK   The maximum number of products to return.
+     * @param filter The filter the products must match before they are ranked.
+     * @return The nearest matching product documents, closest first.
+     */
+    @Override
+    public List<Document> findNearest(String text, int topK, VectorSearchFilter filter) {
+        return findNearest(embeddingModel.embed(text), topK, filter);
+    }
+
+    /**
+     * Renders a filter as the query expression the KNN clause is applied to.
+     * Uses the category tag field and the numeric price and id fields declared by the vector store schema.
+     *
+     * @param filter The filter.
+     * @return The filter expression, or "*" to consider every document.
+     */
+    private static String toQuery(VectorSearchFilter filter) {
+        StringBuilder query = new StringBuilder();
+        if (filter.category() != null) {
+            query.append("@category:{").append(escapeTag(filter.category())).append("} ");
+        }
+        if (filter.minPrice() != null || filter.maxPrice() != null) {
+            query.append("@price:[")
+                    .append(filter.minPrice() == null ? "-inf" : filter.minPrice()).append(' ')
+                    .append(filter.maxPrice() == null ? "+inf" : filter.maxPrice()).append("] ");
+        }
+        if (filter.excludedId() != null) {
+            query.append("-@id:[").append(filter.excludedId()).append(' ').append(filter.excludedId()).append("] ");
+        }
+        return query.isEmpty() ? "*" : "(" + query.toString().trim() + ")";
+    }
+
+    /**
+     * Escapes a tag value, so category names with spaces or punctuation match as a single tag.
+     *
+     * @param value The tag value.
+     * @return The escaped value.
+     */
+    private static String escapeTag(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (!Character.isLetterOrDigit(c) && c != '_') {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Writes the documents of products in one pipeline, in the same JSON layout as the RedisVectorStore:
+     * content, embedding and the metadata fields at the root.
+     *
+     * @param products   The products, with their descriptions.
+     * @param embeddings The embeddings of the product descriptions, in the order of the products.
+     */
+    @Override
+    public void saveAll(List<Product> products, List<float[]> embeddings) {
+        try (PipelineBase pipeline = jedisPooled.pipelined()) {
+            for (int i = 0; i < products.size(); i++) {
+                Product product = products.get(i);
+                Map<String, Object> document = new LinkedHashMap<>();
+                document.put("content", product.getDescription());
+                document.put("embedding", embeddings.get(i));
+                document.put(DESCRIPTION_HASH_FIELD, IProductVectorRepository.descriptionHashOf(product.getDescription()));
+                document.putAll(IProductVectorRepository.metadataOf(product));
+                pipeline.jsonSetWithEscape(RedisVectorConfig.PREFIX + product.getId(), Path2.ROOT_PATH, document);
+            }
+            pipeline.sync();
+        }
+    }
+
+    /**
+     * Reads the description hashes stored in several products' documents in one pipeline.
+     *
+     * @param productIds The IDs of the products.
+     * @return The hashes by product ID; products without a document, or without a hash, are omitted.
+     */
+    @Override
+    public Map<Long, String> findDescriptionHashes(Collection<Long> productIds) {
+        Map<Long, Response<Object>> responses = new LinkedHashMap<>();
+        try (PipelineBase pipeline = jedisPooled.pipelined()) {
+            for (Long productId : productIds) {
+                responses.put(productId, pipeline.jsonGet(RedisVectorConfig.PREFIX + productId,
+                        Path2.of("$." + DESCRIPTION_HASH_FIELD)));
+            }
+            pipeline.sync();
+        }
+        Map<Long, String> hashes = new HashMap<>();
+        responses.forEach((productId, response) -> {
+            // A JSONPath query returns an array of matches, empty if the document lacks the field
+            if (response.get() instanceof JSONArray matches && !matches.isEmpty() && matches.get(0) instanceof String hash) {
+                hashes.put(productId, hash);
+            }
+        });
+        return hashes;
+    }
+
+    /**
+     * Updates the metadata paths of existing documents in one pipeline.
+     *
+     * @param products The products to update.
+     * @return The products whose document does not exist.
+     */
+    @Override
+    public List<Product> updateMetadata(List<Product> products) {
+        if (products.isEmpty()) {
+            return List.of();
+        }
+        List<Response<String>> responses = new ArrayList<>(products.size());
+        try (PipelineBase pipeline = jedisPooled.pipelined()) {
+            for (Product product : products) {
+                String key = RedisVectorConfig.PREFIX + product.getId();
+                Response<String> first = null;
+                for (Map.Entry<String, Object> field : IProductVectorRepository.metadataOf(product).entrySet()) {
+                    Response<String> response = pipeline.jsonSetWithEscape(key, Path2.of("$." + field.getKey()), field.getValue());
+                    first = first == null ? response : first;
+                }
+                responses.add(first);
+            }
+            pipeline.sync();
+        }
+        List<Product> missing = new ArrayList<>();
+        for (int i = 0; i < products.size(); i++) {
+            try {
+                responses.get(i).get();
+            } catch (JedisDataException e) {
+                missing.add(products.get(i)); // Only the root path can be set on a missing key
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Deletes the documents of products in one pipeline.
+     *
+     * @param productIds The IDs of the products to remove.
+     */
+    @Override
+    public void deleteAllByProductIds(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        try (PipelineBase pipeline = jedisPooled.pipelined()) {
+            for (Long productId : productIds) {
+                pipeline.jsonDel(RedisVectorConfig.PREFIX + productId);
+            }
+            pipeline.sync();
+        }
+    }
+
+    /**
+     * Deletes documents whose ID is not a product ID, written by the former full syncs with random document IDs.
+     * Documents of products are kept, so recommendations keep working while the rebuild runs.
+     */
+    @Override
+    public void prepareRebuild() {
+        ScanParams scanParams = new ScanParams().match(RedisVectorConfig.PREFIX + "*").count(1000);
+        String cursor = ScanParams.SCAN_POINTER_START;
+        do {
+            ScanResult<String> page = jedisPooled.scan(cursor, scanParams);
+            String[] legacyKeys = page.getResult().stream()
+                    .filter(key -> !key.substring(RedisVectorConfig.PREFIX.length()).matches("\\d+"))
+                    .toArray(String[]::new);
+            if (legacyKeys.length > 0) {
+                jedisPooled.del(legacyKeys);
+            }
+            cursor = page.getCursor();
+        } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+    }
+
+    /**
+     * Reads a value of the sync state, stored as a plain Redis key named after it.
+     *
+     * @param name The name of the value.
+     * @return The value, or empty if it is not set.
+     */
+    @Override
+    public Optional<String> findSyncState(String name) {
+        return Optional.ofNullable(jedisPooled.get(name));
+    }
+
+    /**
+     * Sets a value of the sync state.
+     *
+     * @param name  The name of the value.
+     * @param value The value.
+     */
+    @Override
+    public void saveSyncState(String name, String value) {
+        jedisPooled.set(name, value);
+    }
+
+    /**
+     * Clears values of the sync state.
+     *
+     * @param names The names of the values.
+     */
+    @Override
+    public void deleteSyncState(String... names) {
+        jedisPooled.del(names);
+    }
+
+    /**
+     * Converts a search hit into a document with the product fields as metadata.
+     *
+     * @param hit The search hit.
+     * @return The document, identified by product ID.
+     */
+    private static Document toDocument(redis.clients.jedis.search.Document hit) {
+        Map<String, Object> metadata = new HashMap<>();
+        for (String field : RETURN_FIELDS) {
+            if (!field.equals("content") && !field.equals(SCORE_FIELD) && hit.hasProperty(field)) {
+                metadata.put(field, hit.getString(field));
+            }
+        }
+        metadata.put(DISTANCE_METADATA_KEY, Double.parseDouble(hit.getString(SCORE_FIELD)));
+        String id = hit.getId().substring(RedisVectorConfig.PREFIX.length());
+        return new Document(id, hit.hasProperty("content") ? hit.getString("content") : "", metadata);
+    }
+}
@@ -0,0 +1,86 @@
+package com.products.productservice.repositories;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The full vectors of the nodes written to an HNSW snapshot, read from memory mappings of the snapshot file.
+ * The vectors section is mapped in regions holding a whole number of vectors, each at most
+ * {@code maxRegionBytes}, so snapshots are not limited to the 2 GB a single mapping can cover.
+ * The mappings stay valid after the file is replaced by a newer snapshot.
+ */
+final class SnapshotVectors {
+
+    static final int MAX_REGION_BYTES = 1 << 30; // Size of a full region of the mapping (1 GB)
+
+    private final ByteBuffer[] regions;  // Mapped regions of the vectors section
+    private final int dimensions;        // Floats per vector
+    private final int vectorsPerRegion;  // Vectors in every region but the last
+    private final int count;             // Number of vectors
+
+    SnapshotVectors(ByteBuffer[] regions, int dimensions, int vectorsPerRegion, int count) {
+        this.regions = regions;
+        this.dimensions = dimensions;
+        this.vectorsPerRegion = vectorsPerRegion;
+        this.count = count;
+    }
+
+    /**
+     * Maps the vectors section of a snapshot file.
+     *
+     * @param file           The snapshot file.
+     * @param offset         The position of the vector of node 0.
+     * @param dimensions     The number of floats per vector.
+     * @param count          The number of vectors.
+     * @param maxRegionBytes The maximum size of a mapped region.
+     * @return The mapped vectors.
+     * @throws IOException If the file cannot be mapped.
+     */
+    static SnapshotVectors map(Path file, long offset, int dimensions, int count, int maxRegionBytes) throws IOException {
+        int vectorBytes = dimensions * Float.BYTES;
+        int vectorsPerRegion = Math.max(1, maxRegionBytes / vectorBytes);
+        ByteBuffer[] regions = new ByteBuffer[(count + vectorsPerRegion - 1) / vectorsPerRegion];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int region = 0; region < regions.length; region++) {
+                int vectors = Math.min(vectorsPerRegion, count - region * vectorsPerRegion);
+                long position = offset + (long) region * vectorsPerRegion * vectorBytes;
+                regions[region] = channel.map(FileChannel.MapMode.READ_ONLY, position, (long) vectors * vectorBytes);
+            }
+        }
+        return new SnapshotVectors(regions, dimensions, vectorsPerRegion, count);
+    }
+
+    /**
+     * Returns the number of vectors in the snapshot.
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * Computes the dot product of a query and the vector of a node.
+     */
+    float dot(float[] query, int node) {
+        ByteBuffer region = regions[node / vectorsPerRegion];
+        int position = (node % vectorsPerRegion) * dimensions * Float.BYTES;
+        float dot = 0f;
+        for (int i = 0; i < dimensions; i++) {
+            dot += query[i] * region.getFloat(position + i * Float.BYTES);
+        }
+        return dot;
+    }
+
+    /**
+     * Copies the vector of a node.
+     */
+    void read(int node, float[] vector) {
+        ByteBuffer region = regions[node / vectorsPerRegion];
+        int position = (node % vectorsPerRegion) * dimensions * Float.BYTES;
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = region.getFloat(position + i * Float.BYTES);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.products.productservice.repositories;
+
+/**
+ * Encoding of the embeddings the in-process vector index searches with.
+ * Quantized encodings shrink the resident index; the nearest candidates are re-ranked with the full vectors.
+ * Only NONE is used by the application, as the quantized encodings did not search faster (see
+ * HnswProductVectorRepositoryBenchmark).
+ */
+public enum VectorQuantization {
+    /**
+     * 32-bit floats, 4 bytes per dimension.
+     */
+    NONE,
+    /**
+     * One signed byte per dimension, scaled per vector, plus 4 bytes for the scale.
+     */
+    INT8,
+    /**
+     * One bit per dimension, holding its sign.
+     */
+    BINARY
+}
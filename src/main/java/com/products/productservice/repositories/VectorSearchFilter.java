@@ -0,0 +1,43 @@
+package com.products.productservice.repositories;
+
+/**
+ * Pre-filter applied to a nearest-neighbour query over product embeddings.
+ * Only products matching every set criterion are considered, so the topK hits all satisfy the filter.
+ *
+ * @param category   The category name the products must have, or null for any category.
+ * @param minPrice   The inclusive lower price bound, or null for none.
+ * @param maxPrice   The inclusive upper price bound, or null for none.
+ * @param excludedId The ID of a product to leave out, typically the product recommendations are made for, or null.
+ */
+public record VectorSearchFilter(String category, Double minPrice, Double maxPrice, Long excludedId) {
+
+    /**
+     * A filter matching every product.
+     */
+    public static final VectorSearchFilter NONE = new VectorSearchFilter(null, null, null, null);
+
+    /**
+     * Creates a filter leaving out a single product.
+     *
+     * @param productId The ID of the product to leave out.
+     * @return The filter.
+     */
+    public static VectorSearchFilter excluding(long productId) {
+        return new VectorSearchFilter(null, null, null, productId);
+    }
+
+    /**
+     * Checks whether a product satisfies this filter, for stores that filter in process.
+     *
+     * @param productId The ID of the product.
+     * @param category  The category name of the product, or null if it has none.
+     * @param price     The price of the product.
+     * @return True if the product matches every set criterion.
+     */
+    public boolean matches(long productId, String category, double price) {
+        return (this.category == null || this.category.equals(category))
+                && (minPrice == null || price >= minPrice)
+                && (maxPrice == null || price <= maxPrice)
+                && (excludedId == null || excludedId != productId);
+    }
+}
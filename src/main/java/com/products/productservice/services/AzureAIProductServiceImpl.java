@@ -1,23 +1,15 @@
 package com.products.productservice.services;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.products.productservice.model.AIGenerationType;
-import com.products.productservice.model.Category;
-import com.products.productservice.repositories.IAIGenerationLogRepository;
-import com.products.productservice.repositories.IAIGenerationTypeRepository;
-import com.products.productservice.utils.HttpUrlConfig;
-import lombok.AllArgsConstructor;
-import lombok.NoArgsConstructor;
+import com.products.productservice.utils.JsonHttpClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.net.URL;
-import java.util.Optional;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Service implementation for interacting with Azure AI services.
@@ -27,44 +19,38 @@ import java.util.Optional;
  */
 @Service
 @Lazy
-@NoArgsConstructor
-@AllArgsConstructor
 public class AzureAIProductServiceImpl implements IAIImageService, IAIChatService {
 
-    /**
-     * API key for Azure Chat service.
-     * Retrieved from application properties.
-     */
-    @Value("${azure.openai.api-key.AiChatKey}")
-    private String azureChatApiKey;
+    private final String azureChatApiKey;         // API key for Azure Chat service
+    private final String azureImageApiKey;        // API key for Azure Image service
+    private final String productImagePath;        // Path to save generated product images
+    private final String azureChatUrl;            // Endpoint URL for Azure Chat service
+    private final String azureImageUrl;           // Endpoint URL for Azure Image service
+    private final JsonHttpClient jsonHttpClient;  // Client used to call the Azure endpoints over pooled connections
 
     /**
-     * API key for Azure Image service.
-     * Retrieved from application properties.
-     */
-    @Value("${azure.openai.api-key.AiImageKey}")
-    private String azureImageApiKey;
-
-    /**
-     * Path to save generated product images.
-     * Configured in application properties.
-     */
-    @Value("${product.image.path}")
-    private String productImagePath;
-
-    /**
-     * Endpoint URL for Azure Chat service.
-     * Configured in application properties.
-     */
-    @Value("${azure.openai.endpoint.AiChatURL}")
-    private String azureChatUrl;
-
-    /**
-     * Endpoint URL for Azure Image service.
-     * Configured in application properties.
+     * Constructor for AzureAIProductServiceImpl.
+     *
+     * @param azureChatApiKey  API key for Azure Chat service.
+     * @param azureImageApiKey API key for Azure Image service.
+     * @param productImagePath Path to save generated product images.
+     * @param azureChatUrl     Endpoint URL for Azure Chat service.
+     * @param azureImageUrl    Endpoint URL for Azure Image service.
+     * @param jsonHttpClient   Client used to call the Azure endpoints.
      */
-    @Value("${azure.openai.endpoint.AiImageURL}")
-    private String azureImageUrl;
+    public AzureAIProductServiceImpl(@Value("${azure.openai.api-key.AiChatKey}") String azureChatApiKey,
+                                     @Value("${azure.openai.api-key.AiImageKey}") String azureImageApiKey,
+                                     @Value("${product.image.path}") String productImagePath,
+                                     @Value("${azure.openai.endpoint.AiChatURL}") String azureChatUrl,
+                                     @Value("${azure.openai.endpoint.AiImageURL}") String azureImageUrl,
+                                     JsonHttpClient jsonHttpClient) {
+        this.azureChatApiKey = azureChatApiKey;
+        this.azureImageApiKey = azureImageApiKey;
+        this.productImagePath = productImagePath;
+        this.azureChatUrl = azureChatUrl;
+        this.azureImageUrl = azureImageUrl;
+        this.jsonHttpClient = jsonHttpClient;
+    }
 
     /**
      * Generates a response from Azure AI Chat service based on the provided prompts.
@@ -75,34 +61,23 @@ public class AzureAIProductServiceImpl implements IAIImageService, IAIChatServic
      */
     @Override
     public String GenerateResponse(String systemPrompt, String userPrompt) {
-        // Construct the request body for the Azure Chat API
-        String requestBody = "{\n" +
-                "  \"messages\":[\n" +
-                "\t{\n" +
-                "\t\t\"role\": \"system\",\n" +
-                "\t\t\"content\": \"" + systemPrompt + "\"\n" +
-                "\t},\n" +
-                "\t{\n" +
-                "\t\t\"role\": \"user\",\n" +
-                "\t\t\"content\": \"" + userPrompt + "\"\n" +
-                "\t}\n" +
-                "],\n" +
-                "  \"frequency_penalty\": 0,\n" +
-                "  \"presence_penalty\": 0,\n" +
-                "  \"max_completion_tokens\": 800,\n" +
-                "  \"stop\": null\n" +
-                "}";
+        // Construct the request body for the Azure Chat API; Jackson escapes the prompts
+        Map<String, Object> requestBody = new LinkedHashMap<>();
+        requestBody.put("messages", List.of(
+                Map.of("role", "system", "content", systemPrompt),
+                Map.of("role", "user", "content", userPrompt)));
+        requestBody.put("frequency_penalty", 0);
+        requestBody.put("presence_penalty", 0);
+        requestBody.put("max_completion_tokens", 800);
+        requestBody.put("stop", null);
         try {
-            // Send the POST request and parse the response
-            String responseBody = HttpUrlConfig.sendPostRequest(azureChatUrl, azureChatApiKey, requestBody);
-            if (responseBody != null) {
-                ObjectMapper objectMapper = new ObjectMapper();
-                JsonNode rootNode = objectMapper.readTree(responseBody);
-                // Extract the content of the response from the JSON path
-                return rootNode.at("/choices/0/message/content").asText();
-            }
+            // Send the POST request and extract the content of the response from the JSON path
+            JsonNode rootNode = jsonHttpClient.postJson("azure-chat", azureChatUrl, azureChatApiKey, requestBody);
+            return rootNode.at("/choices/0/message/content").asText();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Generation was cancelled
         } catch (Exception e) {
-            e.printStackTrace(); // Log the exception for debugging
+            System.err.println("Failed to generate a chat response: " + e.getMessage());
         }
         return null; // Return null if an error occurs or no response received
     }
@@ -117,37 +92,23 @@ public class AzureAIProductServiceImpl implements IAIImageService, IAIChatServic
     @Override
     public String GenerateImage(String prompt, String imageName) {
         // Construct the request body for the Azure Image API
-        String requestBody = "{\n" +
-                "    \"prompt\": \"" + prompt + "\",\n" +
-                "    \"n\": 1,\n" +
-                "    \"size\": \"1024x1024\"\n" +
-                "}";
+        Map<String, Object> requestBody = new LinkedHashMap<>();
+        requestBody.put("prompt", prompt);
+        requestBody.put("n", 1);
+        requestBody.put("size", "1024x1024");
         try {
-            // Send the POST request and parse the response
-            String responseBody = HttpUrlConfig.sendPostRequest(azureImageUrl, azureImageApiKey, requestBody);
-            if (responseBody != null) {
-                ObjectMapper objectMapper = new ObjectMapper();
-                JsonNode rootNode = objectMapper.readTree(responseBody);
-                // Extract the image URL from the response JSON
-                String imageUrl = rootNode.at("/data/0/url").asText();
-                // Define the output file path with timestamp to ensure uniqueness
-                String outputFilePath = productImagePath + "\\" + imageName + "_" + System.currentTimeMillis() + ".png";
-                try (BufferedInputStream inputStream = new BufferedInputStream(new URL(imageUrl).openStream());
-                     FileOutputStream fileOutputStream = new FileOutputStream(outputFilePath)) {
-                    // Download and save the image in chunks
-                    byte[] dataBuffer = new byte[1024];
-                    int bytesRead;
-                    while ((bytesRead = inputStream.read(dataBuffer, 0, 1024)) != -1) {
-                        fileOutputStream.write(dataBuffer, 0, bytesRead);
-                    }
-                    return outputFilePath; // Return the file path of the saved image
-                } catch (IOException e) {
-                    System.err.println("Failed to download the image: " + e.getMessage()); // Log specific download error
-                }
-            }
+            // Send the POST request and extract the image URL from the response JSON
+            JsonNode rootNode = jsonHttpClient.postJson("azure-image", azureImageUrl, azureImageApiKey, requestBody);
+            String imageUrl = rootNode.at("/data/0/url").asText();
+            // Define the output file path with timestamp to ensure uniqueness
+            Path outputFilePath = Path.of(productImagePath, imageName + "_" + System.currentTimeMillis() + ".png");
+            // Stream the image straight to the file
+            return jsonHttpClient.download("azure-image-download", imageUrl, outputFilePath).toString();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Generation was cancelled
         } catch (Exception e) {
-            e.printStackTrace(); // Log any other exceptions
+            System.err.println("Failed to generate the image: " + e.getMessage());
         }
         return null; // Return null if any step fails
     }
-}
\ No newline at end of file
+}
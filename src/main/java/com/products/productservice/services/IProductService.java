@@ -1,10 +1,13 @@
 package com.products.productservice.services;
 
+import com.products.productservice.dtos.ProductVersionDto;
 import com.products.productservice.exception.ProductNotFoundException;
 import com.products.productservice.model.Product;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Interface for managing product-related operations.
@@ -29,6 +32,30 @@ public interface IProductService {
      */
     List<Product> getAllProducts();
 
+    /**
+     * Retrieves the ID and version of the products following the given ID, ordered by ID.
+     *
+     * @param afterId The ID after which to start (exclusive).
+     * @param limit   The maximum number of versions to return.
+     * @return A list of product versions.
+     */
+    List<ProductVersionDto> getProductVersionsAfter(long afterId, int limit);
+
+    /**
+     * Passes every product to the given consumer, one at a time, without holding the catalogue in memory.
+     *
+     * @param consumer The consumer receiving each product.
+     */
+    void streamAllProducts(Consumer<Product> consumer);
+
+    /**
+     * Retrieves the products with the given IDs in a single query.
+     *
+     * @param ids The IDs of the products to retrieve.
+     * @return A list of the matching products, in no particular order.
+     */
+    List<Product> getProductsByIds(Collection<Long> ids);
+
     /**
      * Creates a new product with the specified details.
      *
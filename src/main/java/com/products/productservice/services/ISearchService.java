@@ -1,8 +1,5 @@
 package com.products.productservice.services;
 
-import com.products.productservice.model.Product;
-import org.springframework.data.domain.Page;
-
 /**
  * Interface for defining search-related operations for products.
  */
@@ -11,11 +8,23 @@ public interface ISearchService {
     /**
      * Searches for products based on a query string, with pagination and sorting.
      *
-     * @param query      The search query to filter products by name.
+     * @param query      The search query to match against product names, descriptions and categories.
      * @param pageNumber The page number for pagination.
      * @param pageSize   The number of items per page.
-     * @param sortParam  The parameter to sort the results by.
-     * @return A paginated list of products matching the search query.
+     * @param sortParam  The order of the results: relevance (default), price, createdAt or name.
+     * @return The IDs and versions of the products on the page, in the requested order.
+     */
+    SearchResults search(String query, int pageNumber, int pageSize, String sortParam);
+
+    /**
+     * Searches for products based on a query string, continuing after the previous page through a cursor.
+     * A cursor is only valid at the catalogue version it was issued at.
+     *
+     * @param query     The search query to match against product names, descriptions and categories.
+     * @param cursor    The cursor returned with the previous page, or null for the first page.
+     * @param pageSize  The number of items per page.
+     * @param sortParam The order of the results; only relevance is supported.
+     * @return The IDs and versions of the products on the page, with the cursor of the next page.
      */
-    Page<Product> search(String query, int pageNumber, int pageSize, String sortParam);
+    SearchResults searchAfter(String query, String cursor, int pageSize, String sortParam);
 }
\ No newline at end of file
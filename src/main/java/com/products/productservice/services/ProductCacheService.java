@@ -0,0 +1,273 @@
+package com.products.productservice.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.products.productservice.events.ProductChangedEvent;
+import com.products.productservice.exception.ProductNotFoundException;
+import com.products.productservice.model.CachedProduct;
+import com.products.productservice.model.Product;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Two-tier cache for Product entities.
+ * A size-bounded in-process near-cache (Caffeine, W-TinyLFU eviction) sits in front of the shared
+ * Redis PRODUCTMAP hash. Invalidations are broadcast to every node through Redis pub/sub so that
+ * near-caches on other instances drop their copy when a product changes.
+ * Entries are versioned by the product's lastModified timestamp and written through after commit,
+ * so product mutations never leave a stale or deleted product in the cache.
+ * Deleted products are cached as tombstones, which stop slow readers from caching the product again. Once older
+ * than any read still in flight, tombstones are pruned, so the hashes do not grow with every deleted product.
+ */
+@Service
+public class ProductCacheService implements MessageListener {
+
+    /**
+     * Name of the Redis hash holding cached products.
+     */
+    public static final String PRODUCT_MAP = "PRODUCTMAP";
+
+    /**
+     * Redis pub/sub channel on which product invalidations are broadcast.
+     */
+    public static final String INVALIDATION_CHANNEL = "PRODUCTMAP_INVALIDATION";
+
+    /**
+     * Name of the Redis hash holding the version of each entry of PRODUCTMAP, under the same hash key.
+     */
+    public static final String PRODUCT_VERSIONS = "PRODUCTMAP_VERSIONS";
+
+    /**
+     * Name of the Redis sorted set holding the hash key of each tombstone in PRODUCTMAP, scored by its version.
+     */
+    public static final String PRODUCT_TOMBSTONES = "PRODUCTMAP_TOMBSTONES";
+
+    /**
+     * Stores an entry unless a newer version is already cached. Compares and sets a single product atomically,
+     * so writes to different products never conflict. Tombstones are also indexed by version for pruning.
+     * KEYS: PRODUCTMAP, PRODUCTMAP_VERSIONS, PRODUCTMAP_TOMBSTONES.
+     * ARGV: hash key, version, serialized entry, 1 for a tombstone else 0. Returns 1 if written.
+     */
+    private static final RedisScript<Long> WRITE_THROUGH_SCRIPT = new DefaultRedisScript<>(
+            "local current = redis.call('HGET', KEYS[2], ARGV[1]) " +
+            "if current and tonumber(current) > tonumber(ARGV[2]) then return 0 end " +
+            "redis.call('HSET', KEYS[1], ARGV[1], ARGV[3]) " +
+            "redis.call('HSET', KEYS[2], ARGV[1], ARGV[2]) " +
+            "if ARGV[4] == '1' then redis.call('ZADD', KEYS[3], ARGV[2], ARGV[1]) " +
+            "else redis.call('ZREM', KEYS[3], ARGV[1]) end " +
+            "return 1", Long.class);
+
+    /**
+     * Removes tombstones whose version is at most a cutoff from both hashes. Runs atomically with the write-through
+     * script, so an entry written after a tombstone is never removed in its place.
+     * KEYS: PRODUCTMAP, PRODUCTMAP_VERSIONS, PRODUCTMAP_TOMBSTONES. ARGV: cutoff version, maximum number to remove.
+     * Returns the number removed.
+     */
+    private static final RedisScript<Long> PRUNE_TOMBSTONES_SCRIPT = new DefaultRedisScript<>(
+            "local keys = redis.call('ZRANGEBYSCORE', KEYS[3], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2]) " +
+            "for _, key in ipairs(keys) do " +
+            "redis.call('HDEL', KEYS[1], key) " +
+            "redis.call('HDEL', KEYS[2], key) " +
+            "redis.call('ZREM', KEYS[3], key) " +
+            "end " +
+            "return #keys", Long.class);
+
+    private static final int PRUNE_BATCH_SIZE = 1000; // Tombstones removed per script call, bounding its run time
+
+    private final RedisTemplate<String, Object> redisTemplate;     // Template for the shared PRODUCTMAP hash
+    private final StringRedisTemplate stringRedisTemplate;         // Template for publishing invalidation messages
+    private final Cache<Long, CachedProduct> nearCache;            // Local, size-bounded near-cache
+    private final Counter redisHits;                               // Near-cache misses served by Redis
+    private final Counter redisMisses;                             // Near-cache misses that went to the database
+    private final Counter prunedTombstones;                        // Tombstones removed from Redis
+    private final Duration tombstoneRetention;                     // How long tombstones outlive their deletion
+
+    /**
+     * Functional interface used to load a product from the source of truth on a cache miss.
+     */
+    @FunctionalInterface
+    public interface ProductLoader {
+        Product load(long id) throws ProductNotFoundException;
+    }
+
+    /**
+     * Constructor for ProductCacheService.
+     *
+     * @param redisTemplate       The Redis template for the shared product hash.
+     * @param stringRedisTemplate The Redis template used to publish invalidation messages.
+     * @param meterRegistry       The registry where cache hit/miss/eviction metrics are published.
+     * @param maximumSize         Maximum number of products kept in the near-cache.
+     * @param expireAfterWrite    Safety-net TTL for near-cache entries in case an invalidation message is lost.
+     * @param tombstoneRetention  How long tombstones are kept; longer than any read from the database takes.
+     */
+    public ProductCacheService(RedisTemplate<String, Object> redisTemplate,
+                               StringRedisTemplate stringRedisTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${product.cache.near.maximum-size:10000}") long maximumSize,
+                               @Value("${product.cache.near.expire-after-write:PT5M}") Duration expireAfterWrite,
+                               @Value("${product.cache.tombstone-retention:PT1H}") Duration tombstoneRetention) {
+        this.redisTemplate = redisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        // Publishes cache.gets (hit/miss), cache.evictions and cache.size for the near-cache
+        CaffeineCacheMetrics.monitor(meterRegistry, nearCache, "productNearCache");
+        this.redisHits = Counter.builder("product.cache.redis.gets").tag("result", "hit").register(meterRegistry);
+        this.redisMisses = Counter.builder("product.cache.redis.gets").tag("result", "miss").register(meterRegistry);
+        this.prunedTombstones = Counter.builder("product.cache.redis.tombstones.pruned").register(meterRegistry);
+        this.tombstoneRetention = tombstoneRetention;
+    }
+
+    /**
+     * Retrieves a product by its ID, consulting the near-cache, then Redis, then the given loader.
+     * Products loaded from a lower tier are written back to the tiers above it.
+     *
+     * @param id     The ID of the product to retrieve.
+     * @param loader Loader used when the product is cached in neither tier.
+     * @return The product with the specified ID.
+     * @throws ProductNotFoundException If the product is deleted or the loader cannot find it.
+     */
+    public Product getProduct(long id, ProductLoader loader) throws ProductNotFoundException {
+        // Serve from the local near-cache without a network round trip
+        CachedProduct entry = nearCache.getIfPresent(id);
+        if (entry == null) {
+            // Fall back to the shared Redis hash
+            entry = toEntry(redisTemplate.opsForHash().get(PRODUCT_MAP, hashKey(id)));
+            if (entry != null) {
+                redisHits.increment();
+            } else {
+                redisMisses.increment();
+                // Load the product from the source of truth. Only populate Redis if no writer got there first,
+                // so a slow reader can never overwrite a newer write-through entry or tombstone.
+                entry = CachedProduct.of(loader.load(id));
+                if (!Boolean.TRUE.equals(redisTemplate.opsForHash().putIfAbsent(PRODUCT_MAP, hashKey(id), entry))) {
+                    // A writer got there first; keep its entry rather than the product as loaded
+                    CachedProduct written = toEntry(redisTemplate.opsForHash().get(PRODUCT_MAP, hashKey(id)));
+                    entry = written != null ? written : entry;
+                }
+            }
+            nearCache.put(id, entry);
+        }
+        if (entry.isTombstone()) {
+            throw new ProductNotFoundException("Product is not found for Id " + id);
+        }
+        return entry.getProduct();
+    }
+
+    /**
+     * Writes a changed product through to the cache once the change has been committed.
+     * Falls back to immediate execution when the event is published outside a transaction.
+     *
+     * @param event The event describing the changed product.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        CachedProduct entry = event.isDeleted()
+                ? CachedProduct.tombstone(event.getChangedAt())
+                : CachedProduct.of(event.getProduct());
+        writeThrough(event.getProductId(), entry);
+        // Drop the near-cache copy on every node, including this one
+        nearCache.invalidate(event.getProductId());
+        stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, String.valueOf(event.getProductId()));
+    }
+
+    /**
+     * Removes the tombstones of products deleted longer than the retention ago. By then every reader that loaded
+     * the product before its deletion has finished, so none can put it back into the cache.
+     * Runs on every node; removing the same tombstones twice is harmless.
+     */
+    @Scheduled(fixedDelayString = "${product.cache.tombstone-prune-interval:PT10M}")
+    public void pruneTombstones() {
+        byte[] cutoff = Long.toString(System.currentTimeMillis() - tombstoneRetention.toMillis())
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] batchSize = Integer.toString(PRUNE_BATCH_SIZE).getBytes(StandardCharsets.UTF_8);
+        Long removed;
+        do {
+            removed = redisTemplate.execute(PRUNE_TOMBSTONES_SCRIPT, RedisSerializer.byteArray(),
+                    new GenericToStringSerializer<>(Long.class),
+                    List.of(PRODUCT_MAP, PRODUCT_VERSIONS, PRODUCT_TOMBSTONES), cutoff, batchSize);
+            prunedTombstones.increment(removed == null ? 0 : removed);
+        } while (removed != null && removed == PRUNE_BATCH_SIZE);
+    }
+
+    /**
+     * Handles invalidation messages published by any node (including this one).
+     *
+     * @param message The message whose body is the ID of the changed product.
+     * @param pattern The channel pattern that matched, if any.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            nearCache.invalidate(Long.parseLong(new String(message.getBody(), StandardCharsets.UTF_8)));
+        } catch (NumberFormatException e) {
+            // Ignore malformed messages; the near-cache TTL bounds any staleness
+        }
+    }
+
+    /**
+     * Stores an entry in the Redis hash unless a newer version is already cached.
+     * The comparison runs in a Lua script against the entry's own version, so writers committing out of order
+     * cannot regress the version, and concurrent writes to other products do not interfere.
+     *
+     * @param id    The ID of the product.
+     * @param entry The versioned entry to store.
+     */
+    @SuppressWarnings("unchecked")
+    private void writeThrough(long id, CachedProduct entry) {
+        byte[] value = ((RedisSerializer<Object>) redisTemplate.getHashValueSerializer()).serialize(entry);
+        redisTemplate.execute(WRITE_THROUGH_SCRIPT, RedisSerializer.byteArray(), new GenericToStringSerializer<>(Long.class),
+                List.of(PRODUCT_MAP, PRODUCT_VERSIONS, PRODUCT_TOMBSTONES),
+                hashKey(id).getBytes(StandardCharsets.UTF_8),
+                Long.toString(entry.getVersion()).getBytes(StandardCharsets.UTF_8),
+                value,
+                (entry.isTombstone() ? "1" : "0").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Converts a raw value read from the Redis hash into a versioned entry.
+     * Plain Product values written before entries were versioned are wrapped on the fly.
+     *
+     * @param value The raw value from Redis.
+     * @return The versioned entry, or null if there is no usable value.
+     */
+    private static CachedProduct toEntry(Object value) {
+        if (value instanceof CachedProduct cachedProduct) {
+            return cachedProduct;
+        }
+        if (value instanceof Product product) {
+            return CachedProduct.of(product);
+        }
+        return null;
+    }
+
+    /**
+     * Builds the PRODUCTMAP hash key for a product.
+     *
+     * @param id The ID of the product.
+     * @return The hash key.
+     */
+    private static String hashKey(long id) {
+        return "PRODUCT_" + id;
+    }
+}
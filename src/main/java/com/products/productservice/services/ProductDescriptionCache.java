@@ -0,0 +1,105 @@
+package com.products.productservice.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Cache of AI-generated product descriptions, keyed by the exact category and product name.
+ * Descriptions name the product they were written for, so unlike chat answers they must never be reused for a
+ * merely similar prompt: two products of one category produce near-identical prompts. A description is only
+ * reused for a product with the same category and name (ignoring case and surrounding whitespace), e.g. one that
+ * was deleted and created again.
+ */
+@Service
+public class ProductDescriptionCache {
+
+    private static final String KEY_PREFIX = "description-cache:"; // Prefix of the cached description keys
+
+    private final StringRedisTemplate stringRedisTemplate; // Template for the cached descriptions
+    private final MeterRegistry meterRegistry;             // Registry for hit/miss metrics
+    private final Duration timeToLive;                     // Lifetime of a cached description
+
+    /**
+     * Constructor for ProductDescriptionCache.
+     *
+     * @param stringRedisTemplate The Redis template for cached descriptions.
+     * @param meterRegistry       The registry where hit/miss metrics are published.
+     * @param timeToLive          Lifetime of a cached description.
+     */
+    public ProductDescriptionCache(StringRedisTemplate stringRedisTemplate,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${description-cache.ttl:PT24H}") Duration timeToLive) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Returns the cached description of a product with the same category and name, or generates and caches one.
+     * The cache never fails enrichment: if Redis is unavailable, the description is generated.
+     *
+     * @param category  The name of the product's category.
+     * @param name      The name of the product.
+     * @param generator Generates the description on a cache miss; a null description is not cached.
+     * @return The cached or generated description.
+     */
+    public String getOrGenerate(String category, String name, Supplier<String> generator) {
+        String key = KEY_PREFIX + hash(normalize(category) + "\n" + normalize(name));
+        try {
+            String cached = stringRedisTemplate.opsForValue().get(key);
+            if (cached != null) {
+                record("hit");
+                return cached;
+            }
+        } catch (DataAccessException e) {
+            System.err.println("Description cache lookup failed: " + e.getMessage());
+            record("error");
+            return generator.get();
+        }
+
+        record("miss");
+        String description = generator.get();
+        if (description != null) {
+            try {
+                stringRedisTemplate.opsForValue().set(key, description, timeToLive);
+            } catch (DataAccessException e) {
+                System.err.println("Failed to store cached description: " + e.getMessage());
+            }
+        }
+        return description;
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("description.cache.requests", "result", result).increment();
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Hashes the category and name into a fixed-length key.
+     *
+     * @param text The text to hash.
+     * @return The hex-encoded SHA-256 hash.
+     */
+    private static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
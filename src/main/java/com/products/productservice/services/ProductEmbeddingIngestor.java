@@ -0,0 +1,146 @@
+package com.products.productservice.services;
+
+import com.products.productservice.model.Product;
+import com.products.productservice.repositories.IProductVectorRepository;
+import com.products.productservice.utils.RequestRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import redis.clients.jedis.JedisPooled;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service writing batches of products to the product embedding index.
+ * Descriptions are embedded with one rate-limited, retried request per batch, and the documents of a batch
+ * are written to the index together.
+ * <p>
+ * The hash of each embedded description is stored in its document, so unchanged products only have their
+ * metadata updated and re-ingesting a batch after a crash costs no embedding calls. Keeping the hash in the index
+ * rather than in Redis also keeps it right for indexes that are private to each node.
+ */
+@Service
+public class ProductEmbeddingIngestor {
+
+    private final IProductVectorRepository productVectorRepository; // Index the documents are written to
+    private final JedisPooled jedisPooled;           // Redis connection holding the set of dirty recommendation lists
+    private final EmbeddingModel embeddingModel;     // Model used to embed descriptions
+    private final MeterRegistry meterRegistry;       // Registry for ingestion metrics
+    private final RequestRateLimiter rateLimiter;    // Limits embedding requests across all concurrent batches
+    private final int maxAttempts;                   // Attempts per embedding request
+    private final Duration retryBackoff;             // Delay before the first retry, doubled on each further retry
+
+    /**
+     * Constructor for ProductEmbeddingIngestor.
+     *
+     * @param productVectorRepository The product embedding index.
+     * @param jedisPooled       The Redis connection pool.
+     * @param embeddingModel    The embedding model used for product descriptions.
+     * @param meterRegistry     The registry where ingestion metrics are published.
+     * @param requestsPerSecond Maximum embedding requests per second; zero or less disables limiting.
+     * @param maxAttempts       Maximum attempts per embedding request.
+     * @param retryBackoff      Delay before retrying a failed embedding request.
+     */
+    public ProductEmbeddingIngestor(IProductVectorRepository productVectorRepository,
+                                    JedisPooled jedisPooled,
+                                    @Qualifier("openAiEmbeddingModel") EmbeddingModel embeddingModel,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${product.vector-sync.embedding-requests-per-second:5}") double requestsPerSecond,
+                                    @Value("${product.vector-sync.embedding-max-attempts:3}") int maxAttempts,
+                                    @Value("${product.vector-sync.embedding-retry-backoff:PT1S}") Duration retryBackoff) {
+        this.productVectorRepository = productVectorRepository;
+        this.jedisPooled = jedisPooled;
+        this.embeddingModel = embeddingModel;
+        this.meterRegistry = meterRegistry;
+        this.rateLimiter = new RequestRateLimiter(requestsPerSecond);
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+    }
+
+    /**
+     * Applies a batch of products to the index: removes deleted products and products without a description,
+     * updates the metadata of products whose description is unchanged, and embeds and writes the rest.
+     *
+     * @param products The products to apply, including soft-deleted ones.
+     * @throws InterruptedException If the thread is interrupted while waiting for the rate limiter or a retry.
+     */
+    public void ingest(List<Product> products) throws InterruptedException {
+        // Fetch the hashes of the currently embedded descriptions in one round trip
+        String[] ids = products.stream().map(product -> Long.toString(product.getId())).toArray(String[]::new);
+        Map<Long, String> embeddedHashes = productVectorRepository.findDescriptionHashes(
+                products.stream().map(Product::getId).toList());
+
+        List<Long> removed = new ArrayList<>();
+        List<Product> unchanged = new ArrayList<>();
+        List<Product> toEmbed = new ArrayList<>();
+        for (Product product : products) {
+            if (product.isDeleted() || product.getDescription() == null) {
+                removed.add(product.getId());
+            } else if (IProductVectorRepository.descriptionHashOf(product.getDescription()).equals(embeddedHashes.get(product.getId()))) {
+                unchanged.add(product);
+            } else {
+                toEmbed.add(product);
+            }
+        }
+
+        // Documents that disappeared since the hashes were read have to be embedded again
+        toEmbed.addAll(productVectorRepository.updateMetadata(unchanged));
+        if (!removed.isEmpty()) {
+            productVectorRepository.deleteAllByProductIds(removed);
+        }
+        embedAndWrite(toEmbed);
+
+        // Have the recommendation lists of these products recomputed against the new documents
+        if (ids.length > 0) {
+            jedisPooled.sadd(RecommendationService.DIRTY_KEY, ids);
+        }
+
+        meterRegistry.counter("product.vector.sync", "action", "deleted").increment(removed.size());
+        meterRegistry.counter("product.vector.sync", "action", "embedded").increment(toEmbed.size());
+        meterRegistry.counter("product.vector.sync", "action", "metadata").increment(products.size() - removed.size() - toEmbed.size());
+    }
+
+    /**
+     * Embeds the descriptions of the given products in one request and writes their documents, with the hashes
+     * of the descriptions.
+     *
+     * @param products The products to embed.
+     * @throws InterruptedException If the thread is interrupted while waiting for the rate limiter or a retry.
+     */
+    private void embedAndWrite(List<Product> products) throws InterruptedException {
+        if (products.isEmpty()) {
+            return;
+        }
+        List<float[]> embeddings = embed(products.stream().map(Product::getDescription).toList());
+        productVectorRepository.saveAll(products, embeddings);
+    }
+
+    /**
+     * Embeds texts in a single request, retrying failed requests with exponential backoff.
+     *
+     * @param texts The texts to embed.
+     * @return The embeddings, in the order of the texts.
+     * @throws InterruptedException If the thread is interrupted while waiting for the rate limiter or a retry.
+     */
+    private List<float[]> embed(List<String> texts) throws InterruptedException {
+        long backoff = retryBackoff.toMillis();
+        for (int attempt = 1; ; attempt++) {
+            rateLimiter.acquire();
+            try {
+                return embeddingModel.embed(texts);
+            } catch (RuntimeException e) {
+                meterRegistry.counter("product.vector.sync.embedding.failures").increment();
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                Thread.sleep(backoff);
+                backoff *= 2;
+            }
+        }
+    }
+}
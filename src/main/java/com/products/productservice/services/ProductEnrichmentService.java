@@ -0,0 +1,371 @@
+package com.products.productservice.services;
+
+import com.products.productservice.events.ProductChangedEvent;
+import com.products.productservice.model.AIGenerationLog;
+import com.products.productservice.model.AIGenerationType;
+import com.products.productservice.model.EnrichmentStatus;
+import com.products.productservice.model.Product;
+import com.products.productservice.repositories.IAIGenerationLogRepository;
+import com.products.productservice.repositories.IAIGenerationTypeRepository;
+import com.products.productservice.repositories.IProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Service that generates missing product images and descriptions with Azure AI, off the request path.
+ * Products are saved immediately with a PENDING enrichment status; the database row doubles as a durable
+ * job queue. Jobs are submitted to a bounded worker pool after commit, and a periodic sweep resubmits
+ * pending, failed and abandoned jobs until the attempt limit is reached.
+ * Within a job, image and description generation run concurrently on virtual threads, each with its own
+ * deadline, so a job takes as long as the slower of the two calls rather than their sum.
+ */
+@Service
+public class ProductEnrichmentService {
+
+    private static final Set<EnrichmentStatus> CLAIMABLE = EnumSet.of(EnrichmentStatus.PENDING, EnrichmentStatus.FAILED);
+
+    private final IProductRepository productRepository;                   // Repository for product data access
+    private final AzureAIProductServiceImpl azureAIProductService;        // Service for AI content generation
+    private final ProductDescriptionCache productDescriptionCache;        // Cache of descriptions by category and name
+    private final IAIGenerationTypeRepository aiGenerationTypeRepository; // Repository for AI generation types
+    private final IAIGenerationLogRepository aiGenerationLogRepository;   // Repository for AI generation logs
+    private final ApplicationEventPublisher eventPublisher;               // Publisher for product change events
+    private final MeterRegistry meterRegistry;                            // Registry for enrichment outcome metrics
+    private final ThreadPoolExecutor workers;                             // Bounded pool running enrichment jobs
+    private final int maxAttempts;                                        // Attempts before a job is abandoned
+    private final Duration stuckTimeout;                                  // Age after which a claim is considered abandoned
+    private final Duration imageTimeout;                                  // Deadline for image generation
+    private final Duration descriptionTimeout;                            // Deadline for description generation
+
+    /**
+     * Image URL and description produced by one enrichment job; either may be null if its generation failed.
+     */
+    private record GeneratedContent(String imageUrl, String description) {
+    }
+
+    /**
+     * Constructor for ProductEnrichmentService.
+     *
+     * @param productRepository          Repository for managing product entities.
+     * @param azureAIProductService      Service for generating AI-based content.
+     * @param productDescriptionCache    Cache reusing descriptions generated for the same category and product name.
+     * @param aiGenerationTypeRepository Repository for managing AI generation type entities.
+     * @param aiGenerationLogRepository  Repository for managing AI generation log entities.
+     * @param eventPublisher             Publisher notifying caches and indexes of enriched products.
+     * @param meterRegistry              Registry where enrichment outcomes are counted.
+     * @param poolSize                   Number of products enriched concurrently.
+     * @param queueCapacity              Number of jobs that may wait for a worker before new jobs are deferred to the sweep.
+     * @param maxAttempts                Maximum number of enrichment attempts per product.
+     * @param stuckTimeout               Age after which an unfinished claim is retried.
+     * @param imageTimeout               Maximum time to wait for an image to be generated.
+     * @param descriptionTimeout         Maximum time to wait for a description to be generated.
+     */
+    public ProductEnrichmentService(IProductRepository productRepository,
+                                    AzureAIProductServiceImpl azureAIProductService,
+                                    ProductDescriptionCache productDescriptionCache,
+                                    IAIGenerationTypeRepository aiGenerationTypeRepository,
+                                    IAIGenerationLogRepository aiGenerationLogRepository,
+                                    ApplicationEventPublisher eventPublisher,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${product.enrichment.pool-size:4}") int poolSize,
+                                    @Value("${product.enrichment.queue-capacity:100}") int queueCapacity,
+                                    @Value("${product.enrichment.max-attempts:3}") int maxAttempts,
+                                    @Value("${product.enrichment.stuck-timeout:PT10M}") Duration stuckTimeout,
+                                    @Value("${product.enrichment.image-timeout:PT90S}") Duration imageTimeout,
+                                    @Value("${product.enrichment.description-timeout:PT30S}") Duration descriptionTimeout) {
+        this.productRepository = productRepository;
+        this.azureAIProductService = azureAIProductService;
+        this.productDescriptionCache = productDescriptionCache;
+        this.aiGenerationTypeRepository = aiGenerationTypeRepository;
+        this.aiGenerationLogRepository = aiGenerationLogRepository;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = maxAttempts;
+        this.stuckTimeout = stuckTimeout;
+        this.imageTimeout = imageTimeout;
+        this.descriptionTimeout = descriptionTimeout;
+        this.workers = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity));
+    }
+
+    /**
+     * Submits newly saved products that need enrichment once their transaction has committed.
+     *
+     * @param event The event describing the changed product.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!event.isDeleted() && event.getProduct().getEnrichmentStatus() == EnrichmentStatus.PENDING) {
+            submit(event.getProductId());
+        }
+    }
+
+    /**
+     * Periodically resubmits products whose enrichment is pending, failed or abandoned.
+     * This also picks up jobs that were rejected because the worker queue was full or lost in a restart.
+     */
+    @Scheduled(fixedDelayString = "${product.enrichment.retry-interval:PT1M}")
+    public void resubmitAwaitingEnrichment() {
+        int capacity = workers.getQueue().remainingCapacity();
+        if (capacity == 0) {
+            return;
+        }
+        Date stuckBefore = new Date(System.currentTimeMillis() - stuckTimeout.toMillis());
+        List<Long> productIds = productRepository.findIdsAwaitingEnrichment(CLAIMABLE, EnrichmentStatus.IN_PROGRESS,
+                maxAttempts, stuckBefore, Limit.of(capacity));
+        productIds.forEach(this::submit);
+    }
+
+    /**
+     * Queues an enrichment job for a product, leaving it for the next sweep if the queue is full.
+     *
+     * @param productId The ID of the product to enrich.
+     */
+    private void submit(long productId) {
+        try {
+            workers.execute(() -> enrich(productId));
+        } catch (RejectedExecutionException e) {
+            // The product stays PENDING in the database and is resubmitted by the sweep
+            meterRegistry.counter("product.enrichment", "outcome", "deferred").increment();
+        }
+    }
+
+    /**
+     * Generates the missing image and description of a product and stores them.
+     * The results are written with a targeted update of the enrichment columns that only fills fields that are still
+     * empty, so a concurrent update of the product is not overwritten. Every claim has its own token, and results
+     * are only stored under the claim they were generated for. If the job is interrupted its claim is released
+     * and it is retried by the next sweep.
+     *
+     * @param productId The ID of the product to enrich.
+     */
+    void enrich(long productId) {
+        Date now = new Date();
+        Date stuckBefore = new Date(now.getTime() - stuckTimeout.toMillis());
+        // Claim the product so no other worker or node enriches it at the same time
+        String claimToken = UUID.randomUUID().toString();
+        if (productRepository.claimForEnrichment(productId, claimToken, CLAIMABLE, EnrichmentStatus.IN_PROGRESS,
+                maxAttempts, stuckBefore, now) == 0) {
+            return;
+        }
+        Optional<Product> optionalProduct = productRepository.findById(productId);
+        if (optionalProduct.isEmpty()) {
+            return;
+        }
+        Product product = optionalProduct.get();
+
+        // Generate whatever is missing, both calls running concurrently
+        AIGenerationLog aiGenerationImageLog = isBlank(product.getImageUrl()) ? new AIGenerationLog() : null;
+        AIGenerationLog aiGenerationDescriptionLog = isBlank(product.getDescription()) ? new AIGenerationLog() : null;
+        GeneratedContent generated;
+        try {
+            generated = generateContent(product, aiGenerationImageLog, aiGenerationDescriptionLog);
+        } catch (InterruptedException e) {
+            // Release the claim before restoring the interrupt, so the product does not wait for the stuck timeout
+            productRepository.releaseEnrichmentClaim(productId, claimToken, EnrichmentStatus.IN_PROGRESS, EnrichmentStatus.PENDING);
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        // Apply the results to the current state of the product, touching only the enrichment columns,
+        // unless the product was edited and claimed again meanwhile, which makes the generated content stale
+        if (productRepository.completeEnrichment(productId, claimToken, blankToNull(generated.imageUrl()),
+                blankToNull(generated.description()), EnrichmentStatus.IN_PROGRESS, EnrichmentStatus.COMPLETED,
+                EnrichmentStatus.FAILED, new Date()) == 0) {
+            return;
+        }
+        Optional<Product> optionalEnriched = productRepository.findById(productId);
+        if (optionalEnriched.isEmpty()) {
+            return;
+        }
+        Product productAfterSave = optionalEnriched.get();
+        boolean completed = productAfterSave.getEnrichmentStatus() == EnrichmentStatus.COMPLETED;
+        meterRegistry.counter("product.enrichment", "outcome", completed ? "completed" : "failed").increment();
+
+        // Record the AI generation activities that completed against the product
+        if (aiGenerationImageLog != null && generated.imageUrl() != null) {
+            aiGenerationImageLog.setProductId(productId);
+            aiGenerationLogRepository.save(aiGenerationImageLog);
+        }
+        if (aiGenerationDescriptionLog != null && generated.description() != null) {
+            aiGenerationDescriptionLog.setProductId(productId);
+            aiGenerationLogRepository.save(aiGenerationDescriptionLog);
+        }
+
+        // Notify caches and indexes of the enriched product
+        eventPublisher.publishEvent(ProductChangedEvent.saved(productAfterSave));
+    }
+
+    /**
+     * Runs image and description generation concurrently, each on its own virtual thread.
+     * The two calls form a scope: closing the executor waits for both, so neither outlives the job.
+     * A call that misses its deadline or fails yields null, and anything still running when the scope exits
+     * (including on interruption of the job) is cancelled.
+     *
+     * @param product                    The product to generate content for.
+     * @param aiGenerationImageLog       The log for image generation, or null if the product already has an image.
+     * @param aiGenerationDescriptionLog The log for description generation, or null if the product already has one.
+     * @return The image URL and description, existing or generated.
+     * @throws InterruptedException If the job is interrupted while waiting for the calls.
+     */
+    private GeneratedContent generateContent(Product product,
+                                             AIGenerationLog aiGenerationImageLog,
+                                             AIGenerationLog aiGenerationDescriptionLog) throws InterruptedException {
+        long start = System.nanoTime();
+        try (ExecutorService scope = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> imageUrl = aiGenerationImageLog == null
+                    ? CompletableFuture.completedFuture(product.getImageUrl())
+                    : scope.submit(() -> generateImageFromAIBasedOnProduct(product, aiGenerationImageLog));
+            Future<String> description = aiGenerationDescriptionLog == null
+                    ? CompletableFuture.completedFuture(product.getDescription())
+                    : scope.submit(() -> generateDescriptionFromAIBasedOnProduct(product, aiGenerationDescriptionLog));
+            try {
+                // Both deadlines are measured from the start of the scope, since the calls run side by side
+                return new GeneratedContent(
+                        await(imageUrl, start + imageTimeout.toNanos(), "image"),
+                        await(description, start + descriptionTimeout.toNanos(), "description"));
+            } finally {
+                imageUrl.cancel(true);
+                description.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Waits for a generation call until its deadline.
+     *
+     * @param call     The running call.
+     * @param deadline The deadline, in System.nanoTime() units.
+     * @param kind     The kind of content, used to tag failure metrics.
+     * @return The call's result, or null if it failed or missed its deadline.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    private String await(Future<String> call, long deadline, String kind) throws InterruptedException {
+        try {
+            return call.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            call.cancel(true);
+            meterRegistry.counter("product.enrichment.call", "kind", kind, "outcome", "timeout").increment();
+        } catch (ExecutionException e) {
+            meterRegistry.counter("product.enrichment.call", "kind", kind, "outcome", "error").increment();
+        }
+        return null;
+    }
+
+    /**
+     * Generates an image URL for a product using Azure AI.
+     * Populates the provided AIGenerationLog object with details of the generation process.
+     *
+     * @param product The product for which the image is generated.
+     * @param aiGenerationLog The log object to record the generation details.
+     * @return The generated image URL or file path.
+     */
+    public String generateImageFromAIBasedOnProduct(Product product, AIGenerationLog aiGenerationLog) {
+        // Create a prompt for Azure AI to generate an image based on product details
+        String prompt = "Generate image for " + product.getCategory().getName() + " product named " + product.getName() + ". Add small text 'AI Generated Image' in the Image bottom";
+
+        // Call Azure AI service to generate the image
+        String response = azureAIProductService.GenerateImage(prompt, product.getName() + "_" + System.currentTimeMillis());
+
+        // Log the AI generation details
+        aiGenerationLog.setInputPrompt(prompt);
+        AIGenerationType aiGenerationType = getAIGenerationTypeFromDB("Image");
+        aiGenerationLog.setType(aiGenerationType);
+        aiGenerationLog.setOutputResponse(response);
+        aiGenerationLog.setLastModified(new Date());
+        aiGenerationLog.setCreatedAt(new Date());
+        return response;
+    }
+
+    /**
+     * Generates a description for a product using Azure AI.
+     * Populates the provided AIGenerationLog object with details of the generation process.
+     *
+     * @param product The product for which the description is generated.
+     * @param aiGenerationLog The log object to record the generation details.
+     * @return The generated product description.
+     */
+    public String generateDescriptionFromAIBasedOnProduct(Product product, AIGenerationLog aiGenerationLog) {
+        // Create system and user prompts for Azure AI to generate a product description
+        String systemPrompt = "You are product Content writer to give product very short description in 300 to 400 characters";
+        String userPrompt = "Generate 300 to 400 characters professional marketing description for a " + product.getCategory().getName() +
+                " product named " + product.getName() + ". Focus on benefits and unique selling points. Avoid technical jargon. Use markdown formatting.";
+
+        // Reuse a description generated for the same product, or call Azure AI service to generate one
+        String response = productDescriptionCache.getOrGenerate(product.getCategory().getName(), product.getName(),
+                () -> azureAIProductService.GenerateResponse(systemPrompt, userPrompt));
+
+        // Log the AI generation details
+        String prompt = "SystemPrompt: " + systemPrompt + "; UserPrompt: " + userPrompt;
+        aiGenerationLog.setInputPrompt(prompt);
+        AIGenerationType aiGenerationType = getAIGenerationTypeFromDB("Description");
+        aiGenerationLog.setType(aiGenerationType);
+        aiGenerationLog.setOutputResponse(response);
+        aiGenerationLog.setLastModified(new Date());
+        aiGenerationLog.setCreatedAt(new Date());
+        return response;
+    }
+
+    /**
+     * Retrieves an AI generation type by its name from the database.
+     * If the type does not exist, it is created.
+     *
+     * @param type The name of the AI generation type to retrieve or create.
+     * @return The existing or newly created AIGenerationType object.
+     */
+    private AIGenerationType getAIGenerationTypeFromDB(String type) {
+        // Fetch the AI generation type by name from the repository
+        Optional<AIGenerationType> optionalAIGenerationType = aiGenerationTypeRepository.findByType(type);
+        if (optionalAIGenerationType.isPresent()) {
+            return optionalAIGenerationType.get();
+        }
+
+        // Create and save a new AI generation type if it does not exist
+        AIGenerationType aiGenerationType = new AIGenerationType();
+        aiGenerationType.setType(type);
+        aiGenerationType.setCreatedAt(new Date());
+        aiGenerationType.setLastModified(aiGenerationType.getCreatedAt());
+        return aiGenerationTypeRepository.save(aiGenerationType);
+    }
+
+    /**
+     * Stops accepting jobs on shutdown and interrupts running ones, cancelling their in-flight AI calls.
+     * Interrupted jobs release their claim and are retried by the next sweep, on this node or another.
+     */
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isEmpty();
+    }
+
+    private static String blankToNull(String value) {
+        return isBlank(value) ? null : value;
+    }
+}
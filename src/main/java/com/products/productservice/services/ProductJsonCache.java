@@ -0,0 +1,238 @@
+package com.products.productservice.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.products.productservice.dtos.ProductResponseDto;
+import com.products.productservice.dtos.ProductVersionDto;
+import com.products.productservice.events.ProductChangedEvent;
+import com.products.productservice.model.Product;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Response-level cache holding the final UTF-8 JSON encoding of each product's ProductResponseDto.
+ * Fragments are keyed by product ID and tagged with the versions (lastModified) of the product and of its category,
+ * whose name is part of the encoding, so a fragment is only reused while it matches the product and category it
+ * was rendered from; renaming a category retires the fragments of all its products. Controllers splice the cached
+ * fragments directly into the response body, skipping DTO mapping and Jackson for cache hits.
+ */
+@Service
+public class ProductJsonCache {
+
+    private static final byte[] EMPTY_ARRAY = {'[', ']'};
+
+    private final ObjectMapper objectMapper;                // Mapper used for cache misses
+    private final Cache<Long, JsonFragment> fragments;      // Encoded products, bounded by total bytes
+
+    /**
+     * Encoded JSON of a product together with the versions of the product and category it was rendered from.
+     */
+    private record JsonFragment(long version, long categoryVersion, byte[] json) {
+
+        boolean matches(Date lastModified, Date categoryLastModified) {
+            return version == versionOf(lastModified) && categoryVersion == versionOf(categoryLastModified);
+        }
+    }
+
+    /**
+     * Constructor for ProductJsonCache.
+     *
+     * @param objectMapper  The application's ObjectMapper, so cached output matches regular responses.
+     * @param meterRegistry The registry where cache hit/miss/eviction metrics are published.
+     * @param maximumBytes  Maximum total size of cached fragments in bytes.
+     */
+    public ProductJsonCache(ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${product.cache.json.maximum-bytes:67108864}") long maximumBytes) {
+        this.objectMapper = objectMapper;
+        this.fragments = Caffeine.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher((Long id, JsonFragment fragment) -> fragment.json().length)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, fragments, "productJsonCache");
+    }
+
+    /**
+     * Returns the JSON encoding of a single product, rendering and caching it on a miss.
+     *
+     * @param product The product to encode.
+     * @return The UTF-8 JSON bytes of the product's ProductResponseDto.
+     */
+    public byte[] toJson(Product product) {
+        Date categoryLastModified = categoryLastModifiedOf(product);
+        JsonFragment fragment = fragments.getIfPresent(product.getId());
+        if (fragment == null || !fragment.matches(product.getLastModified(), categoryLastModified)) {
+            fragment = new JsonFragment(versionOf(product.getLastModified()), versionOf(categoryLastModified),
+                    encode(product));
+            fragments.put(product.getId(), fragment);
+        }
+        return fragment.json();
+    }
+
+    /**
+     * Returns the JSON encoding of a single product without adding it to the cache, for bulk exports.
+     * A matching cached fragment is still reused, but read quietly so that it gains no recency or frequency:
+     * streaming the whole catalogue must not evict the hot products that regular requests depend on.
+     *
+     * @param product The product to encode.
+     * @return The UTF-8 JSON bytes of the product's ProductResponseDto.
+     */
+    public byte[] toJsonUncached(Product product) {
+        JsonFragment fragment = fragments.policy().getIfPresentQuietly(product.getId());
+        if (fragment != null && fragment.matches(product.getLastModified(), categoryLastModifiedOf(product))) {
+            return fragment.json();
+        }
+        return encode(product);
+    }
+
+    /**
+     * Returns the JSON array encoding of a list of products, in list order.
+     *
+     * @param products The products to encode.
+     * @return The UTF-8 JSON bytes of the array of ProductResponseDto.
+     */
+    public byte[] toJsonArray(List<Product> products) {
+        List<byte[]> parts = new ArrayList<>(products.size());
+        for (Product product : products) {
+            parts.add(toJson(product));
+        }
+        return join(parts);
+    }
+
+    /**
+     * Returns the JSON array encoding of scored products, in list order.
+     * Each element is an object holding the score and the cached encoding of the product.
+     *
+     * @param products The scored products to encode.
+     * @return The UTF-8 JSON bytes of the array of {"score": ..., "product": ProductResponseDto}.
+     */
+    public byte[] toScoredJsonArray(List<ScoredProduct> products) {
+        List<byte[]> parts = new ArrayList<>(products.size());
+        for (ScoredProduct scored : products) {
+            byte[] product = toJson(scored.product());
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(product.length + 40);
+            outputStream.writeBytes(("{\"score\":" + scored.score() + ",\"product\":").getBytes(StandardCharsets.US_ASCII));
+            outputStream.writeBytes(product);
+            outputStream.write('}');
+            parts.add(outputStream.toByteArray());
+        }
+        return join(parts);
+    }
+
+    /**
+     * Returns the JSON array encoding of the given product versions, in list order.
+     * Only products whose cached fragment is missing or outdated are loaded, in a single call to the loader.
+     *
+     * @param versions The IDs and versions of the products (and their categories) to encode.
+     * @param loader   Loads the products for the given IDs.
+     * @return The UTF-8 JSON bytes of the array of ProductResponseDto.
+     */
+    public byte[] toJsonArray(List<ProductVersionDto> versions, Function<Collection<Long>, List<Product>> loader) {
+        byte[][] parts = new byte[versions.size()][];
+        Map<Long, Integer> missing = new HashMap<>();
+
+        // Reuse every fragment whose version still matches
+        for (int i = 0; i < versions.size(); i++) {
+            ProductVersionDto version = versions.get(i);
+            JsonFragment fragment = fragments.getIfPresent(version.getId());
+            if (fragment != null && fragment.matches(version.getLastModified(), version.getCategoryLastModified())) {
+                parts[i] = fragment.json();
+            } else {
+                missing.put(version.getId(), i);
+            }
+        }
+
+        // Load and render the remaining products in one batch
+        if (!missing.isEmpty()) {
+            for (Product product : loader.apply(missing.keySet())) {
+                Integer index = missing.remove(product.getId());
+                if (index != null) {
+                    parts[index] = toJson(product);
+                }
+            }
+        }
+
+        // Skip products that disappeared between the version query and the load
+        List<byte[]> present = new ArrayList<>(parts.length);
+        for (byte[] part : parts) {
+            if (part != null) {
+                present.add(part);
+            }
+        }
+        return join(present);
+    }
+
+    /**
+     * Drops the cached fragment of a changed product once the change has been committed.
+     *
+     * @param event The event describing the changed product.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        fragments.invalidate(event.getProductId());
+    }
+
+    /**
+     * Renders a product with Jackson.
+     *
+     * @param product The product to encode.
+     * @return The UTF-8 JSON bytes of the product's ProductResponseDto.
+     */
+    private byte[] encode(Product product) {
+        try {
+            return objectMapper.writeValueAsBytes(ProductResponseDto.fromEntity(product));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode product " + product.getId(), e);
+        }
+    }
+
+    /**
+     * Joins encoded objects into a JSON array.
+     *
+     * @param parts The encoded JSON objects.
+     * @return The encoded JSON array.
+     */
+    private static byte[] join(List<byte[]> parts) {
+        if (parts.isEmpty()) {
+            return EMPTY_ARRAY;
+        }
+        int size = parts.size() + 1; // brackets and separators
+        for (byte[] part : parts) {
+            size += part.length;
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(size);
+        outputStream.write('[');
+        for (int i = 0; i < parts.size(); i++) {
+            if (i > 0) {
+                outputStream.write(',');
+            }
+            outputStream.writeBytes(parts.get(i));
+        }
+        outputStream.write(']');
+        return outputStream.toByteArray();
+    }
+
+    private static Date categoryLastModifiedOf(Product product) {
+        return product.getCategory() == null ? null : product.getCategory().getLastModified();
+    }
+
+    private static long versionOf(Date lastModified) {
+        return lastModified == null ? 0L : lastModified.getTime();
+    }
+}
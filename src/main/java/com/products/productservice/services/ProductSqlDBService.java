@@ -1,24 +1,31 @@
 package com.products.productservice.services;
 
+import com.products.productservice.dtos.ProductVersionDto;
+import com.products.productservice.events.ProductChangedEvent;
 import com.products.productservice.exception.ProductNotFoundException;
-import com.products.productservice.model.AIGenerationLog;
-import com.products.productservice.model.AIGenerationType;
 import com.products.productservice.model.Category;
+import com.products.productservice.model.EnrichmentStatus;
 import com.products.productservice.model.Product;
-import com.products.productservice.repositories.IAIGenerationLogRepository;
-import com.products.productservice.repositories.IAIGenerationTypeRepository;
 import com.products.productservice.repositories.ICategoryRepository;
 import com.products.productservice.repositories.IProductRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Primary;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Service implementation for managing products in a SQL database.
- * This service provides methods for CRUD operations on products and integrates with Azure AI for generating product images and descriptions.
+ * This service provides methods for CRUD operations on products; missing product images and descriptions are
+ * generated asynchronously with Azure AI by {@link ProductEnrichmentService}.
  * Marked as the primary implementation of the IProductService interface to be autowired by default.
  */
 @Service("productDBService")
@@ -26,30 +33,26 @@ import java.util.Optional;
 public class ProductSqlDBService implements IProductService {
     private final IProductRepository productRepository;            // Repository for product data access
     private final ICategoryRepository categoryRepository;          // Repository for category data access
-    private final AzureAIProductServiceImpl azureAIProductService; // Service for AI content generation
-    private final IAIGenerationTypeRepository aiGenerationTypeRepository; // Repository for AI generation types
-    private final IAIGenerationLogRepository aiGenerationLogRepository;   // Repository for AI generation logs
+    private final ApplicationEventPublisher eventPublisher;        // Publisher for product change events
+    private final EntityManager entityManager;                     // Entity manager for detaching streamed products
 
     /**
      * Constructor for ProductSqlDBService.
      * Uses constructor injection to provide all required dependencies.
      *
-     * @param productRepository         Repository for managing product entities.
-     * @param categoryRepository        Repository for managing category entities.
-     * @param azureAIProductService     Service for generating AI-based content.
-     * @param aiGenerationTypeRepository Repository for managing AI generation type entities.
-     * @param aiGenerationLogRepository Repository for managing AI generation log entities.
+     * @param productRepository  Repository for managing product entities.
+     * @param categoryRepository Repository for managing category entities.
+     * @param eventPublisher     Publisher notifying caches and indexes of product changes.
+     * @param entityManager      Entity manager used to detach streamed products.
      */
     public ProductSqlDBService(IProductRepository productRepository,
                                ICategoryRepository categoryRepository,
-                               AzureAIProductServiceImpl azureAIProductService,
-                               IAIGenerationTypeRepository aiGenerationTypeRepository,
-                               IAIGenerationLogRepository aiGenerationLogRepository) {
-        this.azureAIProductService = azureAIProductService;
+                               ApplicationEventPublisher eventPublisher,
+                               EntityManager entityManager) {
         this.productRepository = productRepository;
         this.categoryRepository = categoryRepository;
-        this.aiGenerationTypeRepository = aiGenerationTypeRepository;
-        this.aiGenerationLogRepository = aiGenerationLogRepository;
+        this.eventPublisher = eventPublisher;
+        this.entityManager = entityManager;
     }
 
     /**
@@ -81,17 +84,57 @@ public class ProductSqlDBService implements IProductService {
         return productRepository.findAll();
     }
 
+    /**
+     * Retrieves the ID and version of the products following the given ID, ordered by ID.
+     *
+     * @param afterId The ID after which to start (exclusive).
+     * @param limit   The maximum number of versions to return.
+     * @return A list of product versions.
+     */
+    @Override
+    public List<ProductVersionDto> getProductVersionsAfter(long afterId, int limit) {
+        return productRepository.findVersionsAfterId(afterId, Limit.of(limit));
+    }
+
+    /**
+     * Passes every product to the given consumer, one at a time, from a streaming database cursor.
+     * Each product is detached once consumed so the persistence context does not grow with the catalogue.
+     *
+     * @param consumer The consumer receiving each product.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllProducts(Consumer<Product> consumer) {
+        try (Stream<Product> products = productRepository.streamAll()) {
+            products.forEach(product -> {
+                consumer.accept(product);
+                entityManager.detach(product);
+            });
+        }
+    }
+
+    /**
+     * Retrieves the products with the given IDs in a single query, together with their categories.
+     *
+     * @param ids The IDs of the products to retrieve.
+     * @return A list of the matching products, in no particular order.
+     */
+    @Override
+    public List<Product> getProductsByIds(Collection<Long> ids) {
+        return productRepository.findAllWithCategoryByIdIn(ids);
+    }
+
     /**
      * Creates a new product with the specified details.
-     * If the image URL or description is not provided, they are generated using Azure AI.
-     * Also logs the AI generation activities to the database.
+     * If the image URL or description is not provided, the product is saved with a PENDING enrichment status
+     * and they are generated asynchronously using Azure AI, so this call costs a single insert.
      *
      * @param name        The name of the product.
      * @param description The description of the product (can be null/empty to trigger AI generation).
      * @param price       The price of the product.
      * @param imageUrl    The image URL of the product (can be null/empty to trigger AI generation).
      * @param category    The category of the product.
-     * @return The created product with all fields populated.
+     * @return The created product; generated fields are filled in once enrichment completes.
      */
     @Override
     public Product createProduct(String name, String description, double price, String imageUrl, String category) {
@@ -107,37 +150,15 @@ public class ProductSqlDBService implements IProductService {
         product.setCategory(categoryObj);
         System.out.println("Category is : " + categoryObj.getName());
 
-        // Initialize log objects for potential AI generations
-        AIGenerationLog aiGenerationImageLog = null;
-        AIGenerationLog aiGenerationDescriptionLog = null;
-
-        // Generate image URL if not provided
-        if (imageUrl == null || imageUrl.isEmpty()) {
-            aiGenerationImageLog = new AIGenerationLog(); // Create log entry for image generation
-            imageUrl = generateImageFromAIBasedOnProduct(product, aiGenerationImageLog);
-        }
-        product.setImageUrl(imageUrl);
-
-        // Generate description if not provided
-        if (description == null || description.isEmpty()) {
-            aiGenerationDescriptionLog = new AIGenerationLog(); // Create log entry for description generation
-            description = generateDescriptionFromAIBasedOnProduct(product, aiGenerationDescriptionLog);
-        }
-        product.setDescription(description);
+        // Store the provided content; anything missing is generated asynchronously
+        setContentForEnrichment(product, description, imageUrl);
 
         // Save the product to get its generated ID
         Product productAfterSave = productRepository.save(product);
         System.out.println("Product after save : " + productAfterSave.getId());
 
-        // Update AI generation logs with the product ID and save them to the database
-        if(aiGenerationImageLog != null) {
-            aiGenerationImageLog.setProductId(productAfterSave.getId());
-            aiGenerationLogRepository.save(aiGenerationImageLog);
-        }
-        if(aiGenerationDescriptionLog != null) {
-            aiGenerationDescriptionLog.setProductId(productAfterSave.getId());
-            aiGenerationLogRepository.save(aiGenerationDescriptionLog);
-        }
+        // Notify caches and indexes of the new product and trigger enrichment once committed
+        eventPublisher.publishEvent(ProductChangedEvent.saved(productAfterSave));
         return productAfterSave;
     }
 
@@ -163,85 +184,10 @@ public class ProductSqlDBService implements IProductService {
         return categoryRepository.save(category);
     }
 
-    /**
-     * Generates an image URL for a product using Azure AI.
-     * Populates the provided AIGenerationLog object with details of the generation process.
-     *
-     * @param product The product for which the image is generated.
-     * @param aiGenerationLog The log object to record the generation details.
-     * @return The generated image URL or file path.
-     */
-    public String generateImageFromAIBasedOnProduct(Product product, AIGenerationLog aiGenerationLog) {
-        // Create a prompt for Azure AI to generate an image based on product details
-        String prompt = "Generate image for " + product.getCategory().getName() + " product named " + product.getName() + ". Add small text 'AI Generated Image' in the Image bottom";
-
-        // Call Azure AI service to generate the image
-        String response = azureAIProductService.GenerateImage(prompt, product.getName() + "_" + System.currentTimeMillis());
-
-        // Log the AI generation details
-        aiGenerationLog.setInputPrompt(prompt);
-        AIGenerationType aiGenerationType = getAIGenerationTypeFromDB("Image");
-        aiGenerationLog.setType(aiGenerationType);
-        aiGenerationLog.setOutputResponse(response);
-        aiGenerationLog.setLastModified(new Date());
-        aiGenerationLog.setCreatedAt(new Date());
-        return response;
-    }
-
-    /**
-     * Generates a description for a product using Azure AI.
-     * Populates the provided AIGenerationLog object with details of the generation process.
-     *
-     * @param product The product for which the description is generated.
-     * @param aiGenerationLog The log object to record the generation details.
-     * @return The generated product description.
-     */
-    public String generateDescriptionFromAIBasedOnProduct(Product product, AIGenerationLog aiGenerationLog) {
-        // Create system and user prompts for Azure AI to generate a product description
-        String systemPrompt = "You are product Content writer to give product very short description in 300 to 400 characters";
-        String userPrompt = "Generate 300 to 400 characters professional marketing description for a " + product.getCategory().getName() +
-                " product named " + product.getName() + ". Focus on benefits and unique selling points. Avoid technical jargon. Use markdown formatting.";
-
-        // Call Azure AI service to generate the description
-        String response = azureAIProductService.GenerateResponse(systemPrompt, userPrompt);
-
-        // Log the AI generation details
-        String prompt = "SystemPrompt: " + systemPrompt + "; UserPrompt: " + userPrompt;
-        aiGenerationLog.setInputPrompt(prompt);
-        AIGenerationType aiGenerationType = getAIGenerationTypeFromDB("Description");
-        aiGenerationLog.setType(aiGenerationType);
-        aiGenerationLog.setOutputResponse(response);
-        aiGenerationLog.setLastModified(new Date());
-        aiGenerationLog.setCreatedAt(new Date());
-        return response;
-    }
-
-    /**
-     * Retrieves an AI generation type by its name from the database.
-     * If the type does not exist, it is created.
-     *
-     * @param type The name of the AI generation type to retrieve or create.
-     * @return The existing or newly created AIGenerationType object.
-     */
-    private AIGenerationType getAIGenerationTypeFromDB(String type) {
-        // Fetch the AI generation type by name from the repository
-        Optional<AIGenerationType> optionalAIGenerationType = aiGenerationTypeRepository.findByType(type);
-        if (optionalAIGenerationType.isPresent()) {
-            return optionalAIGenerationType.get();
-        }
-
-        // Create and save a new AI generation type if it does not exist
-        AIGenerationType aiGenerationType = new AIGenerationType();
-        aiGenerationType.setType(type);
-        aiGenerationType.setCreatedAt(new Date());
-        aiGenerationType.setLastModified(aiGenerationType.getCreatedAt());
-        return aiGenerationTypeRepository.save(aiGenerationType);
-    }
-
     /**
      * Updates an existing product or creates a new one if it does not exist.
-     * If the image URL or description is not provided, they are generated using Azure AI.
-     * Also logs the AI generation activities to the database.
+     * If the image URL or description is not provided, the product is saved with a PENDING enrichment status
+     * and they are generated asynchronously using Azure AI.
      *
      * @param id          The ID of the product to update.
      * @param name        The new name of the product.
@@ -249,83 +195,59 @@ public class ProductSqlDBService implements IProductService {
      * @param price       The new price of the product.
      * @param imageUrl    The new image URL of the product (can be null/empty to trigger AI generation).
      * @param category    The new category of the product.
-     * @return The updated or newly created product.
+     * @return The updated or newly created product; generated fields are filled in once enrichment completes.
      */
     @Override
     public Product updateProduct(Long id, String name, String description, double price, String imageUrl, String category) {
         // Check if the product exists in the repository
         Optional<Product> optionalProduct = productRepository.findById(id);
 
-        // Initialize a product object - either new or existing
-        Product product = new Product();
-
-        // Initialize log objects for potential AI generations
-        AIGenerationLog aiGenerationImageLog = null;
-        AIGenerationLog aiGenerationChatLog = null;
+        // Update the existing product if found, otherwise save it as a new product
+        Product product;
+        if (optionalProduct.isPresent()) {
+            product = optionalProduct.get();
+        } else {
+            product = new Product();
+            product.setCreatedAt(new Date());
+        }
 
-        // Setup basic product properties
+        // Setup product properties
         product.setName(name);
         product.setPrice(price);
-        product.setCreatedAt(new Date());
-        product.setLastModified(product.getCreatedAt());
-
-        // Retrieve or create the category from the database
-        Category categoryObj = getCategoryFromDB(category);
-        product.setCategory(categoryObj);
-
-        // Generate image URL if not provided
-        if (imageUrl == null || imageUrl.isEmpty()) {
-            aiGenerationImageLog = new AIGenerationLog();
-            imageUrl = generateImageFromAIBasedOnProduct(product, aiGenerationImageLog);
+        product.setCategory(getCategoryFromDB(category));
+        product.setLastModified(new Date());
+        if (product.getCreatedAt() == null) {
+            product.setCreatedAt(product.getLastModified());
         }
 
-        // Generate description if not provided
-        if (description == null || description.isEmpty()) {
-            aiGenerationChatLog = new AIGenerationLog();
-            description = generateDescriptionFromAIBasedOnProduct(product, aiGenerationChatLog);
-        }
-        product.setImageUrl(imageUrl);
-        product.setDescription(description);
-
-        Product productAfterSave;
-
-        // Update the existing product if found
-        if (optionalProduct.isPresent()) {
-            Product productToUpdate = optionalProduct.get();
-            productToUpdate.setName(name);
-            productToUpdate.setDescription(description);
-            productToUpdate.setPrice(price);
-            productToUpdate.setImageUrl(imageUrl);
-            productToUpdate.setCategory(categoryObj);
-            productToUpdate.setLastModified(new Date());
-
-            // Save AI generation logs with product ID
-            if(aiGenerationImageLog != null) {
-                aiGenerationImageLog.setProductId(productToUpdate.getId());
-                aiGenerationLogRepository.save(aiGenerationImageLog);
-            }
-            if(aiGenerationChatLog != null) {
-                aiGenerationChatLog.setProductId(productToUpdate.getId());
-                aiGenerationLogRepository.save(aiGenerationChatLog);
-            }
-            productAfterSave = productRepository.save(productToUpdate);
-        } else {
-            // Save as new product if it doesn't exist
-            productAfterSave = productRepository.save(product);
+        // Store the provided content; anything missing is generated asynchronously
+        setContentForEnrichment(product, description, imageUrl);
+        product.setEnrichmentAttempts(0);
+        product.setEnrichmentClaimToken(null); // Content generated for the previous version must not be stored
+        Product productAfterSave = productRepository.save(product);
 
-            // Save AI generation logs with new product ID
-            if(aiGenerationImageLog != null) {
-                aiGenerationImageLog.setProductId(productAfterSave.getId());
-                aiGenerationLogRepository.save(aiGenerationImageLog);
-            }
-            if(aiGenerationChatLog != null) {
-                aiGenerationChatLog.setProductId(productAfterSave.getId());
-                aiGenerationLogRepository.save(aiGenerationChatLog);
-            }
-        }
+        // Write the new version through to caches and indexes and trigger enrichment once committed
+        eventPublisher.publishEvent(ProductChangedEvent.saved(productAfterSave));
         return productAfterSave;
     }
 
+    /**
+     * Sets the description and image URL of a product and marks it for enrichment if either is missing.
+     *
+     * @param product     The product to update.
+     * @param description The description, or null/empty to generate one.
+     * @param imageUrl    The image URL, or null/empty to generate one.
+     */
+    private void setContentForEnrichment(Product product, String description, String imageUrl) {
+        boolean missingDescription = description == null || description.isEmpty();
+        boolean missingImage = imageUrl == null || imageUrl.isEmpty();
+        product.setDescription(missingDescription ? null : description);
+        product.setImageUrl(missingImage ? null : imageUrl);
+        product.setEnrichmentStatus(missingDescription || missingImage
+                ? EnrichmentStatus.PENDING
+                : EnrichmentStatus.NOT_REQUIRED);
+    }
+
     /**
      * Deletes a product by its ID.
      *
@@ -337,8 +259,11 @@ public class ProductSqlDBService implements IProductService {
         // Check if the product exists in the repository
         Optional<Product> optionalProduct = productRepository.findById(id);
         if (optionalProduct.isPresent()) {
-            // Delete the product if found
-            productRepository.softDeleteById(id);
+            // Delete the product if found, bumping its version so caches can order the change
+            Date deletedAt = new Date();
+            productRepository.softDeleteById(id, deletedAt);
+            // Replace any cached copy with a tombstone once the delete is committed
+            eventPublisher.publishEvent(ProductChangedEvent.deleted(id, deletedAt));
             return "Product deleted successfully";
         } else {
             // Return a message if the product is not found
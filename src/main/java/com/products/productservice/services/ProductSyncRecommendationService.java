@@ -2,69 +2,324 @@ package com.products.productservice.services;
 
 import com.products.productservice.model.Product;
 import com.products.productservice.repositories.IProductRepository;
-import jakarta.annotation.PostConstruct;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.redis.RedisVectorStore;
+import com.products.productservice.repositories.IProductVectorRepository;
+import com.products.productservice.utils.RedisLeases;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Service class for synchronizing product data with Redis as documents.
- * This class interacts with the Redis vector store and product repository
- * to convert product data into document format and store it in Redis.
+ * Service class for synchronizing product data with the product embedding index as documents.
+ * This class interacts with the product embedding index and product repository
+ * to convert product data into document format and store it in the index.
+ * <p>
+ * Synchronization is incremental: each run only reads products modified since the persisted watermark.
+ * Every product has one document whose ID is the product ID, descriptions are only re-embedded when their
+ * hash changes, and soft-deleted products are removed from the store.
+ * <p>
+ * When no watermark exists the index is rebuilt: the catalogue is read in pages, and a bounded number of
+ * pages are embedded concurrently. Progress is checkpointed, so a rebuild interrupted by a crash resumes
+ * from the last fully written page.
+ * <p>
+ * Syncs run in the background on the scheduler, so application startup never waits for embeddings.
+ * When the index is shared by all nodes, each run takes a Redis lease first, so only one node embeds products and
+ * writes the sync state at a time; the others skip the run and report the state of the shared index.
+ * {@link #getIndexState()} reports whether recommendations are served from a warm or a stale index.
  */
 @Service
 public class ProductSyncRecommendationService {
-    private final RedisVectorStore vectorStore;
+
+    public static final String WATERMARK_KEY = "product-vector-sync:watermark";                    // lastModified of the newest synced product
+    public static final String REBUILD_CHECKPOINT_KEY = "product-vector-sync:rebuild:checkpoint";  // ID up to which the rebuild is complete
+    public static final String REBUILD_STARTED_KEY = "product-vector-sync:rebuild:started";        // Start time of the rebuild in progress
+    public static final String SYNCED_AT_KEY = "product-vector-sync:synced-at";                    // Completion time of the last successful sync
+
+    private static final String SYNC_LEASE = "product-vector-sync"; // Lease held by the node syncing a shared index
+
     private final IProductRepository productRepository;
+    private final ProductEmbeddingIngestor ingestor;   // Embeds and writes batches of products
+    private final IProductVectorRepository productVectorRepository; // Index holding the documents and the sync state
+    private final MeterRegistry meterRegistry;         // Registry for sync metrics
+    private final RedisLeases redisLeases;             // Leases making syncs of a shared index exclusive
+    private final int batchSize;                       // Number of products read and embedded per batch
+    private final int concurrency;                     // Number of rebuild batches embedded at the same time
+    private final Duration overlap;                    // How far before the watermark each run starts scanning
+    private final Duration staleAfter;                 // Age of the last successful sync after which the index is stale
+    private final Duration leaseDuration;              // How long a sync holds its lease between renewals
+    private final AtomicReference<Double> rebuildThroughput = new AtomicReference<>(0.0); // Docs/sec of the latest rebuild
+    private volatile Instant lastSyncedAt;             // Completion time of the last successful sync on this node
+    private volatile boolean rebuilding;               // Whether the index is being rebuilt and has no watermark yet
+
+    /**
+     * Freshness of the product embedding index, as seen by this node.
+     */
+    public enum IndexState {
+        /**
+         * The index is being built from scratch; recommendations may be incomplete.
+         */
+        BUILDING,
+        /**
+         * The index exists but has not been synced recently, or not yet since this node started.
+         */
+        STALE,
+        /**
+         * The index reflects the catalogue as of the last sync interval.
+         */
+        WARM
+    }
 
     /**
      * Constructor for ProductSyncRecommendationService.
      *
-     * @param vectorStore The Redis vector store used for storing documents.
      * @param productRepository The repository for accessing product data.
+     * @param ingestor The ingestor writing products to the embedding index.
+     * @param productVectorRepository The product embedding index, which also stores the sync state.
+     * @param meterRegistry The registry where sync metrics are published.
+     * @param redisLeases The leases that let only one node at a time sync a shared index.
+     * @param batchSize The number of products processed per batch.
+     * @param concurrency The number of batches embedded concurrently during a rebuild.
+     * @param overlap How far before the watermark each run rescans, to catch transactions that committed late.
+     * @param staleAfter Time since the last successful sync after which the index is reported as stale.
+     * @param leaseDuration How long a node holds the sync lease without renewing it; a crashed node blocks syncs
+     *                      of a shared index for at most this long.
      */
-    public ProductSyncRecommendationService(RedisVectorStore vectorStore, IProductRepository productRepository) {
-        this.vectorStore = vectorStore;
+    public ProductSyncRecommendationService(IProductRepository productRepository,
+                                            ProductEmbeddingIngestor ingestor,
+                                            IProductVectorRepository productVectorRepository,
+                                            MeterRegistry meterRegistry,
+                                            RedisLeases redisLeases,
+                                            @Value("${product.vector-sync.batch-size:100}") int batchSize,
+                                            @Value("${product.vector-sync.concurrency:4}") int concurrency,
+                                            @Value("${product.vector-sync.overlap:PT1M}") Duration overlap,
+                                            @Value("${product.vector-sync.stale-after:PT5M}") Duration staleAfter,
+                                            @Value("${product.vector-sync.lease-duration:PT5M}") Duration leaseDuration) {
         this.productRepository = productRepository;
+        this.ingestor = ingestor;
+        this.productVectorRepository = productVectorRepository;
+        this.meterRegistry = meterRegistry;
+        this.redisLeases = redisLeases;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.overlap = overlap;
+        this.staleAfter = staleAfter;
+        this.leaseDuration = leaseDuration;
+        meterRegistry.gauge("product.vector.rebuild.throughput", rebuildThroughput, AtomicReference::get);
+    }
+
+    /**
+     * Synchronizes the products changed since the last run from the database to the index as documents.
+     * Runs, or resumes, a full rebuild first when the index has never been completely built.
+     * The first run starts as soon as the application context is refreshed; the watermark persisted with the index
+     * lets a restarted node skip products that are already indexed.
+     * A shared index is only synced by the node holding the sync lease; the other nodes skip the run.
+     *
+     * @throws InterruptedException If the thread is interrupted, e.g. on shutdown.
+     */
+    @Scheduled(fixedDelayString = "${product.vector-sync.interval:PT1M}")
+    public void syncProductsToRedisAsDocuments() throws InterruptedException {
+        Optional<RedisLeases.Lease> acquired = productVectorRepository.isShared()
+                ? redisLeases.tryAcquire(SYNC_LEASE, leaseDuration)
+                : Optional.of(RedisLeases.local());
+        if (acquired.isEmpty()) {
+            // Another node is syncing the shared index; report the state it last recorded
+            meterRegistry.counter("product.vector.sync.skipped").increment();
+            rebuilding = productVectorRepository.findSyncState(WATERMARK_KEY).isEmpty();
+            lastSyncedAt = productVectorRepository.findSyncState(SYNCED_AT_KEY)
+                    .map(syncedAt -> Instant.ofEpochMilli(Long.parseLong(syncedAt)))
+                    .orElse(null);
+            return;
+        }
+        try (RedisLeases.Lease lease = acquired.get()) {
+            sync(lease);
+        }
+    }
+
+    /**
+     * Runs one sync while holding the sync lease, stopping without saving progress if the lease is lost.
+     *
+     * @param lease The sync lease, renewed after every batch.
+     * @throws InterruptedException If the thread is interrupted, e.g. on shutdown.
+     */
+    private void sync(RedisLeases.Lease lease) throws InterruptedException {
+        String storedWatermark = productVectorRepository.findSyncState(WATERMARK_KEY).orElse(null);
+        if (storedWatermark == null) {
+            // The index stays BUILDING until a rebuild completes, including across paused attempts
+            rebuilding = true;
+            if (!rebuild(lease)) {
+                return; // Resumed from the checkpoint on the next run
+            }
+            rebuilding = false;
+            storedWatermark = productVectorRepository.findSyncState(WATERMARK_KEY).orElseThrow();
+        }
+
+        // Rescan a short window before the watermark; reprocessing an unchanged product is cheap
+        long watermark = Long.parseLong(storedWatermark);
+        Date since = new Date(Math.max(0L, watermark - overlap.toMillis()));
+        long afterId = -1L;
+        long newWatermark = watermark;
+
+        List<Product> changed;
+        do {
+            changed = productRepository.findChangedAfter(since, afterId, Limit.of(batchSize));
+            if (changed.isEmpty()) {
+                break;
+            }
+            ingestor.ingest(changed);
+            if (!lease.renew()) {
+                // Another node took over; it rescans from the stored watermark
+                System.err.println("Vector sync lease expired; stopping this run");
+                return;
+            }
+
+            // Advance the keyset cursor past this batch
+            Product last = changed.get(changed.size() - 1);
+            since = last.getLastModified();
+            afterId = last.getId();
+            newWatermark = Math.max(newWatermark, last.getLastModified().getTime());
+        } while (changed.size() == batchSize);
+
+        productVectorRepository.saveSyncState(WATERMARK_KEY, Long.toString(newWatermark));
+        lastSyncedAt = Instant.now();
+        productVectorRepository.saveSyncState(SYNCED_AT_KEY, Long.toString(lastSyncedAt.toEpochMilli()));
+    }
+
+    /**
+     * Returns the freshness of the product embedding index.
+     *
+     * @return BUILDING while a rebuild runs, WARM if a sync succeeded within the staleness window, STALE otherwise.
+     */
+    public IndexState getIndexState() {
+        if (rebuilding) {
+            return IndexState.BUILDING;
+        }
+        Instant syncedAt = lastSyncedAt;
+        return syncedAt != null && syncedAt.plus(staleAfter).isAfter(Instant.now()) ? IndexState.WARM : IndexState.STALE;
     }
 
     /**
-     * Synchronizes all products from the database to Redis as documents.
-     * Each product is converted into a document with metadata and added to the Redis vector store.
+     * Returns the completion time of the last successful sync on this node.
+     *
+     * @return The time of the last sync, or null if none has completed since startup.
+     */
+    public Instant getLastSyncedAt() {
+        return lastSyncedAt;
+    }
+
+    /**
+     * Builds the index from the whole catalogue, resuming from the checkpoint of an interrupted rebuild.
+     * Pages are read one at a time and at most {@code concurrency} pages are in flight, which bounds memory.
+     * On success the watermark is set to the start of the rebuild, so the following incremental run picks up
+     * every change made while the rebuild was running. If the start time of a resumed rebuild was lost, the
+     * watermark is set to zero instead: the following run then rescans the catalogue, but only re-embeds products
+     * whose description changed.
+     *
+     * @param lease The sync lease, renewed before every page; the rebuild pauses if it is lost.
+     * @return True if the rebuild completed, false if a batch failed and the rebuild must be resumed later.
+     * @throws InterruptedException If the thread is interrupted while waiting for a batch.
      */
-    @PostConstruct
-    @Scheduled(fixedRate = 7200000) // Runs every 2 hours
-    public void syncProductsToRedisAsDocuments() {
-        // Retrieve all products from the repository.
-        List<Product> products = productRepository.findAll();
-
-        // Initialize a list to hold documents.
-        List<Document> documents = new ArrayList<>();
-
-        // Iterate through each product and convert it to a document.
-        for (Product product : products) {
-            if (product.getDescription() != null) {
-                // Create metadata for the document.
-                Map<String, Object> metadata = new HashMap<>();
-                metadata.put("id", product.getId());
-                metadata.put("category", product.getCategory().getName());
-                metadata.put("price", product.getPrice());
-
-                // Create a document with the product description and metadata.
-                Document doc = new Document(product.getDescription(), metadata);
-
-                // Add the document to the list.
-                documents.add(doc);
+    private boolean rebuild(RedisLeases.Lease lease) throws InterruptedException {
+        String checkpoint = productVectorRepository.findSyncState(REBUILD_CHECKPOINT_KEY).orElse(null);
+        if (checkpoint == null) {
+            // A fresh rebuild
+            productVectorRepository.prepareRebuild();
+            productVectorRepository.saveSyncState(REBUILD_STARTED_KEY, Long.toString(System.currentTimeMillis()));
+            checkpoint = "0";
+        } else if (productVectorRepository.findSyncState(REBUILD_STARTED_KEY).isEmpty()) {
+            // Only the checkpoint survived; changes since an unknown start must all be rescanned afterwards
+            productVectorRepository.saveSyncState(REBUILD_STARTED_KEY, "0");
+        }
+
+        long startNanos = System.nanoTime();
+        AtomicLong documents = new AtomicLong();
+        Checkpoint progress = new Checkpoint(Long.parseLong(checkpoint));
+        Semaphore inFlight = new Semaphore(concurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            long afterId = progress.committedId;
+            for (long sequence = 0; !progress.failed; sequence++) {
+                inFlight.acquire();
+                if (!lease.renew()) {
+                    // Another node took over; it resumes from the checkpoint
+                    System.err.println("Vector sync lease expired; pausing the rebuild");
+                    progress.leaseLost = true;
+                    progress.failed = true;
+                    inFlight.release();
+                    break;
+                }
+                List<Product> page = productRepository.findPageAfterId(afterId, Limit.of(batchSize));
+                if (page.isEmpty()) {
+                    inFlight.release();
+                    break;
+                }
+                long batchSequence = sequence;
+                long lastId = page.get(page.size() - 1).getId();
+                executor.submit(() -> {
+                    try {
+                        ingestor.ingest(page);
+                        documents.addAndGet(page.size());
+                        meterRegistry.counter("product.vector.rebuild.documents").increment(page.size());
+                        progress.complete(batchSequence, lastId);
+                    } catch (Exception e) {
+                        System.err.println("Vector index rebuild batch after ID " + lastId + " failed: " + e.getMessage());
+                        progress.failed = true;
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+                afterId = lastId;
             }
+        } // Waits for the batches still in flight
+
+        double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+        rebuildThroughput.set(documents.get() / seconds);
+        if (progress.failed) {
+            return false;
         }
 
-        // Add all documents to the Redis vector store.
-        vectorStore.add(documents);
+        productVectorRepository.saveSyncState(WATERMARK_KEY, productVectorRepository.findSyncState(REBUILD_STARTED_KEY).orElse("0"));
+        productVectorRepository.deleteSyncState(REBUILD_CHECKPOINT_KEY, REBUILD_STARTED_KEY);
+        return true;
+    }
+
+    /**
+     * Tracks completed rebuild batches, which may finish out of order, and persists the highest product ID
+     * below which every batch has been written.
+     */
+    private final class Checkpoint {
+        private final TreeMap<Long, Long> completed = new TreeMap<>(); // Last product ID of finished batches, by sequence
+        private long nextSequence;                                     // Sequence of the first unfinished batch
+        private long committedId;                                      // Persisted checkpoint
+        private volatile boolean failed;                               // Whether any batch failed
+        private volatile boolean leaseLost;                            // Whether another node may have taken over
+
+        Checkpoint(long committedId) {
+            this.committedId = committedId;
+        }
+
+        synchronized void complete(long sequence, long lastId) {
+            completed.put(sequence, lastId);
+            boolean advanced = false;
+            while (completed.containsKey(nextSequence)) {
+                committedId = completed.remove(nextSequence++);
+                advanced = true;
+            }
+            // Once the lease is lost the checkpoint belongs to the node that took over
+            if (advanced && !leaseLost) {
+                productVectorRepository.saveSyncState(REBUILD_CHECKPOINT_KEY, Long.toString(committedId));
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,151 @@
+package com.products.productservice.services;
+
+import com.products.productservice.model.Product;
+import com.products.productservice.repositories.IProductRepository;
+import com.products.productservice.utils.RedisLeases;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import redis.clients.jedis.JedisPooled;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Service keeping the precomputed recommendation lists up to date in the background.
+ * Products whose embedding or metadata was rewritten by the vector sync are marked dirty and recomputed
+ * shortly after; a periodic full refresh lets every list pick up products added since it was computed.
+ * The lists are shared by all nodes, so the full refresh runs on one node per refresh interval: it holds a Redis
+ * lease while running and records its completion time, and the other nodes skip their turn.
+ */
+@Service
+public class RecommendationPrecomputeService {
+
+    public static final String REFRESHED_AT_KEY = "recommendation-precompute:refreshed-at"; // Completion time of the last full refresh
+
+    private static final String REFRESH_LEASE = "recommendation-precompute-refresh"; // Lease held by the refreshing node
+
+    private final RecommendationService recommendationService; // Computes and stores the lists
+    private final IProductRepository productRepository;        // Repository for walking the catalogue
+    private final JedisPooled jedisPooled;                     // Redis connection holding the dirty set
+    private final MeterRegistry meterRegistry;                 // Registry for recompute metrics
+    private final RedisLeases redisLeases;                     // Leases making the full refresh exclusive
+    private final int batchSize;                               // Number of products recomputed per batch
+    private final Duration refreshInterval;                    // Time between full refreshes
+    private final Duration leaseDuration;                      // How long the refresh holds its lease between renewals
+
+    /**
+     * Constructor for RecommendationPrecomputeService.
+     *
+     * @param recommendationService The service computing recommendation lists.
+     * @param productRepository     The repository for accessing product data.
+     * @param jedisPooled           The Redis connection holding the set of dirty products.
+     * @param meterRegistry         The registry where recompute counts are published.
+     * @param redisLeases           The leases that let only one node at a time run the full refresh.
+     * @param batchSize             The number of products recomputed per batch.
+     * @param refreshInterval       The time between full refreshes of the catalogue.
+     * @param leaseDuration         How long a node holds the refresh lease without renewing it.
+     */
+    public RecommendationPrecomputeService(RecommendationService recommendationService,
+                                           IProductRepository productRepository,
+                                           JedisPooled jedisPooled,
+                                           MeterRegistry meterRegistry,
+                                           RedisLeases redisLeases,
+                                           @Value("${product.recommendation.precompute.batch-size:100}") int batchSize,
+                                           @Value("${product.recommendation.precompute.refresh-interval:PT6H}") Duration refreshInterval,
+                                           @Value("${product.recommendation.precompute.lease-duration:PT5M}") Duration leaseDuration) {
+        this.recommendationService = recommendationService;
+        this.productRepository = productRepository;
+        this.jedisPooled = jedisPooled;
+        this.meterRegistry = meterRegistry;
+        this.redisLeases = redisLeases;
+        this.batchSize = batchSize;
+        this.refreshInterval = refreshInterval;
+        this.leaseDuration = leaseDuration;
+    }
+
+    /**
+     * Recomputes the lists of products marked dirty since the last run.
+     * IDs are popped from the dirty set, so concurrent nodes share the work. The IDs whose recompute failed are
+     * marked dirty again once the run ends, so they are retried by the next run instead of within this one.
+     */
+    @Scheduled(fixedDelayString = "${product.recommendation.precompute.dirty-interval:PT1M}")
+    public void recomputeChanged() {
+        List<String> failed = new ArrayList<>();
+        try {
+            Set<String> ids;
+            do {
+                ids = jedisPooled.spop(RecommendationService.DIRTY_KEY, batchSize);
+                for (String id : ids) {
+                    try {
+                        recommendationService.recompute(Long.parseLong(id));
+                    } catch (RuntimeException e) {
+                        System.err.println("Could not recompute recommendations of product " + id + ": " + e.getMessage());
+                        failed.add(id);
+                    }
+                }
+                meterRegistry.counter("product.recommendation.precompute", "trigger", "changed").increment(ids.size());
+            } while (ids.size() == batchSize);
+        } finally {
+            if (!failed.isEmpty()) {
+                meterRegistry.counter("product.recommendation.precompute.failed", "trigger", "changed").increment(failed.size());
+                jedisPooled.sadd(RecommendationService.DIRTY_KEY, failed.toArray(String[]::new));
+            }
+        }
+    }
+
+    /**
+     * Recomputes the lists of every product, page by page.
+     * Skipped if another node is refreshing, or has completed a refresh within the refresh interval.
+     */
+    @Scheduled(fixedDelayString = "${product.recommendation.precompute.refresh-interval:PT6H}",
+            initialDelayString = "${product.recommendation.precompute.refresh-interval:PT6H}")
+    public void refreshAll() {
+        Optional<RedisLeases.Lease> acquired = redisLeases.tryAcquire(REFRESH_LEASE, leaseDuration);
+        if (acquired.isEmpty()) {
+            meterRegistry.counter("product.recommendation.precompute.refresh.skipped", "reason", "running").increment();
+            return;
+        }
+        try (RedisLeases.Lease lease = acquired.get()) {
+            String refreshedAt = jedisPooled.get(REFRESHED_AT_KEY);
+            if (refreshedAt != null && System.currentTimeMillis() - Long.parseLong(refreshedAt) < refreshInterval.toMillis()) {
+                meterRegistry.counter("product.recommendation.precompute.refresh.skipped", "reason", "recent").increment();
+                return;
+            }
+            if (refreshPages(lease)) {
+                jedisPooled.set(REFRESHED_AT_KEY, Long.toString(System.currentTimeMillis()));
+            }
+        }
+    }
+
+    /**
+     * Recomputes the lists of every product while holding the refresh lease.
+     *
+     * @param lease The refresh lease, renewed after every page.
+     * @return True if every page was recomputed, false if the lease was lost.
+     */
+    private boolean refreshPages(RedisLeases.Lease lease) {
+        long afterId = 0L;
+        List<Product> page;
+        do {
+            if (!lease.renew()) {
+                System.err.println("Recommendation refresh lease expired; stopping after product " + afterId);
+                return false;
+            }
+            page = productRepository.findPageAfterId(afterId, Limit.of(batchSize));
+            for (Product product : page) {
+                recommendationService.recompute(product);
+            }
+            meterRegistry.counter("product.recommendation.precompute", "trigger", "refresh").increment(page.size());
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == batchSize);
+        return true;
+    }
+}
@@ -1,103 +1,392 @@
 package com.products.productservice.services;
 
 import com.products.productservice.exception.ProductNotFoundException;
+import com.products.productservice.model.Category;
+import com.products.productservice.model.EnrichmentStatus;
 import com.products.productservice.model.Product;
 import com.products.productservice.repositories.IProductRepository;
+import com.products.productservice.repositories.IProductVectorRepository;
+import com.products.productservice.repositories.VectorSearchFilter;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.redis.RedisVectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import redis.clients.jedis.JedisPooled;
 
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Service class for providing product recommendations.
- * Combines query-based and AI-based approaches to generate hybrid recommendations.
+ * Combines query-based and AI-based approaches to generate hybrid recommendations: candidates from both sources
+ * are scored on a weighted blend of embedding similarity, price closeness and category match, and the top
+ * scoring products are kept. Query-based candidates are compared with the target through their stored
+ * embeddings, so both sources are scored on the same features.
+ * Lists are precomputed into Redis as comma-separated "productId:score" pairs under "recommendations:{productId}",
+ * so serving recommendations costs a single key lookup plus product cache reads.
  */
 @Service
 public class RecommendationService {
-    private final RedisVectorStore vectorStore; // Redis vector store for AI-based recommendations.
+    public static final String PRECOMPUTED_KEY_PREFIX = "recommendations:";   // Prefix of the precomputed lists
+    public static final String DIRTY_KEY = "recommendations:dirty";           // Set of product IDs whose list must be recomputed
+
+    private final IProductVectorRepository productVectorRepository; // Vector index for AI-based recommendations.
     private final IProductRepository productRepository; // Repository for accessing product data.
+    private final boolean useVectorMetadata; // Whether AI hits are built from vector document metadata.
+    private final ProductCacheService productCacheService; // Cache used to hydrate precomputed lists.
+    private final JedisPooled jedisPooled; // Redis connection holding the precomputed lists.
+    private final int listSize; // Number of products in a recommendation list.
+    private final Mode mode; // How recommendation candidates are gathered.
+    private final int candidatePoolSize; // Maximum number of candidates taken from each source.
+    private final double similarityWeight; // Weight of the embedding similarity in the score.
+    private final double priceWeight; // Weight of the price closeness in the score.
+    private final double categoryWeight; // Weight of the category match in the score.
+
+    /**
+     * How recommendation candidates are gathered.
+     */
+    public enum Mode {
+        /**
+         * Query-based candidates from the database merged with unfiltered vector neighbours.
+         */
+        HYBRID,
+        /**
+         * A single vector query pre-filtered on the product's category and price band.
+         */
+        FILTERED
+    }
 
     /**
      * Constructor for RecommendationService.
      *
-     * @param vectorStore The Redis vector store used for AI-based recommendations.
+     * @param productVectorRepository The vector index used for AI-based recommendations.
      * @param productRepository The repository for accessing product data.
+     * @param useVectorMetadata Whether to build AI-based hits from the fields stored in the vector documents
+     *                          instead of loading them from the database.
+     * @param productCacheService The product cache used to resolve precomputed lists.
+     * @param jedisPooled The Redis connection holding the precomputed lists.
+     * @param listSize The number of products in a recommendation list.
+     * @param mode How recommendation candidates are gathered.
+     * @param candidatePoolSize The maximum number of candidates taken from each source before scoring.
+     * @param similarityWeight The weight of the embedding similarity in the score.
+     * @param priceWeight The weight of the price closeness in the score.
+     * @param categoryWeight The weight of the category match in the score.
      */
-    RecommendationService(RedisVectorStore vectorStore, IProductRepository productRepository) {
-        this.vectorStore = vectorStore;
+    RecommendationService(IProductVectorRepository productVectorRepository,
+                          IProductRepository productRepository,
+                          @Value("${product.recommendation.use-vector-metadata:true}") boolean useVectorMetadata,
+                          ProductCacheService productCacheService,
+                          JedisPooled jedisPooled,
+                          @Value("${product.recommendation.list-size:20}") int listSize,
+                          @Value("${product.recommendation.mode:HYBRID}") Mode mode,
+                          @Value("${product.recommendation.candidate-pool-size:50}") int candidatePoolSize,
+                          @Value("${product.recommendation.weights.similarity:0.6}") double similarityWeight,
+                          @Value("${product.recommendation.weights.price:0.25}") double priceWeight,
+                          @Value("${product.recommendation.weights.category:0.15}") double categoryWeight) {
+        this.productVectorRepository = productVectorRepository;
         this.productRepository = productRepository;
+        this.useVectorMetadata = useVectorMetadata;
+        this.productCacheService = productCacheService;
+        this.jedisPooled = jedisPooled;
+        this.listSize = listSize;
+        this.mode = mode;
+        this.candidatePoolSize = candidatePoolSize;
+        this.similarityWeight = similarityWeight;
+        this.priceWeight = priceWeight;
+        this.categoryWeight = categoryWeight;
     }
 
     /**
      * Retrieves hybrid recommendations for a given product ID.
-     * Combines query-based and AI-based recommendations to provide a comprehensive list.
+     * Serves the precomputed list with a single key lookup, hydrating the products from the product cache.
+     * Lists that have not been precomputed yet are computed and stored on first request.
      *
      * @param productId The ID of the product for which recommendations are requested.
-     * @return A list of recommended products.
+     * @return The recommended products with their scores, highest score first.
      * @throws ProductNotFoundException If the product with the given ID is not found.
      */
-    public List<Product> getHybridRecommendations(long productId) throws ProductNotFoundException {
-        // Fetch the target product from the repository or throw an exception if not found.
-        Product targetProduct = productRepository.findById(productId)
-                .orElseThrow(() -> new ProductNotFoundException("Product not found with ID: " + productId));
+    public List<ScoredProduct> getHybridRecommendations(long productId) throws ProductNotFoundException {
+        // Fetch the target product from the cache or throw an exception if not found.
+        Product targetProduct = productCacheService.getProduct(productId, this::loadProduct);
 
-        // Use a LinkedHashSet to combine results from query-based and AI-based recommendations.
-        Set<Product> results = new LinkedHashSet<>();
-        results.addAll(getQueryBasedRecommendedProducts(targetProduct)); // Add query-based recommendations.
-        results.addAll(getAIRecommendedProducts(targetProduct)); // Add AI-based recommendations.
+        String precomputed = jedisPooled.get(PRECOMPUTED_KEY_PREFIX + productId);
+        if (precomputed != null) {
+            return hydrate(precomputed);
+        }
+        List<ScoredProduct> results = computeRecommendations(targetProduct);
+        store(productId, results);
+        return results;
+    }
 
-        // Convert the set to a list and return.
-        return new ArrayList<>(results);
+    /**
+     * Recomputes and stores the recommendations of a product, or drops them if the product no longer exists.
+     *
+     * @param productId The ID of the product.
+     */
+    public void recompute(long productId) {
+        Optional<Product> targetProduct = productRepository.findById(productId);
+        if (targetProduct.isEmpty()) {
+            jedisPooled.del(PRECOMPUTED_KEY_PREFIX + productId);
+            return;
+        }
+        recompute(targetProduct.get());
     }
 
     /**
-     * Retrieves query-based recommendations for a given product.
-     * Finds similar products within the same category based on price range.
+     * Recomputes and stores the recommendations of a product.
+     *
+     * @param targetProduct The product, with its category.
+     */
+    public void recompute(Product targetProduct) {
+        store(targetProduct.getId(), computeRecommendations(targetProduct));
+    }
+
+    /**
+     * Computes recommendations for a product from scratch.
+     * In hybrid mode the query-based and AI-based candidates are looked up in parallel; in filtered mode the
+     * vector index alone returns the nearest products in the same category and price band. Query-based candidates
+     * that the vector search did not return get their similarity from their stored embeddings. The candidates are
+     * then scored and the top of the list is kept.
      *
      * @param targetProduct The product for which recommendations are requested.
-     * @return A set of products that match the query-based criteria.
+     * @return The top scoring products, highest score first.
+     */
+    private List<ScoredProduct> computeRecommendations(Product targetProduct) {
+        // Candidate products by ID, and their embedding similarity to the target where known.
+        Map<Long, Product> candidates = new LinkedHashMap<>();
+        Map<Long, Double> similarities = new HashMap<>();
+        if (mode == Mode.FILTERED) {
+            for (ScoredProduct hit : getAIRecommendedProducts(targetProduct, priceBandFilter(targetProduct))) {
+                candidates.put(hit.product().getId(), hit.product());
+                similarities.put(hit.product().getId(), hit.score());
+            }
+        }
+        if (candidates.isEmpty()) {
+            // Hybrid mode, or a product that cannot be compared by embedding yet.
+            try (ExecutorService scope = Executors.newVirtualThreadPerTaskExecutor()) {
+                CompletableFuture<List<Product>> queryBased = CompletableFuture.supplyAsync(
+                        () -> getQueryBasedRecommendedProducts(targetProduct), scope);
+                CompletableFuture<List<ScoredProduct>> aiBased = mode == Mode.FILTERED
+                        ? CompletableFuture.completedFuture(List.of())
+                        : CompletableFuture.supplyAsync(() -> getAIRecommendedProducts(targetProduct,
+                                VectorSearchFilter.excluding(targetProduct.getId())), scope);
+
+                // Products are merged by ID, as a product built from vector metadata is not equal to the same
+                // product loaded from the database.
+                for (ScoredProduct hit : aiBased.join()) {
+                    candidates.put(hit.product().getId(), hit.product());
+                    similarities.put(hit.product().getId(), hit.score());
+                }
+                for (Product product : queryBased.join()) {
+                    candidates.putIfAbsent(product.getId(), product);
+                }
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        addStoredSimilarities(targetProduct, candidates.keySet(), similarities);
+
+        return candidates.values().stream()
+                .map(candidate -> new ScoredProduct(candidate,
+                        score(targetProduct, candidate, similarities.get(candidate.getId()))))
+                .sorted(Comparator.comparingDouble(ScoredProduct::score).reversed())
+                .limit(listSize)
+                .toList();
+    }
+
+    /**
+     * Computes the similarity of the candidates the vector search did not return, from the embeddings stored
+     * for them and for the target, all read in one round trip.
+     *
+     * @param targetProduct The product for which recommendations are requested.
+     * @param candidateIds  The IDs of all candidates.
+     * @param similarities  The known similarities by candidate ID, completed in place.
+     */
+    private void addStoredSimilarities(Product targetProduct, Collection<Long> candidateIds, Map<Long, Double> similarities) {
+        List<Long> ids = new ArrayList<>();
+        for (Long id : candidateIds) {
+            if (!similarities.containsKey(id)) {
+                ids.add(id);
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        ids.add(targetProduct.getId());
+        Map<Long, float[]> embeddings = productVectorRepository.findEmbeddingsByProductIds(ids);
+        float[] target = embeddings.remove(targetProduct.getId());
+        if (target == null) {
+            return; // The target has not been indexed yet
+        }
+        // Negative similarities count as unrelated, as for the vector search hits.
+        embeddings.forEach((id, embedding) -> similarities.put(id, Math.max(0.0, cosineSimilarity(target, embedding))));
+    }
+
+    /**
+     * Computes the cosine similarity of two vectors.
+     *
+     * @param a The first vector.
+     * @param b The second vector, of the same length.
+     * @return The cosine similarity, or 0 if either vector is zero or the lengths differ.
+     */
+    static double cosineSimilarity(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return 0.0; // Embedded by a different model
+        }
+        double dot = 0.0;
+        double normA = 0.0;
+        double normB = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0.0 || normB == 0.0 ? 0.0 : dot / Math.sqrt(normA * normB);
+    }
+
+    /**
+     * Scores a candidate as the weighted sum of its features, each between 0 and 1.
+     * If the similarity is unknown because either product has not been indexed yet, the candidate is scored on
+     * price and category alone, with their weights scaled up to the full weight, rather than as if it were
+     * unrelated to the target.
+     *
+     * @param targetProduct The product for which recommendations are requested.
+     * @param candidate     The candidate product.
+     * @param similarity    The embedding similarity between the two products, or null if unknown.
+     * @return The score of the candidate.
+     */
+    private double score(Product targetProduct, Product candidate, Double similarity) {
+        // Relative price distance, so the feature means the same for cheap and expensive products.
+        double priceCloseness = targetProduct.getPrice() > 0
+                ? Math.max(0.0, 1.0 - Math.abs(candidate.getPrice() - targetProduct.getPrice()) / targetProduct.getPrice())
+                : (candidate.getPrice() == targetProduct.getPrice() ? 1.0 : 0.0);
+        double categoryMatch = targetProduct.getCategory() != null && candidate.getCategory() != null
+                && Objects.equals(targetProduct.getCategory().getName(), candidate.getCategory().getName()) ? 1.0 : 0.0;
+        double featureScore = priceWeight * priceCloseness + categoryWeight * categoryMatch;
+        if (similarity != null) {
+            return similarityWeight * similarity + featureScore;
+        }
+        double featureWeight = priceWeight + categoryWeight;
+        return featureWeight > 0 ? featureScore * (similarityWeight + featureWeight) / featureWeight : 0.0;
+    }
+
+    /**
+     * Stores a recommendation list as comma-separated "productId:score" pairs.
+     *
+     * @param productId The ID of the product the list belongs to.
+     * @param products  The recommended products with their scores.
      */
-    public Set<Product> getQueryBasedRecommendedProducts(Product targetProduct) {
-        // Initialize a LinkedHashSet to store query-based results.
-        Set<Product> results = new LinkedHashSet<>();
+    private void store(long productId, List<ScoredProduct> products) {
+        StringJoiner entries = new StringJoiner(",");
+        for (ScoredProduct product : products) {
+            entries.add(product.product().getId() + ":" + product.score());
+        }
+        jedisPooled.set(PRECOMPUTED_KEY_PREFIX + productId, entries.toString());
+    }
 
+    /**
+     * Resolves a stored recommendation list through the product cache, skipping products deleted since.
+     *
+     * @param entries The comma-separated "productId:score" pairs.
+     * @return The recommended products with their scores, in stored order.
+     */
+    private List<ScoredProduct> hydrate(String entries) {
+        List<ScoredProduct> products = new ArrayList<>();
+        if (entries.isEmpty()) {
+            return products;
+        }
+        for (String entry : entries.split(",")) {
+            int separator = entry.indexOf(':');
+            // Lists stored before scoring was introduced hold bare IDs
+            long id = Long.parseLong(separator < 0 ? entry : entry.substring(0, separator));
+            double score = separator < 0 ? 0.0 : Double.parseDouble(entry.substring(separator + 1));
+            try {
+                products.add(new ScoredProduct(productCacheService.getProduct(id, this::loadProduct), score));
+            } catch (ProductNotFoundException e) {
+                // Deleted after the list was computed
+            }
+        }
+        return products;
+    }
+
+    private Product loadProduct(long id) throws ProductNotFoundException {
+        return productRepository.findById(id)
+                .orElseThrow(() -> new ProductNotFoundException("Product not found with ID: " + id));
+    }
+
+    /**
+     * Retrieves query-based recommendations for a given product.
+     * Finds similar products within the same category based on price range, closest in price first.
+     *
+     * @param targetProduct The product for which recommendations are requested.
+     * @return The products that match the query-based criteria, at most the candidate pool size.
+     */
+    public List<Product> getQueryBasedRecommendedProducts(Product targetProduct) {
         // Fetch similar products from the repository based on category and price range.
-        List<Product> repoResults = productRepository.findSimilarInCategory(targetProduct.getCategory(),
+        return productRepository.findSimilarInCategory(targetProduct.getCategory(),
+                targetProduct.getPrice(), // Order by closeness to the target product price.
                 targetProduct.getPrice() * 0.7, // Minimum price (70% of target product price).
                 targetProduct.getPrice() * 1.3, // Maximum price (130% of target product price).
-                targetProduct.getId()); // Exclude the target product ID.
+                targetProduct.getId(), // Exclude the target product ID.
+                Limit.of(candidatePoolSize));
+    }
 
-        // Add the fetched products to the results set.
-        results.addAll(repoResults);
-        return results;
+    /**
+     * Builds the filter restricting AI-based recommendations to the product's category and price band.
+     *
+     * @param targetProduct The product for which recommendations are requested.
+     * @return The filter, excluding the target product itself.
+     */
+    private static VectorSearchFilter priceBandFilter(Product targetProduct) {
+        return new VectorSearchFilter(
+                targetProduct.getCategory() == null ? null : targetProduct.getCategory().getName(),
+                targetProduct.getPrice() * 0.7, // Minimum price (70% of target product price).
+                targetProduct.getPrice() * 1.3, // Maximum price (130% of target product price).
+                targetProduct.getId()); // Exclude the target product ID.
     }
 
     /**
      * Retrieves AI-based recommendations for a given product.
-     * Uses the product description to perform a similarity search in the Redis vector store.
+     * Searches the vector index with the product's stored embedding, so no embedding API call is needed;
+     * the product description is embedded only if the product has not been indexed yet.
+     * Hits are built from the product fields stored with each document when possible; the remaining hits
+     * are loaded from the database in a single query.
      *
      * @param targetProduct The product for which recommendations are requested.
-     * @return A set of products that match the AI-based criteria.
+     * @param filter        The filter the products must match.
+     * @return The nearest matching products, scored by their cosine similarity to the target, most similar first.
      */
-    public Set<Product> getAIRecommendedProducts(Product targetProduct) {
-        // Initialize a LinkedHashSet to store AI-based results.
-        Set<Product> results = new LinkedHashSet<>();
-
-        // Build a search request using the product description and specify the top K results.
-        SearchRequest searchRequest = SearchRequest.builder()
-                .query(targetProduct.getDescription()) // Query based on product description.
-                .topK(5) // Retrieve the top 5 similar results.
-                .build();
-
-        // Perform a similarity search in the Redis vector store.
-        List<Document> aiResults = vectorStore.similaritySearch(searchRequest);
+    public List<ScoredProduct> getAIRecommendedProducts(Product targetProduct, VectorSearchFilter filter) {
+        Optional<float[]> storedEmbedding = productVectorRepository.findEmbeddingByProductId(targetProduct.getId());
+        List<Document> aiResults;
+        if (storedEmbedding.isPresent()) {
+            aiResults = productVectorRepository.findNearest(storedEmbedding.get(), candidatePoolSize, filter);
+        } else if (targetProduct.getDescription() != null) {
+            aiResults = productVectorRepository.findNearest(targetProduct.getDescription(), candidatePoolSize, filter);
+        } else {
+            return List.of(); // Nothing to compare with until the product has a description.
+        }
 
-        // Iterate through the search results and fetch product details from the repository.
+        // Resolve the hits in similarity order; the target product is excluded by the filter.
+        Map<Long, Product> hits = new LinkedHashMap<>();
+        Map<Long, Double> similarities = new HashMap<>();
         for (Document doc : aiResults) {
             Object idObj = doc.getMetadata().get("id"); // Extract the product ID from metadata.
 
@@ -105,13 +394,73 @@ public class RecommendationService {
                 continue; // Skip if the ID is missing.
             }
             try {
-                // Parse the ID and fetch the product from the repository.
-                Long docProductId = Long.parseLong(idObj.toString());
-                productRepository.findById(docProductId).ifPresent(results::add);
+                long docProductId = Long.parseLong(idObj.toString());
+                if (docProductId != targetProduct.getId()) {
+                    hits.put(docProductId, useVectorMetadata ? fromMetadata(docProductId, doc) : null);
+                    Object distance = doc.getMetadata().get(IProductVectorRepository.DISTANCE_METADATA_KEY);
+                    // Cosine distance is 1 - cosine similarity; negative similarities count as unrelated.
+                    similarities.put(docProductId, distance instanceof Number number ? Math.max(0.0, 1.0 - number.doubleValue()) : 0.0);
+                }
             } catch (NumberFormatException e) {
                 // Handle invalid ID format in document metadata.
             }
         }
+
+        // Load the hits that could not be built from metadata in one query.
+        List<Long> missing = hits.entrySet().stream()
+                .filter(hit -> hit.getValue() == null)
+                .map(Map.Entry::getKey)
+                .toList();
+        if (!missing.isEmpty()) {
+            for (Product product : productRepository.findAllWithCategoryByIdIn(missing)) {
+                hits.put(product.getId(), product);
+            }
+        }
+
+        // Drop hits whose product no longer exists.
+        List<ScoredProduct> results = new ArrayList<>();
+        for (Map.Entry<Long, Product> hit : hits.entrySet()) {
+            if (hit.getValue() != null) {
+                results.add(new ScoredProduct(hit.getValue(), similarities.get(hit.getKey())));
+            }
+        }
         return results;
     }
-}
\ No newline at end of file
+
+    /**
+     * Builds a product from the fields stored with its vector document.
+     * The document may lag the database by one sync interval.
+     *
+     * @param id  The product ID.
+     * @param doc The vector document.
+     * @return The product, or null if the document lacks any field of the product response.
+     */
+    private static Product fromMetadata(long id, Document doc) {
+        Map<String, Object> metadata = doc.getMetadata();
+        Object name = metadata.get("name");
+        Object category = metadata.get("category");
+        Object price = metadata.get("price");
+        Object lastModified = metadata.get("lastModified");
+        if (name == null || category == null || price == null || lastModified == null || doc.getText() == null) {
+            return null; // Written before these fields were stored
+        }
+        try {
+            Product product = new Product();
+            product.setId(id);
+            product.setName(name.toString());
+            product.setDescription(doc.getText());
+            product.setPrice(Double.parseDouble(price.toString()));
+            product.setLastModified(new Date(Long.parseLong(lastModified.toString())));
+            Object imageUrl = metadata.get("imageUrl");
+            product.setImageUrl(imageUrl == null ? null : imageUrl.toString());
+            Object enrichmentStatus = metadata.get("enrichmentStatus");
+            product.setEnrichmentStatus(enrichmentStatus == null ? null : EnrichmentStatus.valueOf(enrichmentStatus.toString()));
+            Category productCategory = new Category();
+            productCategory.setName(category.toString());
+            product.setCategory(productCategory);
+            return product;
+        } catch (IllegalArgumentException e) {
+            return null; // Malformed metadata; load the product instead
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.products.productservice.services;
+
+import com.products.productservice.model.Product;
+
+/**
+ * A recommended product together with its relevance score.
+ *
+ * @param product The recommended product.
+ * @param score   The relevance score; higher is more relevant.
+ */
+public record ScoredProduct(Product product, double score) {
+}
@@ -0,0 +1,147 @@
+package com.products.productservice.services;
+
+import com.products.productservice.model.SearchLog;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service that writes search logs in the background, so searches never wait for an insert.
+ * Logs are put on a bounded in-memory queue and written with JDBC batch inserts by a thread of their own, so the
+ * frequent flushes neither wait behind nor delay the jobs of the shared scheduler. The MySQL driver rewrites each
+ * batch into multi-row inserts ({@code rewriteBatchedStatements}), so a batch costs one round trip.
+ * <p>
+ * Once the queue fills beyond the overload threshold only a sample of the logs is kept, and when it is full new
+ * logs are dropped; searches are never slowed down or failed by logging. Logs still queued when the application
+ * stops are written on shutdown, but logs queued at a crash are lost.
+ */
+@Service
+public class SearchLogWriter {
+
+    private static final String INSERT_SQL = "INSERT INTO search_log " +
+            "(query, page_number, page_size, sort_param, created_at, last_modified, is_deleted) " +
+            "VALUES (?, ?, ?, ?, ?, ?, false)";
+
+    private final JdbcTemplate jdbcTemplate;        // JDBC access for batch inserts
+    private final MeterRegistry meterRegistry;      // Registry for queue metrics
+    private final BlockingQueue<SearchLog> queue;   // Logs waiting to be written
+    private final int batchSize;                    // Maximum number of logs per batch insert
+    private final int overloadDepth;                // Queue depth from which logs are sampled
+    private final double overloadSampleRate;        // Share of logs kept while overloaded
+    private final Duration flushInterval;           // Delay between the end of a flush and the start of the next
+    private final ScheduledExecutorService flusher; // Single thread writing the queued logs
+
+    /**
+     * Constructor for SearchLogWriter.
+     *
+     * @param jdbcTemplate       The JDBC template used for batch inserts.
+     * @param meterRegistry      The registry where the queue depth and dropped logs are published.
+     * @param queueCapacity      The maximum number of logs waiting to be written.
+     * @param batchSize          The maximum number of logs written per batch insert.
+     * @param overloadThreshold  The share of the queue capacity from which logs are sampled.
+     * @param overloadSampleRate The share of logs kept while the queue is above the overload threshold.
+     * @param flushInterval      The delay between two flushes of the queue.
+     */
+    public SearchLogWriter(JdbcTemplate jdbcTemplate,
+                           MeterRegistry meterRegistry,
+                           @Value("${search.log.queue-capacity:10000}") int queueCapacity,
+                           @Value("${search.log.batch-size:500}") int batchSize,
+                           @Value("${search.log.overload-threshold:0.8}") double overloadThreshold,
+                           @Value("${search.log.overload-sample-rate:0.1}") double overloadSampleRate,
+                           @Value("${search.log.flush-interval:PT1S}") Duration flushInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.overloadDepth = (int) (queueCapacity * overloadThreshold);
+        this.overloadSampleRate = overloadSampleRate;
+        this.flushInterval = flushInterval;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("search-log-flush").daemon().factory());
+        meterRegistry.gaugeCollectionSize("search.log.queue.depth", List.of(), queue);
+    }
+
+    /**
+     * Starts flushing the queue periodically.
+     */
+    @PostConstruct
+    public void start() {
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                // Keep flushing; an exception would cancel the schedule
+                System.err.println("Search log flush failed: " + e.getMessage());
+            }
+        }, flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a search log for writing. Never blocks.
+     *
+     * @param searchLog The search log to write.
+     */
+    public void record(SearchLog searchLog) {
+        if (queue.size() >= overloadDepth && ThreadLocalRandom.current().nextDouble() >= overloadSampleRate) {
+            meterRegistry.counter("search.log.dropped", "reason", "sampled").increment();
+            return;
+        }
+        if (!queue.offer(searchLog)) {
+            meterRegistry.counter("search.log.dropped", "reason", "full").increment();
+        }
+    }
+
+    /**
+     * Writes the queued search logs in batches until the queue is empty.
+     * A batch that fails is dropped rather than retried, so a database outage cannot back up the queue.
+     */
+    public void flush() {
+        List<SearchLog> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            try {
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (statement, searchLog) -> {
+                    statement.setString(1, searchLog.getQuery());
+                    statement.setInt(2, searchLog.getPageNumber());
+                    statement.setInt(3, searchLog.getPageSize());
+                    statement.setString(4, searchLog.getSortParam());
+                    statement.setTimestamp(5, new Timestamp(searchLog.getCreatedAt().getTime()));
+                    statement.setTimestamp(6, new Timestamp(searchLog.getLastModified().getTime()));
+                });
+                meterRegistry.counter("search.log.written").increment(batch.size());
+            } catch (DataAccessException e) {
+                System.err.println("Could not write " + batch.size() + " search logs: " + e.getMessage());
+                meterRegistry.counter("search.log.dropped", "reason", "error").increment(batch.size());
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Stops the periodic flushes and writes the logs still queued when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(flushInterval.toMillis() + 5000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
@@ -0,0 +1,247 @@
+package com.products.productservice.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.products.productservice.dtos.ProductVersionDto;
+import com.products.productservice.events.ProductChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * Two-tier cache of search results: a local Caffeine cache in front of Redis, shared by all nodes.
+ * Results are stored as lists of product IDs and versions, whose products are then served from the product caches.
+ * <p>
+ * Every entry is keyed by the catalogue version, a Redis counter incremented whenever a product changes.
+ * A product write therefore invalidates all cached results at once: the new version is broadcast to every node,
+ * after which old entries are never read again and expire. Hits and misses are counted per normalized query,
+ * for the most recently searched queries.
+ */
+@Service
+public class SearchResultCache implements MessageListener {
+
+    /**
+     * Redis key of the catalogue version counter.
+     */
+    public static final String CATALOGUE_VERSION_KEY = "search:catalogue-version";
+
+    /**
+     * Redis pub/sub channel on which new catalogue versions are broadcast.
+     */
+    public static final String CATALOGUE_VERSION_CHANNEL = "SEARCH_CATALOGUE_VERSION";
+
+    /**
+     * Prefix of the Redis keys holding cached search results.
+     */
+    public static final String RESULTS_KEY_PREFIX = "search:results:";
+
+    private static final long UNKNOWN_VERSION = -1L;
+
+    private final StringRedisTemplate stringRedisTemplate; // Template for the shared results and the version counter
+    private final Cache<String, SearchResults> localCache; // Local results by versioned key
+    private final Cache<String, QueryStats> queryStats;    // Hits and misses of the most recent queries
+    private final Duration redisTimeToLive;                // Lifetime of results in Redis
+    private final AtomicLong catalogueVersion = new AtomicLong(UNKNOWN_VERSION); // Latest version seen by this node
+    private final Counter redisHits;                       // Local misses served by Redis
+    private final Counter redisMisses;                     // Local misses that ran the search
+
+    /**
+     * Hits and misses of one normalized query.
+     */
+    private static final class QueryStats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+    }
+
+    /**
+     * Hit rate of one normalized query, as reported by the search cache endpoint.
+     *
+     * @param query   The normalized query.
+     * @param hits    The number of searches served from either cache tier.
+     * @param misses  The number of searches that ran against the database.
+     * @param hitRate The share of searches served from cache.
+     */
+    public record QueryHitRate(String query, long hits, long misses, double hitRate) {
+    }
+
+    /**
+     * Constructor for SearchResultCache.
+     *
+     * @param stringRedisTemplate The Redis template for cached results and the catalogue version.
+     * @param meterRegistry       The registry where cache hit/miss metrics are published.
+     * @param maximumSize         Maximum number of results kept in the local cache.
+     * @param localTimeToLive     Lifetime of local results, bounding staleness if a version broadcast is lost.
+     * @param redisTimeToLive     Lifetime of results in Redis.
+     * @param trackedQueries      Number of most recent queries whose hit rates are tracked.
+     */
+    public SearchResultCache(StringRedisTemplate stringRedisTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${search.cache.local.maximum-size:10000}") long maximumSize,
+                             @Value("${search.cache.local.expire-after-write:PT1M}") Duration localTimeToLive,
+                             @Value("${search.cache.redis.expire-after-write:PT10M}") Duration redisTimeToLive,
+                             @Value("${search.cache.tracked-queries:1000}") long trackedQueries) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisTimeToLive = redisTimeToLive;
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(localTimeToLive)
+                .recordStats()
+                .build();
+        this.queryStats = Caffeine.newBuilder()
+                .maximumSize(trackedQueries)
+                .build();
+        // Publishes cache.gets (hit/miss), cache.evictions and cache.size for the local tier
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "searchResultCache");
+        this.redisHits = Counter.builder("search.cache.redis.gets").tag("result", "hit").register(meterRegistry);
+        this.redisMisses = Counter.builder("search.cache.redis.gets").tag("result", "miss").register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached results of a search at the current catalogue version, running the search on a miss.
+     *
+     * @param query  The normalized query, under which hits and misses are counted.
+     * @param key    The key of the search: the normalized query with its paging and sort parameters.
+     * @param search Runs the search against the database, given the catalogue version the results are cached at.
+     * @return The search results.
+     */
+    public SearchResults get(String query, String key, LongFunction<SearchResults> search) {
+        long version = getCatalogueVersion();
+        String versionedKey = version + ":" + key;
+        QueryStats stats = queryStats.get(query, ignored -> new QueryStats());
+
+        // Serve from the local cache without a network round trip
+        SearchResults results = localCache.getIfPresent(versionedKey);
+        if (results != null) {
+            stats.hits.increment();
+            return results;
+        }
+
+        // Fall back to the results shared in Redis, and finally to the database
+        String cached = stringRedisTemplate.opsForValue().get(RESULTS_KEY_PREFIX + versionedKey);
+        if (cached != null) {
+            redisHits.increment();
+            stats.hits.increment();
+            results = decode(cached);
+        } else {
+            redisMisses.increment();
+            stats.misses.increment();
+            results = search.apply(version);
+            stringRedisTemplate.opsForValue().set(RESULTS_KEY_PREFIX + versionedKey, encode(results), redisTimeToLive);
+        }
+        localCache.put(versionedKey, results);
+        return results;
+    }
+
+    /**
+     * Returns the hit rates of the tracked queries, most searched first.
+     *
+     * @param limit The maximum number of queries to return.
+     * @return The hit rates.
+     */
+    public List<QueryHitRate> getQueryHitRates(int limit) {
+        List<QueryHitRate> hitRates = new ArrayList<>();
+        for (Map.Entry<String, QueryStats> entry : queryStats.asMap().entrySet()) {
+            long hits = entry.getValue().hits.sum();
+            long misses = entry.getValue().misses.sum();
+            hitRates.add(new QueryHitRate(entry.getKey(), hits, misses, hits + misses == 0 ? 0.0 : (double) hits / (hits + misses)));
+        }
+        hitRates.sort(Comparator.comparingLong((QueryHitRate hitRate) -> hitRate.hits() + hitRate.misses()).reversed());
+        return hitRates.subList(0, Math.min(limit, hitRates.size()));
+    }
+
+    /**
+     * Increments the catalogue version once a product change has been committed, and broadcasts it to every node.
+     * Falls back to immediate execution when the event is published outside a transaction.
+     *
+     * @param event The event describing the changed product.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Long version = stringRedisTemplate.opsForValue().increment(CATALOGUE_VERSION_KEY);
+        if (version != null) {
+            catalogueVersion.accumulateAndGet(version, Math::max);
+            stringRedisTemplate.convertAndSend(CATALOGUE_VERSION_CHANNEL, String.valueOf(version));
+        }
+    }
+
+    /**
+     * Handles catalogue versions published by any node (including this one).
+     *
+     * @param message The message whose body is the new catalogue version.
+     * @param pattern The channel pattern that matched, if any.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            long version = Long.parseLong(new String(message.getBody(), StandardCharsets.UTF_8));
+            // Messages may arrive out of order; never go back to an older version
+            catalogueVersion.accumulateAndGet(version, Math::max);
+        } catch (NumberFormatException e) {
+            // Ignore malformed messages; the local cache TTL bounds any staleness
+        }
+    }
+
+    /**
+     * Returns the catalogue version, reading it from Redis the first time.
+     *
+     * @return The latest catalogue version seen by this node.
+     */
+    public long getCatalogueVersion() {
+        long version = catalogueVersion.get();
+        if (version == UNKNOWN_VERSION) {
+            String stored = stringRedisTemplate.opsForValue().get(CATALOGUE_VERSION_KEY);
+            version = catalogueVersion.accumulateAndGet(stored == null ? 0L : Long.parseLong(stored), Math::max);
+        }
+        return version;
+    }
+
+    /**
+     * Encodes results as the next cursor on the first line, followed by one "id:lastModified:categoryLastModified"
+     * line per product. A product without a category version has an empty third field.
+     */
+    private static String encode(SearchResults results) {
+        StringBuilder encoded = new StringBuilder(results.nextCursor() == null ? "" : results.nextCursor());
+        for (ProductVersionDto product : results.products()) {
+            encoded.append('\n').append(product.getId())
+                    .append(':').append(timeOf(product.getLastModified()))
+                    .append(':');
+            if (product.getCategoryLastModified() != null) {
+                encoded.append(product.getCategoryLastModified().getTime());
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static SearchResults decode(String encoded) {
+        String[] lines = encoded.split("\n");
+        List<ProductVersionDto> products = new ArrayList<>(lines.length - 1);
+        for (int i = 1; i < lines.length; i++) {
+            String[] fields = lines[i].split(":");
+            // Results cached before category versions were added, and products without one, have no third field
+            products.add(new ProductVersionDto(Long.parseLong(fields[0]), new Date(Long.parseLong(fields[1])),
+                    fields.length > 2 ? new Date(Long.parseLong(fields[2])) : null));
+        }
+        return new SearchResults(products, lines[0].isEmpty() ? null : lines[0]);
+    }
+
+    private static long timeOf(Date date) {
+        return date == null ? 0L : date.getTime();
+    }
+}
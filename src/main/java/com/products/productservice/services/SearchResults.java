@@ -0,0 +1,14 @@
+package com.products.productservice.services;
+
+import com.products.productservice.dtos.ProductVersionDto;
+
+import java.util.List;
+
+/**
+ * A page of search results.
+ *
+ * @param products   The IDs and versions of the products on the page, most relevant first.
+ * @param nextCursor The opaque cursor of the next page, or null if this is the last page or the page was reached by number.
+ */
+public record SearchResults(List<ProductVersionDto> products, String nextCursor) {
+}
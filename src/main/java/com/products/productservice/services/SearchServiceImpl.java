@@ -1,54 +1,161 @@
 package com.products.productservice.services;
 
+import com.products.productservice.dtos.ProductSearchHitDto;
+import com.products.productservice.dtos.ProductVersionDto;
+import com.products.productservice.exception.InvalidSearchRequestException;
 import com.products.productservice.model.Product;
 import com.products.productservice.model.SearchLog;
 import com.products.productservice.repositories.IAIGenerationTypeRepository;
 import com.products.productservice.repositories.IProductRepository;
-import com.products.productservice.repositories.ISearchRepository;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
 
 /**
  * Implementation of the SearchService interface for searching products.
  * Provides functionality to search for products with pagination, sorting, and logging of search queries.
+ * Products are found through the database full-text indexes over product names, descriptions and category names,
+ * so a search reads only the matching rows whatever the size of the catalogue. Words shorter than the full-text
+ * index's minimum token size, such as "tv", "pc" or "4k", are matched against the start of product names instead.
+ * Stopwords such as "the" or "for" are ignored by the full-text index and never match.
+ * Results are cached as product IDs and versions, keyed by the normalized query and the paging parameters.
  */
 @Service
 public class SearchServiceImpl implements ISearchService {
 
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+"); // Anything but letters and digits
+    private static final int FULLTEXT_MIN_TOKEN_SIZE = 3; // MySQL innodb_ft_min_token_size; shorter words are not indexed
+
     private final IProductRepository productRepository; // Repository for accessing product data
-    private final ISearchRepository searchRepository;   // Repository for logging search queries
+    private final SearchLogWriter searchLogWriter;      // Background writer of search logs
+    private final SearchResultCache searchResultCache;  // Cache of result IDs, invalidated by catalogue changes
 
     /**
      * Constructor for SearchServiceImpl.
      *
      * @param productRepository The repository used to access product data.
-     * @param searchRepository  The repository used to log search queries.
+     * @param searchLogWriter   The writer used to log search queries.
+     * @param searchResultCache The cache of search results.
      */
-    public SearchServiceImpl(IProductRepository productRepository, ISearchRepository searchRepository) {
+    public SearchServiceImpl(IProductRepository productRepository, SearchLogWriter searchLogWriter,
+                             SearchResultCache searchResultCache) {
         this.productRepository = productRepository;
-        this.searchRepository = searchRepository;
+        this.searchLogWriter = searchLogWriter;
+        this.searchResultCache = searchResultCache;
     }
 
     /**
      * Searches for products based on a query string, with pagination and sorting.
-     * Logs the search query details to the database.
+     * Logs the search query details to the database in the background.
+     * Results are cached until the catalogue changes.
      *
-     * @param query      The search query to filter products by name.
+     * @param query      The search query to match against product names, descriptions and categories.
      * @param pageNumber The page number for pagination.
      * @param pageSize   The number of items per page.
-     * @param sortParam  The parameter to sort the results by.
-     * @return A paginated list of products matching the search query.
+     * @param sortParam  The order of the results: relevance (default), price, createdAt or name.
+     * @return The IDs and versions of the products on the page, in the requested order.
+     * @throws InvalidSearchRequestException If the sort order is not supported.
      */
     @Override
-    public Page<Product> search(String query, int pageNumber, int pageSize, String sortParam) {
-        // Define sorting: primary by sortParam in descending order, secondary by price in ascending order
-        Sort sort = Sort.by(sortParam).descending().and(Sort.by("price").ascending());
+    public SearchResults search(String query, int pageNumber, int pageSize, String sortParam) {
+        // Reject unsupported orders before doing any work
+        SearchSort sort = SearchSort.fromParam(sortParam);
+        logSearch(query, pageNumber, pageSize, sort.getParam());
+
+        SearchTerms terms = SearchTerms.of(query);
+        if (terms.isEmpty()) {
+            return new SearchResults(List.of(), null); // Nothing searchable, e.g. only punctuation
+        }
+        String key = "page|" + terms.normalized() + "|" + pageNumber + "|" + pageSize + "|" + sort;
+        return searchResultCache.get(terms.normalized(), key, catalogueVersion -> {
+            // Perform the search in the repository with the given page number, size and order
+            Pageable pageable = PageRequest.of(pageNumber, pageSize);
+            Slice<Product> slice = switch (sort) {
+                case RELEVANCE -> productRepository.searchFullText(terms.fullText(), terms.namePattern(), pageable);
+                case PRICE -> productRepository.searchFullTextByPrice(terms.fullText(), terms.namePattern(), pageable);
+                case CREATED_AT -> productRepository.searchFullTextByCreatedAt(terms.fullText(), terms.namePattern(), pageable);
+                case NAME -> productRepository.searchFullTextByName(terms.fullText(), terms.namePattern(), pageable);
+            };
+            List<ProductVersionDto> products = new ArrayList<>(slice.getNumberOfElements());
+            for (Product product : slice) {
+                products.add(new ProductVersionDto(product.getId(), product.getLastModified(),
+                        product.getCategory() == null ? null : product.getCategory().getLastModified()));
+            }
+            return new SearchResults(products, null);
+        });
+    }
 
+    /**
+     * Searches for products based on a query string, continuing after the last product of the previous page.
+     * Each page seeks on the relevance score and product ID, so deep pages cost the same as the first one.
+     * Relevance scores change with the catalogue, so a cursor is only accepted at the catalogue version it was
+     * issued at; seeking on a score computed at another version could skip or repeat hits.
+     * Logs the search query details to the database in the background, with page number -1 for continued searches.
+     * Results are cached until the catalogue changes.
+     *
+     * @param query     The search query to match against product names, descriptions and categories.
+     * @param cursor    The cursor returned with the previous page, or null for the first page.
+     * @param pageSize  The number of items per page.
+     * @param sortParam The order of the results; only relevance is supported.
+     * @return The IDs and versions of the products on the page, with the cursor of the next page.
+     * @throws InvalidSearchRequestException If the cursor is malformed, belongs to another query, was issued before
+     *                                       the catalogue last changed or the sort order is not relevance.
+     */
+    @Override
+    public SearchResults searchAfter(String query, String cursor, int pageSize, String sortParam) {
+        if (SearchSort.fromParam(sortParam) != SearchSort.RELEVANCE) {
+            throw new InvalidSearchRequestException("Cursor pagination only supports sortParam '"
+                    + SearchSort.RELEVANCE.getParam() + "'; use pageNumber for other orders");
+        }
+        logSearch(query, cursor == null ? 0 : -1, pageSize, SearchSort.RELEVANCE.getParam());
+
+        SearchTerms terms = SearchTerms.of(query);
+        if (terms.isEmpty()) {
+            return new SearchResults(List.of(), null); // Nothing searchable, e.g. only punctuation
+        }
+        SearchCursor after = cursor == null ? null
+                : SearchCursor.decode(cursor, terms, searchResultCache.getCatalogueVersion());
+        String key = "cursor|" + terms.normalized() + "|" + (cursor == null ? "" : cursor) + "|" + pageSize;
+        return searchResultCache.get(terms.normalized(), key, catalogueVersion -> {
+            // Seek past the last hit of the previous page; one extra hit tells whether another page follows
+            List<ProductSearchHitDto> hits = after == null
+                    ? productRepository.searchFullTextAfter(terms.fullText(), terms.namePattern(), true, 0.0, 0L,
+                            Limit.of(pageSize + 1))
+                    : productRepository.searchFullTextAfter(terms.fullText(), terms.namePattern(), false,
+                            after.score(), after.id(), Limit.of(pageSize + 1));
+
+            String nextCursor = null;
+            if (hits.size() > pageSize) {
+                hits = hits.subList(0, pageSize);
+                ProductSearchHitDto last = hits.get(pageSize - 1);
+                nextCursor = new SearchCursor(last.getScore(), last.getId(), catalogueVersion, terms.hash()).encode();
+            }
+            List<ProductVersionDto> products = new ArrayList<>(hits.size());
+            for (ProductSearchHitDto hit : hits) {
+                products.add(new ProductVersionDto(hit.getId(), hit.getLastModified(), hit.getCategoryLastModified()));
+            }
+            return new SearchResults(products, nextCursor);
+        });
+    }
+
+    /**
+     * Queues the details of a search query to be logged to the database.
+     */
+    private void logSearch(String query, int pageNumber, int pageSize, String sortParam) {
         // Create a new SearchLog object to log the search query details
         SearchLog searchLog = new SearchLog();
         searchLog.setQuery(query); // Set the search query
@@ -57,12 +164,117 @@ public class SearchServiceImpl implements ISearchService {
         searchLog.setSortParam(sortParam); // Set the sorting parameter
         searchLog.setCreatedAt(new Date()); // Set the creation timestamp
         searchLog.setLastModified(searchLog.getCreatedAt()); // Set the last modified timestamp
-        searchRepository.save(searchLog); // Save the search log to the database
+        searchLogWriter.record(searchLog); // Queue the search log for writing to the database
+    }
+
+    /**
+     * Search terms derived from a user query.
+     *
+     * @param fullText    The full-text search terms in boolean mode, possibly empty.
+     * @param namePattern The LIKE pattern for the words too short for the full-text index, or null if there are none.
+     * @param normalized  The normalized query, under which results are cached.
+     */
+    private record SearchTerms(String fullText, String namePattern, String normalized) {
+
+        /**
+         * Converts a user query into search terms.
+         * The query is split into words, dropping characters that are boolean mode operators. Every word long
+         * enough for the full-text index is matched as a prefix of any word; the shorter ones, in query order,
+         * are matched as a prefix of the product name, e.g. "4k tv" as {@code 4k%tv%}. Words are optional, so
+         * products matching more of them rank higher.
+         *
+         * @param query The user query.
+         * @return The search terms.
+         */
+        static SearchTerms of(String query) {
+            StringJoiner fullText = new StringJoiner(" ");
+            StringBuilder namePattern = new StringBuilder();
+            StringJoiner normalized = new StringJoiner(" ");
+            for (String token : TOKEN_SEPARATOR.split(query.toLowerCase(Locale.ROOT))) {
+                if (token.isEmpty()) {
+                    continue;
+                }
+                if (token.codePointCount(0, token.length()) >= FULLTEXT_MIN_TOKEN_SIZE) {
+                    fullText.add(token + "*");
+                    normalized.add(token + "*");
+                } else {
+                    // Tokens hold only letters and digits, so they need no LIKE escaping
+                    namePattern.append(token).append('%');
+                    normalized.add(token);
+                }
+            }
+            return new SearchTerms(fullText.toString(), namePattern.isEmpty() ? null : namePattern.toString(),
+                    normalized.toString());
+        }
+
+        boolean isEmpty() {
+            return normalized.isEmpty();
+        }
+
+        /**
+         * Hashes the normalized query, so a cursor can be tied to the query it was issued for.
+         *
+         * @return The first 8 bytes of the SHA-256 hash of the normalized query, hex-encoded.
+         */
+        String hash() {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                return HexFormat.of().formatHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)), 0, 8);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+    }
+
+    /**
+     * Position of the last hit of a page in the result order: relevance score descending, then ID ascending.
+     * Encoded as an opaque URL-safe token, so clients cannot depend on its contents. The cursor carries a hash of
+     * the query it was issued for, since a position is meaningless in the results of any other query, and the
+     * catalogue version, since InnoDB computes relevance from word statistics that change with every product write.
+     *
+     * @param score            The relevance score of the hit.
+     * @param id               The product ID of the hit.
+     * @param catalogueVersion The catalogue version the score was computed at.
+     * @param termsHash        The hash of the normalized query the hit was found for.
+     */
+    private record SearchCursor(double score, long id, long catalogueVersion, String termsHash) {
 
-        // Create a pageable object with the given page number and size
-        Pageable pageable = PageRequest.of(pageNumber, pageSize);
+        String encode() {
+            // Double.toString round-trips exactly, so the seek compares against the very same score
+            String position = score + ":" + id + ":" + catalogueVersion + ":" + termsHash;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+        }
 
-        // Perform the search in the repository and return the results
-        return productRepository.findByNameContaining(query, pageable);
+        /**
+         * Decodes a cursor issued for the given search terms.
+         * A cursor issued at a newer catalogue version than this node has seen yet is accepted, as the version
+         * broadcast may simply not have reached this node.
+         *
+         * @param cursor           The encoded cursor.
+         * @param terms            The search terms of the current request.
+         * @param catalogueVersion The current catalogue version.
+         * @return The decoded cursor.
+         * @throws InvalidSearchRequestException If the cursor is malformed, was issued for another query or was
+         *                                       issued before the catalogue changed.
+         */
+        static SearchCursor decode(String cursor, SearchTerms terms, long catalogueVersion) {
+            SearchCursor decoded;
+            try {
+                String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                        .split(":", 4);
+                decoded = new SearchCursor(Double.parseDouble(position[0]), Long.parseLong(position[1]),
+                        Long.parseLong(position[2]), position[3]);
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new InvalidSearchRequestException("Invalid search cursor: " + cursor);
+            }
+            if (!decoded.termsHash().equals(terms.hash())) {
+                throw new InvalidSearchRequestException("Search cursor does not belong to this query: " + cursor);
+            }
+            if (decoded.catalogueVersion() < catalogueVersion) {
+                throw new InvalidSearchRequestException(
+                        "Search cursor has expired as the catalogue changed; search again from the first page");
+            }
+            return decoded;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,60 @@
+package com.products.productservice.services;
+
+import com.products.productservice.exception.InvalidSearchRequestException;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Orders in which search results can be returned; every order ends with the product ID so that pages are stable.
+ * Price, creation date and name each have an index in that order. MySQL chooses per query whether to read products
+ * in index order or to sort the full-text matches (a filesort), which is cheaper when few products match.
+ */
+public enum SearchSort {
+    /**
+     * Most relevant first, ranked by the full-text indexes.
+     */
+    RELEVANCE("relevance"),
+    /**
+     * Cheapest first.
+     */
+    PRICE("price"),
+    /**
+     * Newest first.
+     */
+    CREATED_AT("createdAt"),
+    /**
+     * Alphabetically by name.
+     */
+    NAME("name");
+
+    private final String param; // Value of the sortParam request parameter
+
+    SearchSort(String param) {
+        this.param = param;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    /**
+     * Resolves the sortParam request parameter.
+     *
+     * @param param The parameter value, matched case-insensitively; null or blank for relevance.
+     * @return The sort order.
+     * @throws InvalidSearchRequestException If the value is not a supported sort order.
+     */
+    public static SearchSort fromParam(String param) {
+        if (param == null || param.isBlank()) {
+            return RELEVANCE;
+        }
+        for (SearchSort sort : values()) {
+            if (sort.param.equalsIgnoreCase(param)) {
+                return sort;
+            }
+        }
+        throw new InvalidSearchRequestException("Unsupported sortParam '" + param + "', expected one of "
+                + Arrays.stream(values()).map(SearchSort::getParam).collect(Collectors.joining(", ")));
+    }
+}
@@ -0,0 +1,211 @@
+package com.products.productservice.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.resps.Tuple;
+import redis.clients.jedis.search.Document;
+import redis.clients.jedis.search.FTCreateParams;
+import redis.clients.jedis.search.IndexDataType;
+import redis.clients.jedis.search.Query;
+import redis.clients.jedis.search.RediSearchUtil;
+import redis.clients.jedis.search.SearchResult;
+import redis.clients.jedis.search.schemafields.TagField;
+import redis.clients.jedis.search.schemafields.TextField;
+import redis.clients.jedis.search.schemafields.VectorField;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Cache of AI completions keyed by the meaning of the prompt rather than its exact text.
+ * Prompts are embedded with the OpenAI embedding model and looked up in a dedicated Redis vector index;
+ * a stored completion is reused when its prompt is at least as similar as the configured threshold.
+ * Entries expire after a TTL, and the oldest entries are evicted once the cache exceeds its size limit.
+ * Completions are grouped by namespace, so answers are only reused within the feature they were generated for.
+ * Only suitable for completions that do not name their subject; product descriptions use the exact-key
+ * {@link ProductDescriptionCache} instead, since prompts for two products of one category are near-identical.
+ */
+@Service
+public class SemanticResponseCache {
+
+    public static final String CHAT_NAMESPACE = "chat";                // Namespace for /chat completions
+
+    private static final String INDEX_NAME = "semantic-response-cache";  // Name of the RediSearch index
+    private static final String KEY_PREFIX = "semantic-cache:entry:";    // Prefix of the cached entry hashes
+    private static final String ENTRIES_KEY = "semantic-cache:entries";  // Sorted set of entry keys by creation time
+    private static final String SCORE_FIELD = "vector_score";            // Cosine distance returned by the KNN query
+
+    private final JedisPooled jedisPooled;          // Redis connection used for the index and entries
+    private final EmbeddingModel embeddingModel;    // Model used to embed prompts
+    private final MeterRegistry meterRegistry;      // Registry for hit/miss metrics
+    private final double similarityThreshold;       // Minimum cosine similarity for a hit
+    private final Duration timeToLive;              // Lifetime of an entry
+    private final int maximumEntries;               // Maximum number of entries before the oldest are evicted
+    private volatile boolean indexCreated;          // Whether the index is known to exist
+
+    /**
+     * Constructor for SemanticResponseCache.
+     *
+     * @param jedisPooled         The Redis connection pool.
+     * @param embeddingModel      The embedding model used to embed prompts.
+     * @param meterRegistry       The registry where hit/miss metrics are published.
+     * @param similarityThreshold Minimum cosine similarity between prompts for a cached completion to be reused.
+     * @param timeToLive          Lifetime of a cached completion.
+     * @param maximumEntries      Maximum number of cached completions.
+     */
+    public SemanticResponseCache(JedisPooled jedisPooled,
+                                 @Qualifier("openAiEmbeddingModel") EmbeddingModel embeddingModel,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${semantic-cache.similarity-threshold:0.95}") double similarityThreshold,
+                                 @Value("${semantic-cache.ttl:PT24H}") Duration timeToLive,
+                                 @Value("${semantic-cache.maximum-entries:10000}") int maximumEntries) {
+        this.jedisPooled = jedisPooled;
+        this.embeddingModel = embeddingModel;
+        this.meterRegistry = meterRegistry;
+        this.similarityThreshold = similarityThreshold;
+        this.timeToLive = timeToLive;
+        this.maximumEntries = maximumEntries;
+    }
+
+    /**
+     * Returns a cached completion for a semantically similar prompt, or generates and caches a new one.
+     * The cache never fails a request: if Redis or the embedding model is unavailable, the completion is generated.
+     *
+     * @param namespace The namespace of the prompt, e.g. {@link #CHAT_NAMESPACE}.
+     * @param prompt    The prompt to look up.
+     * @param generator Generates the completion on a cache miss; a null completion is not cached.
+     * @return The cached or generated completion.
+     */
+    public String getOrGenerate(String namespace, String prompt, Supplier<String> generator) {
+        byte[] embedding;
+        try {
+            embedding = RediSearchUtil.toByteArray(embeddingModel.embed(prompt));
+            String cached = find(namespace, embedding);
+            if (cached != null) {
+                record(namespace, "hit");
+                return cached;
+            }
+        } catch (RuntimeException e) {
+            if (e instanceof JedisDataException) {
+                indexCreated = false; // The index may have been dropped; recreate it on the next lookup
+            }
+            System.err.println("Semantic cache lookup failed: " + e.getMessage());
+            record(namespace, "error");
+            return generator.get();
+        }
+
+        record(namespace, "miss");
+        String completion = generator.get();
+        if (completion != null) {
+            try {
+                store(namespace, prompt, embedding, completion);
+            } catch (JedisException e) {
+                System.err.println("Failed to store semantic cache entry: " + e.getMessage());
+            }
+        }
+        return completion;
+    }
+
+    /**
+     * Finds the completion of the most similar cached prompt.
+     *
+     * @param namespace The namespace to search.
+     * @param embedding The prompt embedding.
+     * @return The cached completion, or null if no prompt is similar enough.
+     */
+    private String find(String namespace, byte[] embedding) {
+        ensureIndex(embedding.length / Float.BYTES);
+        Query query = new Query("(@namespace:{" + namespace + "})=>[KNN 1 @embedding $BLOB AS " + SCORE_FIELD + "]")
+                .addParam("BLOB", embedding)
+                .returnFields("response", SCORE_FIELD)
+                .setSortBy(SCORE_FIELD, true)
+                .limit(0, 1)
+                .dialect(2);
+        SearchResult result = jedisPooled.ftSearch(INDEX_NAME, query);
+        if (result.getDocuments().isEmpty()) {
+            return null;
+        }
+        Document document = result.getDocuments().get(0);
+        // The index uses cosine distance, which is 1 - cosine similarity
+        double similarity = 1 - Double.parseDouble(document.getString(SCORE_FIELD));
+        return similarity >= similarityThreshold ? document.getString("response") : null;
+    }
+
+    /**
+     * Stores a completion and evicts the oldest entries beyond the size limit.
+     *
+     * @param namespace  The namespace of the prompt.
+     * @param prompt     The prompt.
+     * @param embedding  The prompt embedding.
+     * @param completion The completion to cache.
+     */
+    private void store(String namespace, String prompt, byte[] embedding, String completion) {
+        String key = KEY_PREFIX + UUID.randomUUID();
+        Map<byte[], byte[]> fields = new HashMap<>();
+        fields.put(bytes("namespace"), bytes(namespace));
+        fields.put(bytes("prompt"), bytes(prompt));
+        fields.put(bytes("response"), bytes(completion));
+        fields.put(bytes("embedding"), embedding);
+        jedisPooled.hset(bytes(key), fields);
+        // Redis removes expired hashes from the index automatically
+        jedisPooled.expire(key, timeToLive.toSeconds());
+
+        long now = System.currentTimeMillis();
+        jedisPooled.zadd(ENTRIES_KEY, now, key);
+        // Forget entries that have already expired, then evict the oldest live ones beyond the limit
+        jedisPooled.zremrangeByScore(ENTRIES_KEY, Double.NEGATIVE_INFINITY, now - timeToLive.toMillis());
+        long excess = jedisPooled.zcard(ENTRIES_KEY) - maximumEntries;
+        if (excess > 0) {
+            List<Tuple> evicted = jedisPooled.zpopmin(ENTRIES_KEY, (int) excess);
+            jedisPooled.del(evicted.stream().map(Tuple::getElement).toArray(String[]::new));
+            meterRegistry.counter("semantic.cache.evictions").increment(evicted.size());
+        }
+    }
+
+    /**
+     * Creates the vector index on first use, sized to the embedding model's dimensions.
+     *
+     * @param dimensions The number of dimensions of the embeddings.
+     */
+    private void ensureIndex(int dimensions) {
+        if (indexCreated) {
+            return;
+        }
+        Map<String, Object> vectorAttributes = Map.of(
+                "TYPE", "FLOAT32",
+                "DIM", dimensions,
+                "DISTANCE_METRIC", "COSINE");
+        try {
+            jedisPooled.ftCreate(INDEX_NAME,
+                    FTCreateParams.createParams().on(IndexDataType.HASH).prefix(KEY_PREFIX),
+                    List.of(TagField.of("namespace"),
+                            TextField.of("response").noIndex(),
+                            new VectorField("embedding", VectorField.VectorAlgorithm.HNSW, vectorAttributes)));
+        } catch (JedisDataException e) {
+            // Another node created it first
+            if (!e.getMessage().contains("Index already exists")) {
+                throw e;
+            }
+        }
+        indexCreated = true;
+    }
+
+    private void record(String namespace, String result) {
+        meterRegistry.counter("semantic.cache.requests", "namespace", namespace, "result", result).increment();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,165 @@
+package com.products.productservice.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Client for JSON APIs over the shared, pooled {@link HttpClient}.
+ * Request bodies are encoded with Jackson and response bodies are parsed straight from the (optionally gzipped)
+ * response stream, without an intermediate String. Every call is timed under the {@code http.client.calls} metric,
+ * tagged with the logical endpoint name and the outcome.
+ */
+@Component
+public class JsonHttpClient {
+
+    private static final int MAX_ERROR_BODY_BYTES = 2048; // Bytes of an error response kept for the exception message
+
+    private final HttpClient httpClient;       // Shared client holding the connection pool
+    private final ObjectMapper objectMapper;   // Mapper used to encode requests and parse responses
+    private final MeterRegistry meterRegistry; // Registry for per-endpoint latency and error metrics
+    private final Duration readTimeout;        // Maximum time to wait for a response
+
+    /**
+     * Constructor for JsonHttpClient.
+     *
+     * @param httpClient    The shared HTTP client.
+     * @param objectMapper  The application's ObjectMapper.
+     * @param meterRegistry The registry where call metrics are published.
+     * @param readTimeout   Maximum time to wait for the response headers of a call.
+     */
+    public JsonHttpClient(HttpClient httpClient,
+                          ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry,
+                          @Value("${http.client.read-timeout:PT60S}") Duration readTimeout) {
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Sends a JSON POST request authenticated with an API key and parses the JSON response.
+     *
+     * @param endpoint The logical name of the endpoint, used to tag metrics.
+     * @param url      The URL to which the POST request is sent.
+     * @param apiKey   The API key to include in the request headers for authentication.
+     * @param body     The request body, encoded as JSON.
+     * @return The parsed response body.
+     * @throws IOException          If the request fails, times out or returns a non-2xx status.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the response.
+     */
+    public JsonNode postJson(String endpoint, String url, String apiKey, Object body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(readTimeout)
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .header("Accept-Encoding", "gzip")
+                .header("api-key", apiKey)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "io_error";
+        try {
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            // Closing the body stream returns the connection to the pool
+            try (InputStream responseBody = decode(response)) {
+                if (response.statusCode() / 100 != 2) {
+                    outcome = "http_" + response.statusCode();
+                    throw new IOException(endpoint + " returned HTTP " + response.statusCode() + ": " + readErrorBody(responseBody));
+                }
+                JsonNode rootNode = objectMapper.readTree(responseBody);
+                outcome = "success";
+                return rootNode;
+            }
+        } catch (HttpTimeoutException e) {
+            outcome = "timeout";
+            throw e;
+        } catch (InterruptedException e) {
+            outcome = "cancelled";
+            throw e;
+        } finally {
+            sample.stop(meterRegistry.timer("http.client.calls", "endpoint", endpoint, "outcome", outcome));
+        }
+    }
+
+    /**
+     * Downloads a resource straight to a file.
+     *
+     * @param endpoint The logical name of the endpoint, used to tag metrics.
+     * @param url      The URL of the resource.
+     * @param target   The file to write the resource to.
+     * @return The path of the written file.
+     * @throws IOException          If the download fails, times out or returns a non-2xx status.
+     * @throws InterruptedException If the calling thread is interrupted while downloading.
+     */
+    public Path download(String endpoint, String url, Path target) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(readTimeout)
+                .GET()
+                .build();
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "io_error";
+        try {
+            HttpResponse<Path> response = httpClient.send(request, HttpResponse.BodyHandlers.ofFile(target));
+            if (response.statusCode() / 100 != 2) {
+                outcome = "http_" + response.statusCode();
+                Files.deleteIfExists(target); // The file holds the error body, not the resource
+                throw new IOException(endpoint + " returned HTTP " + response.statusCode());
+            }
+            outcome = "success";
+            return response.body();
+        } catch (HttpTimeoutException e) {
+            outcome = "timeout";
+            throw e;
+        } catch (InterruptedException e) {
+            outcome = "cancelled";
+            throw e;
+        } finally {
+            sample.stop(meterRegistry.timer("http.client.calls", "endpoint", endpoint, "outcome", outcome));
+        }
+    }
+
+    /**
+     * Returns the response body stream, unwrapping gzip content encoding.
+     *
+     * @param response The response.
+     * @return The decoded body stream.
+     * @throws IOException If the gzip header cannot be read.
+     */
+    private static InputStream decode(HttpResponse<InputStream> response) throws IOException {
+        boolean gzipped = response.headers().firstValue("Content-Encoding")
+                .map(encoding -> encoding.equalsIgnoreCase("gzip"))
+                .orElse(false);
+        return gzipped ? new GZIPInputStream(response.body()) : response.body();
+    }
+
+    /**
+     * Reads the start of an error response for diagnostics; the rest is discarded when the stream is closed.
+     *
+     * @param responseBody The error response body.
+     * @return The start of the body as UTF-8 text.
+     * @throws IOException If the body cannot be read.
+     */
+    private static String readErrorBody(InputStream responseBody) throws IOException {
+        return new String(responseBody.readNBytes(MAX_ERROR_BODY_BYTES), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,354 @@
+package com.products.productservice.utils;
+
+import com.products.productservice.dtos.ProductResponseDto;
+import com.products.productservice.model.CachedProduct;
+import com.products.productservice.model.Category;
+import com.products.productservice.model.EnrichmentStatus;
+import com.products.productservice.model.Product;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Redis serializer writing products in a compact, schema-based binary format.
+ * Every payload starts with a format-version byte followed by a type tag, then the fields of the value
+ * in a fixed order using variable-length integers and length-prefixed UTF-8 strings.
+ * Only the category's id, name and version (lastModified) are written, never its product list.
+ * <p>
+ * Payloads written with JDK serialization are still readable, and payloads written by a newer format
+ * version are reported as absent so that nodes can be upgraded one at a time.
+ * Values of any other type are delegated to JDK serialization.
+ */
+public class ProductBinaryRedisSerializer implements RedisSerializer<Object> {
+
+    /**
+     * Current version of the binary format. Bump it whenever the field layout changes.
+     * Version 2 added the enrichment status of products and DTOs.
+     * Version 3 writes the enrichment status of products by name instead of by ordinal.
+     * Version 4 added the lastModified of the product's category, which versions cached JSON fragments.
+     */
+    public static final byte FORMAT_VERSION = 4;
+
+    private static final byte TYPE_CACHED_PRODUCT = 1;
+    private static final byte TYPE_PRODUCT = 2;
+    private static final byte TYPE_PRODUCT_RESPONSE_DTO = 3;
+
+    private static final int FLAG_DELETED = 1;
+    private static final int FLAG_CREATED_AT = 1 << 1;
+    private static final int FLAG_LAST_MODIFIED = 1 << 2;
+    private static final int FLAG_CATEGORY = 1 << 3;
+    private static final int FLAG_CATEGORY_LAST_MODIFIED = 1 << 4;
+
+    // First two bytes of every JDK serialization stream
+    private static final byte JDK_STREAM_MAGIC_0 = (byte) 0xAC;
+    private static final byte JDK_STREAM_MAGIC_1 = (byte) 0xED;
+
+    // Enrichment statuses in the order whose ordinals version 2 payloads were written with
+    private static final EnrichmentStatus[] V2_ENRICHMENT_STATUSES = {
+            EnrichmentStatus.NOT_REQUIRED, EnrichmentStatus.PENDING, EnrichmentStatus.IN_PROGRESS,
+            EnrichmentStatus.COMPLETED, EnrichmentStatus.FAILED
+    };
+
+    private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer();
+
+    /**
+     * Serializes a value to bytes.
+     *
+     * @param value The value to serialize.
+     * @return The serialized bytes, or null for a null value.
+     * @throws SerializationException If the value cannot be serialized.
+     */
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return null;
+        }
+        Writer writer = new Writer();
+        writer.writeByte(FORMAT_VERSION);
+        if (value instanceof CachedProduct cachedProduct) {
+            writer.writeByte(TYPE_CACHED_PRODUCT);
+            writer.writeVarLong(cachedProduct.getVersion());
+            writer.writeBoolean(!cachedProduct.isTombstone());
+            if (!cachedProduct.isTombstone()) {
+                writeProduct(writer, cachedProduct.getProduct());
+            }
+        } else if (value instanceof Product product) {
+            writer.writeByte(TYPE_PRODUCT);
+            writeProduct(writer, product);
+        } else if (value instanceof ProductResponseDto dto) {
+            writer.writeByte(TYPE_PRODUCT_RESPONSE_DTO);
+            writer.writeVarLong(dto.getId());
+            writer.writeString(dto.getName());
+            writer.writeString(dto.getDescription());
+            writer.writeString(dto.getImageUrl());
+            writer.writeDouble(dto.getPrice());
+            writer.writeString(dto.getCategory());
+            writer.writeString(dto.getEnrichmentStatus());
+        } else {
+            // Not a product type; fall back to JDK serialization
+            return jdkSerializer.serialize(value);
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Deserializes bytes written by this serializer or by JDK serialization.
+     *
+     * @param bytes The bytes to deserialize.
+     * @return The deserialized value, or null if there are no bytes or they use a newer format version.
+     * @throws SerializationException If the bytes are malformed.
+     */
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes.length > 1 && bytes[0] == JDK_STREAM_MAGIC_0 && bytes[1] == JDK_STREAM_MAGIC_1) {
+            // Entry written before the binary format was introduced
+            return jdkSerializer.deserialize(bytes);
+        }
+        if (bytes[0] > FORMAT_VERSION) {
+            // Written by a newer node during a rolling upgrade; treat as a cache miss
+            return null;
+        }
+        try {
+            Reader reader = new Reader(bytes, 1, bytes[0]);
+            byte type = reader.readByte();
+            switch (type) {
+                case TYPE_CACHED_PRODUCT -> {
+                    long version = reader.readVarLong();
+                    Product product = reader.readBoolean() ? readProduct(reader) : null;
+                    return new CachedProduct(version, product);
+                }
+                case TYPE_PRODUCT -> {
+                    return readProduct(reader);
+                }
+                case TYPE_PRODUCT_RESPONSE_DTO -> {
+                    return new ProductResponseDto(reader.readVarLong(), reader.readString(), reader.readString(),
+                            reader.readString(), reader.readDouble(), reader.readString(),
+                            reader.formatVersion >= 2 ? reader.readString() : null);
+                }
+                default -> throw new SerializationException("Unknown product payload type " + type);
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new SerializationException("Truncated product payload", e);
+        }
+    }
+
+    /**
+     * Writes the fields of a product.
+     *
+     * @param writer  The writer to append to.
+     * @param product The product to write.
+     */
+    private static void writeProduct(Writer writer, Product product) {
+        Category category = product.getCategory();
+        int flags = (product.isDeleted() ? FLAG_DELETED : 0)
+                | (product.getCreatedAt() != null ? FLAG_CREATED_AT : 0)
+                | (product.getLastModified() != null ? FLAG_LAST_MODIFIED : 0)
+                | (category != null ? FLAG_CATEGORY : 0)
+                | (category != null && category.getLastModified() != null ? FLAG_CATEGORY_LAST_MODIFIED : 0);
+        writer.writeByte((byte) flags);
+        writer.writeVarLong(product.getId());
+        if (product.getCreatedAt() != null) {
+            writer.writeVarLong(product.getCreatedAt().getTime());
+        }
+        if (product.getLastModified() != null) {
+            writer.writeVarLong(product.getLastModified().getTime());
+        }
+        writer.writeString(product.getName());
+        writer.writeString(product.getDescription());
+        writer.writeString(product.getImageUrl());
+        writer.writeDouble(product.getPrice());
+        if (category != null) {
+            writer.writeVarLong(category.getId());
+            writer.writeString(category.getName());
+            if (category.getLastModified() != null) {
+                writer.writeVarLong(category.getLastModified().getTime());
+            }
+        }
+        // By name, so that reordering the enum cannot change the meaning of cached entries
+        EnrichmentStatus enrichmentStatus = product.getEnrichmentStatus();
+        writer.writeString(enrichmentStatus == null ? null : enrichmentStatus.name());
+    }
+
+    /**
+     * Reads the fields of a product.
+     *
+     * @param reader The reader positioned at the start of a product.
+     * @return The product.
+     */
+    private static Product readProduct(Reader reader) {
+        int flags = reader.readByte();
+        Product product = new Product();
+        product.setDeleted((flags & FLAG_DELETED) != 0);
+        product.setId(reader.readVarLong());
+        if ((flags & FLAG_CREATED_AT) != 0) {
+            product.setCreatedAt(new Date(reader.readVarLong()));
+        }
+        if ((flags & FLAG_LAST_MODIFIED) != 0) {
+            product.setLastModified(new Date(reader.readVarLong()));
+        }
+        product.setName(reader.readString());
+        product.setDescription(reader.readString());
+        product.setImageUrl(reader.readString());
+        product.setPrice(reader.readDouble());
+        if ((flags & FLAG_CATEGORY) != 0) {
+            Category category = new Category();
+            category.setId(reader.readVarLong());
+            category.setName(reader.readString());
+            // Never set by versions before 4, whose categories are read without a version
+            if ((flags & FLAG_CATEGORY_LAST_MODIFIED) != 0) {
+                category.setLastModified(new Date(reader.readVarLong()));
+            }
+            product.setCategory(category);
+        }
+        if (reader.formatVersion >= 3) {
+            String enrichmentStatus = reader.readString();
+            if (enrichmentStatus != null) {
+                product.setEnrichmentStatus(readEnrichmentStatus(enrichmentStatus));
+            }
+        } else if (reader.formatVersion == 2) {
+            // Ordinal + 1, so that 0 represents a missing status
+            int enrichmentStatus = (int) reader.readVarLong();
+            if (enrichmentStatus > 0) {
+                product.setEnrichmentStatus(V2_ENRICHMENT_STATUSES[enrichmentStatus - 1]);
+            }
+        }
+        return product;
+    }
+
+    /**
+     * Reads an enrichment status by name.
+     *
+     * @param name The name of the status.
+     * @return The status.
+     * @throws SerializationException If no status has that name.
+     */
+    private static EnrichmentStatus readEnrichmentStatus(String name) {
+        try {
+            return EnrichmentStatus.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new SerializationException("Unknown enrichment status " + name, e);
+        }
+    }
+
+    /**
+     * Growable byte buffer with helpers for the binary format.
+     */
+    private static final class Writer {
+        private byte[] buffer = new byte[256];
+        private int position;
+
+        void writeByte(byte value) {
+            ensureCapacity(1);
+            buffer[position++] = value;
+        }
+
+        void writeBoolean(boolean value) {
+            writeByte((byte) (value ? 1 : 0));
+        }
+
+        // Zig-zag encoded LEB128 so that small and negative values stay short
+        void writeVarLong(long value) {
+            long zigZag = (value << 1) ^ (value >> 63);
+            ensureCapacity(10);
+            while ((zigZag & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((zigZag & 0x7F) | 0x80);
+                zigZag >>>= 7;
+            }
+            buffer[position++] = (byte) zigZag;
+        }
+
+        void writeDouble(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (bits >>> shift);
+            }
+        }
+
+        // Length is written as length + 1 so that 0 can represent null
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensureCapacity(int additional) {
+            if (position + additional > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + additional));
+            }
+        }
+    }
+
+    /**
+     * Cursor over a byte array written by {@link Writer}.
+     */
+    private static final class Reader {
+        private final byte[] buffer;
+        private final int formatVersion;
+        private int position;
+
+        Reader(byte[] buffer, int position, int formatVersion) {
+            this.buffer = buffer;
+            this.position = position;
+            this.formatVersion = formatVersion;
+        }
+
+        byte readByte() {
+            return buffer[position++];
+        }
+
+        boolean readBoolean() {
+            return readByte() != 0;
+        }
+
+        long readVarLong() {
+            long zigZag = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = buffer[position++];
+                zigZag |= (long) (current & 0x7F) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+            return (zigZag >>> 1) ^ -(zigZag & 1);
+        }
+
+        double readDouble() {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | (buffer[position++] & 0xFFL);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        String readString() {
+            int length = (int) readVarLong() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (position + length > buffer.length) {
+                throw new ArrayIndexOutOfBoundsException(position + length);
+            }
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
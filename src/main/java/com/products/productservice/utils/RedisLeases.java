@@ -0,0 +1,119 @@
+package com.products.productservice.utils;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Grants time-limited, exclusive leases on named jobs through Redis, so that a scheduled job shared by all nodes
+ * runs on one node at a time. A lease is taken with {@code SET NX PX} under a random token; renewing and releasing
+ * only succeed while the key still holds that token, so a node whose lease expired can never release or extend the
+ * lease a different node has taken since.
+ * <p>
+ * A node that crashes holds the job for at most one lease duration. Long jobs must renew their lease well within
+ * that duration and stop when renewal fails.
+ */
+@Component
+public class RedisLeases {
+
+    private static final String KEY_PREFIX = "lease:"; // Prefix of the lease keys
+
+    // Extends the lease if it is still held with the caller's token
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+                    "return redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+                    "end " +
+                    "return 0",
+            Long.class);
+
+    // Deletes the lease if it is still held with the caller's token
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+                    "return redis.call('DEL', KEYS[1]) " +
+                    "end " +
+                    "return 0",
+            Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate; // Template holding the lease keys
+
+    /**
+     * Constructor for RedisLeases.
+     *
+     * @param stringRedisTemplate The Redis template for the lease keys.
+     */
+    public RedisLeases(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * Lease on a job, released when closed.
+     */
+    public interface Lease extends AutoCloseable {
+
+        /**
+         * Extends the lease by its full duration.
+         *
+         * @return True if the lease is still held, false if it expired and the job must stop.
+         */
+        boolean renew();
+
+        /**
+         * Releases the lease, unless it has already expired.
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * Returns a lease that is always held, for jobs whose state is local to the node.
+     *
+     * @return A lease that needs no coordination.
+     */
+    public static Lease local() {
+        return new Lease() {
+            @Override
+            public boolean renew() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+                // Nothing to release
+            }
+        };
+    }
+
+    /**
+     * Takes the lease on a job unless another node holds it.
+     *
+     * @param name     The name of the job.
+     * @param duration How long the lease is held unless renewed.
+     * @return The lease, or empty if another node holds it.
+     */
+    public Optional<Lease> tryAcquire(String name, Duration duration) {
+        String key = KEY_PREFIX + name;
+        String token = UUID.randomUUID().toString();
+        if (!Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(key, token, duration))) {
+            return Optional.empty();
+        }
+        return Optional.of(new Lease() {
+            @Override
+            public boolean renew() {
+                Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, List.of(key), token,
+                        Long.toString(duration.toMillis()));
+                return renewed != null && renewed == 1L;
+            }
+
+            @Override
+            public void close() {
+                stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(key), token);
+            }
+        });
+    }
+}
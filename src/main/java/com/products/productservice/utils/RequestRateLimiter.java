@@ -0,0 +1,45 @@
+package com.products.productservice.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limiter spacing requests evenly at a fixed rate, shared by concurrent callers.
+ * Each caller reserves the next free slot and sleeps until it arrives, so bursts are smoothed out
+ * rather than rejected.
+ */
+public class RequestRateLimiter {
+
+    private final long intervalNanos; // Minimum time between two requests, or 0 when unlimited
+    private long nextFreeNanos;       // Time of the next free slot, in System.nanoTime() units
+
+    /**
+     * Constructor for RequestRateLimiter.
+     *
+     * @param requestsPerSecond Maximum number of requests per second; zero or less disables limiting.
+     */
+    public RequestRateLimiter(double requestsPerSecond) {
+        this.intervalNanos = requestsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond) : 0L;
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+    /**
+     * Blocks until the caller may send its request.
+     *
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public void acquire() throws InterruptedException {
+        if (intervalNanos == 0L) {
+            return;
+        }
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextFreeNanos);
+            nextFreeNanos = slot + intervalNanos;
+            waitNanos = slot - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
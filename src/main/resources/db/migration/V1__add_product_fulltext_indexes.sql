@@ -0,0 +1,5 @@
+-- Full-text indexes backing product search (IProductRepository.searchFullText).
+-- InnoDB needs an index matching the exact column list of every MATCH, so names have their own index for ranking.
+ALTER TABLE product ADD FULLTEXT INDEX ft_product_name (name);
+ALTER TABLE product ADD FULLTEXT INDEX ft_product_name_description (name, description);
+ALTER TABLE category ADD FULLTEXT INDEX ft_category_name (name);
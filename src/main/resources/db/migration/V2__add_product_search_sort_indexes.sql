@@ -0,0 +1,5 @@
+-- Indexes serving the sorted search orders (SearchSort), so a sorted search reads products in order
+-- and stops after one page instead of sorting every match.
+CREATE INDEX idx_product_search_price ON product (is_deleted, price, id);
+CREATE INDEX idx_product_search_created_at ON product (is_deleted, created_at, id);
+CREATE INDEX idx_product_search_name ON product (is_deleted, name, id);
@@ -0,0 +1,12 @@
+-- Index backing the incremental vector sync, which pages changed products by (last_modified, id)
+-- (IProductRepository.findChangedAfter). Databases created before this migration already have the index,
+-- created by Hibernate from the Product entity, so it is only added when missing.
+SET @index_exists = (SELECT COUNT(*) FROM information_schema.statistics
+                     WHERE table_schema = DATABASE() AND table_name = 'product'
+                       AND index_name = 'idx_product_last_modified_id');
+SET @ddl = IF(@index_exists = 0,
+              'ALTER TABLE product ADD INDEX idx_product_last_modified_id (last_modified, id)',
+              'DO 0');
+PREPARE statement FROM @ddl;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
@@ -0,0 +1,72 @@
+package com.products.productservice.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.vectorstore.redis.RedisVectorStore;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RedisVectorConfigTest {
+
+    private final JedisPooled jedisPooled = mock(JedisPooled.class);
+
+    @Test
+    void keepsIndexMatchingDeclaredSchema() {
+        when(jedisPooled.ftInfo(RedisVectorConfig.INDEX_NAME)).thenReturn(info(declaredAttributes()));
+
+        assertThat(RedisVectorConfig.dropIndexOnSchemaDrift(jedisPooled)).isFalse();
+        verify(jedisPooled, never()).ftDropIndex(anyString());
+    }
+
+    @Test
+    void dropsIndexMissingDeclaredField() {
+        List<Object> attributes = declaredAttributes();
+        attributes.remove(attributes.size() - 1); // Created before the last declared field was added
+        when(jedisPooled.ftInfo(RedisVectorConfig.INDEX_NAME)).thenReturn(info(attributes));
+
+        assertThat(RedisVectorConfig.dropIndexOnSchemaDrift(jedisPooled)).isTrue();
+        verify(jedisPooled).ftDropIndex(RedisVectorConfig.INDEX_NAME);
+    }
+
+    @Test
+    void dropsIndexWithChangedFieldType() {
+        List<Object> attributes = declaredAttributes();
+        attributes.set(2, List.of("identifier", "$.category", "attribute", "category", "type", "TEXT"));
+        when(jedisPooled.ftInfo(RedisVectorConfig.INDEX_NAME)).thenReturn(info(attributes));
+
+        assertThat(RedisVectorConfig.dropIndexOnSchemaDrift(jedisPooled)).isTrue();
+    }
+
+    @Test
+    void leavesCreationToStoreWhenIndexIsMissing() {
+        when(jedisPooled.ftInfo(RedisVectorConfig.INDEX_NAME)).thenThrow(new JedisDataException("Unknown index name"));
+
+        assertThat(RedisVectorConfig.dropIndexOnSchemaDrift(jedisPooled)).isFalse();
+        verify(jedisPooled, never()).ftDropIndex(anyString());
+    }
+
+    private static List<Object> declaredAttributes() {
+        List<Object> attributes = new ArrayList<>();
+        attributes.add(List.of("identifier", "$.content", "attribute", "content", "type", "TEXT", "WEIGHT", "1"));
+        attributes.add(List.of("identifier", "$.embedding", "attribute", "embedding", "type", "VECTOR"));
+        for (RedisVectorStore.MetadataField field : RedisVectorConfig.METADATA_FIELDS) {
+            attributes.add(List.of("identifier", "$." + field.name(), "attribute", field.name(),
+                    "type", field.fieldType().name()));
+        }
+        return attributes;
+    }
+
+    private static Map<String, Object> info(List<Object> attributes) {
+        return Map.of("index_name", RedisVectorConfig.INDEX_NAME, "attributes", attributes);
+    }
+}
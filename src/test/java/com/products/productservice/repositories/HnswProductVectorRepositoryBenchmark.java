@@ -0,0 +1,240 @@
+package com.products.productservice.repositories;
+
+import com.products.productservice.model.Category;
+import com.products.productservice.model.Product;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.ai.document.Document;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark comparing the vector quantizations of the in-process HNSW index on a fixed set of random
+ * embeddings: the latency of an unfiltered and a filtered search, and of the exact scan an index has to beat. Before the benchmarks run, the resident bytes per
+ * document and the recall@10 against an exact scan are printed for each quantization.
+ * <p>
+ * Random Gaussian vectors are a worst case for HNSW; real embeddings cluster and reach a higher recall.
+ * Run from the IDE, or with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.products.productservice.repositories.HnswProductVectorRepositoryBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HnswProductVectorRepositoryBenchmark {
+
+    private static final int DOCUMENTS = 5000;
+    private static final int DIMENSIONS = 256;
+    private static final int TOP_K = 10;
+    private static final VectorSearchFilter FILTER = new VectorSearchFilter("Home Decor", 20.0, 60.0, 5L);
+
+    @Param({"NONE", "INT8", "BINARY"})
+    private VectorQuantization quantization;
+
+    private Path directory;                          // Directory holding the snapshot
+    private HnswProductVectorRepository repository;  // Index of the benchmarked quantization
+    private float[][] queries;                       // Query vectors, cycled through by the benchmarks
+    private float[][] documents;                     // Normalized document vectors, for the exact scan
+    private int next;                                // Index of the next query
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("hnsw-benchmark");
+        repository = build(quantization, directory, new SimpleMeterRegistry(), vectors(DOCUMENTS, 1));
+        queries = vectors(100, 2).toArray(float[][]::new);
+        documents = vectors(DOCUMENTS, 1).toArray(float[][]::new);
+        for (float[] document : documents) {
+            normalize(document);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Benchmark
+    public List<Document> search() {
+        return repository.findNearest(queries[next++ % queries.length], TOP_K, VectorSearchFilter.NONE);
+    }
+
+    @Benchmark
+    public List<Document> filteredSearch() {
+        return repository.findNearest(queries[next++ % queries.length], TOP_K, FILTER);
+    }
+
+    /**
+     * Compares the query with every document and keeps the nearest ones, the baseline for the index.
+     */
+    @Benchmark
+    public int[] exactScan() {
+        float[] query = queries[next++ % queries.length];
+        int[] nearest = new int[TOP_K];
+        float[] similarities = new float[TOP_K];
+        Arrays.fill(similarities, Float.NEGATIVE_INFINITY);
+        for (int node = 0; node < documents.length; node++) {
+            float[] document = documents[node];
+            float similarity = 0f;
+            for (int i = 0; i < DIMENSIONS; i++) {
+                similarity += query[i] * document[i];
+            }
+            if (similarity > similarities[TOP_K - 1]) {
+                int position = TOP_K - 1;
+                for (; position > 0 && similarities[position - 1] < similarity; position--) {
+                    similarities[position] = similarities[position - 1];
+                    nearest[position] = nearest[position - 1];
+                }
+                similarities[position] = similarity;
+                nearest[position] = node;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Prints the memory footprint and recall of each quantization, then runs the benchmarks.
+     *
+     * @param args Unused.
+     * @throws IOException     If the snapshot directory cannot be created.
+     * @throws RunnerException If the benchmarks cannot be run.
+     */
+    public static void main(String[] args) throws IOException, RunnerException {
+        List<float[]> vectors = vectors(DOCUMENTS, 1);
+        List<float[]> queries = vectors(100, 2);
+        for (VectorQuantization quantization : VectorQuantization.values()) {
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            HnswProductVectorRepository repository = build(quantization, Files.createTempDirectory("hnsw-recall"),
+                    meterRegistry, vectors);
+            int found = 0;
+            int expected = 0;
+            for (int i = 0; i < queries.size(); i++) {
+                VectorSearchFilter filter = i % 2 == 0 ? VectorSearchFilter.NONE : FILTER;
+                Set<Long> exact = exactNearest(vectors, queries.get(i), filter);
+                for (Document hit : repository.findNearest(queries.get(i), TOP_K, filter)) {
+                    found += exact.contains(Long.parseLong(hit.getId())) ? 1 : 0;
+                }
+                expected += exact.size();
+            }
+            double bytesPerDocument = meterRegistry.get("product.vector.hnsw.vector.bytes-per-document").gauge().value();
+            System.out.printf("%s: %.0f bytes per document, recall@%d %.2f%n",
+                    quantization, bytesPerDocument, TOP_K, (double) found / expected);
+            repository.close();
+        }
+        new Runner(new OptionsBuilder().include(HnswProductVectorRepositoryBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * Builds an index of the given vectors and writes its snapshot, so quantized indexes re-rank from the mapped file.
+     */
+    private static HnswProductVectorRepository build(VectorQuantization quantization, Path directory,
+                                                     SimpleMeterRegistry meterRegistry, List<float[]> vectors) {
+        HnswProductVectorRepository repository = new HnswProductVectorRepository(null, meterRegistry,
+                directory.resolve("index.hnsw"), 16, 200, 64, quantization, 4, 0.0);
+        List<Product> products = new ArrayList<>(vectors.size());
+        for (int i = 1; i <= vectors.size(); i++) {
+            products.add(product(i));
+        }
+        for (int i = 0; i < vectors.size(); i += 100) {
+            repository.saveAll(products.subList(i, i + 100), vectors.subList(i, i + 100));
+        }
+        repository.snapshot();
+        return repository;
+    }
+
+    /**
+     * Finds the IDs of the exact nearest products matching a filter by cosine distance.
+     */
+    private static Set<Long> exactNearest(List<float[]> vectors, float[] query, VectorSearchFilter filter) {
+        List<Integer> nodes = new ArrayList<>();
+        for (int node = 0; node < vectors.size(); node++) {
+            Product product = product(node + 1);
+            if (filter.matches(product.getId(), product.getCategory().getName(), product.getPrice())) {
+                nodes.add(node);
+            }
+        }
+        nodes.sort(Comparator.comparingDouble(node -> -cosine(vectors.get(node), query)));
+        Set<Long> ids = new HashSet<>();
+        for (int node : nodes.subList(0, Math.min(TOP_K, nodes.size()))) {
+            ids.add(node + 1L);
+        }
+        return ids;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0.0;
+        double normA = 0.0;
+        double normB = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+
+    private static void normalize(float[] vector) {
+        double norm = 0.0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+    }
+
+    private static List<float[]> vectors(int count, long seed) {
+        Random random = new Random(seed);
+        List<float[]> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[DIMENSIONS];
+            for (int k = 0; k < DIMENSIONS; k++) {
+                vector[k] = (float) random.nextGaussian();
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+
+    /**
+     * Builds a product; every fifth one is in the filtered category, with prices spread over 0 to 99.
+     */
+    private static Product product(long id) {
+        Category category = new Category();
+        category.setName(id % 5 == 0 ? "Home Decor" : "Other");
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Product " + id);
+        product.setDescription("Description of product " + id);
+        product.setPrice((id * 37) % 100);
+        product.setCategory(category);
+        return product;
+    }
+}
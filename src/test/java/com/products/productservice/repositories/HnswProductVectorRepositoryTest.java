@@ -0,0 +1,256 @@
+package com.products.productservice.repositories;
+
+import com.products.productservice.model.Category;
+import com.products.productservice.model.Product;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class HnswProductVectorRepositoryTest {
+
+    private static final int DIMENSIONS = 16;
+    private static final String[] CATEGORIES = {"Phones", "Laptops", "Cameras"};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void findsTheExactNearestNeighboursOfAFixedSet() {
+        HnswProductVectorRepository repository = repository(VectorQuantization.NONE);
+        List<float[]> vectors = randomVectors(500, 1);
+        repository.saveAll(products(500), vectors);
+
+        Random random = new Random(2);
+        int found = 0;
+        int expected = 0;
+        for (int query = 0; query < 20; query++) {
+            float[] vector = randomVector(random);
+            Set<Long> exact = bruteForce(vectors, vector, 10);
+            for (Document hit : repository.findNearest(vector, 10, VectorSearchFilter.NONE)) {
+                found += exact.contains(idOf(hit)) ? 1 : 0;
+            }
+            expected += exact.size();
+        }
+        assertThat((double) found / expected).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    void returnsOnlyProductsMatchingTheFilter() {
+        HnswProductVectorRepository repository = repository(VectorQuantization.NONE);
+        List<float[]> vectors = randomVectors(300, 3);
+        repository.saveAll(products(300), vectors);
+
+        // A selective filter: a single category and a narrow price band
+        VectorSearchFilter filter = new VectorSearchFilter("Laptops", 100.0, 160.0, 4L);
+        float[] query = randomVector(new Random(4));
+        List<Document> hits = repository.findNearest(query, 10, filter);
+
+        List<Integer> matching = IntStream.rangeClosed(1, 300)
+                .filter(id -> id != 4 && CATEGORIES[id % 3].equals("Laptops") && price(id) >= 100.0 && price(id) <= 160.0)
+                .boxed().toList();
+        assertThat(hits).hasSize(Math.min(10, matching.size()));
+        for (Document hit : hits) {
+            long id = idOf(hit);
+            assertThat(filter.matches(id, hit.getMetadata().get("category").toString(),
+                    Double.parseDouble(hit.getMetadata().get("price").toString()))).isTrue();
+        }
+        // Few products match, so they are all compared with the query and the nearest are found exactly
+        List<Long> nearest = matching.stream()
+                .sorted(Comparator.comparingDouble(id -> -cosine(vectors.get(id - 1), query)))
+                .limit(10).map(Long::valueOf).toList();
+        assertThat(hits.stream().map(HnswProductVectorRepositoryTest::idOf).toList()).isEqualTo(nearest);
+    }
+
+    @Test
+    void compactsAwayDeletedProducts() {
+        HnswProductVectorRepository repository = repository(VectorQuantization.NONE);
+        List<float[]> vectors = randomVectors(100, 5);
+        repository.saveAll(products(100), vectors);
+        List<Long> deleted = idsBetween(1, 40);
+        repository.deleteAllByProductIds(deleted);
+
+        repository.snapshot(); // Compacts, since 40% of the nodes are tombstoned
+
+        assertThat(repository.findEmbeddingByProductId(1L)).isEmpty();
+        assertThat(repository.findEmbeddingByProductId(41L)).isPresent();
+        List<Document> hits = repository.findNearest(vectors.get(0), 60, VectorSearchFilter.NONE);
+        assertThat(hits).hasSize(60).extracting(HnswProductVectorRepositoryTest::idOf).doesNotContainAnyElementsOf(deleted);
+        // Live products still find themselves first
+        assertThat(idOf(repository.findNearest(vectors.get(49), 1, VectorSearchFilter.NONE).get(0))).isEqualTo(50L);
+
+        // Products can be written again after compaction
+        repository.saveAll(List.of(product(1)), List.of(vectors.get(0)));
+        assertThat(idOf(repository.findNearest(vectors.get(0), 1, VectorSearchFilter.NONE).get(0))).isEqualTo(1L);
+    }
+
+    @Test
+    void reloadsIndexSyncStateAndDescriptionHashesFromSnapshot() {
+        for (VectorQuantization quantization : VectorQuantization.values()) {
+            Path snapshot = directory.resolve(quantization + ".hnsw");
+            HnswProductVectorRepository repository = repository(quantization, snapshot);
+            List<float[]> vectors = randomVectors(200, 6);
+            repository.saveAll(products(200), vectors);
+            repository.deleteAllByProductIds(List.of(7L));
+            repository.saveSyncState("watermark", "12345");
+            float[] query = randomVector(new Random(7));
+            List<Long> before = repository.findNearest(query, 10, VectorSearchFilter.NONE).stream()
+                    .map(HnswProductVectorRepositoryTest::idOf).toList();
+            repository.close(); // Writes the final snapshot
+            assertThat(snapshot).exists();
+
+            HnswProductVectorRepository reloaded = repository(quantization, snapshot);
+
+            assertThat(reloaded.findSyncState("watermark")).contains("12345");
+            assertThat(reloaded.findEmbeddingByProductId(7L)).isEmpty();
+            assertThat(reloaded.findNearest(query, 10, VectorSearchFilter.NONE))
+                    .extracting(HnswProductVectorRepositoryTest::idOf).containsExactlyElementsOf(before);
+            assertThat(reloaded.findDescriptionHashes(List.of(8L, 7L)))
+                    .containsExactly(Map.entry(8L, IProductVectorRepository.descriptionHashOf(product(8).getDescription())));
+            reloaded.close();
+        }
+    }
+
+    @Test
+    void keepsDescriptionHashWhenMetadataIsUpdated() {
+        HnswProductVectorRepository repository = repository(VectorQuantization.NONE);
+        repository.saveAll(List.of(product(1)), randomVectors(1, 8));
+        Product renamed = product(1);
+        renamed.setName("Renamed");
+
+        assertThat(repository.updateMetadata(List.of(renamed, product(2)))).extracting(Product::getId).containsExactly(2L);
+
+        assertThat(repository.findDescriptionHashes(List.of(1L, 2L)))
+                .containsOnlyKeys(1L)
+                .containsValue(IProductVectorRepository.descriptionHashOf(product(1).getDescription()));
+        assertThat(repository.findNearest(randomVectors(1, 8).get(0), 1, VectorSearchFilter.NONE).get(0)
+                .getMetadata()).containsEntry("name", "Renamed");
+    }
+
+    @Test
+    void startsEmptyFromAnUnreadableSnapshot() throws Exception {
+        Path snapshot = directory.resolve("corrupt.hnsw");
+        Files.write(snapshot, new byte[]{1, 2, 3});
+
+        HnswProductVectorRepository repository = repository(VectorQuantization.NONE, snapshot);
+
+        assertThat(repository.findNearest(randomVector(new Random(9)), 5, VectorSearchFilter.NONE)).isEmpty();
+        assertThat(repository.findSyncState("watermark")).isEmpty();
+    }
+
+    @Test
+    void samplesRecallAgainstAnExactScan() throws InterruptedException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        HnswProductVectorRepository repository = new HnswProductVectorRepository(mock(EmbeddingModel.class),
+                meterRegistry, directory.resolve("sampled.hnsw"), 8, 100, 64, VectorQuantization.NONE, 4, 1.0);
+        // More nodes than one chunk of the exact scan
+        List<float[]> vectors = randomVectors(2500, 10);
+        repository.saveAll(products(2500), vectors);
+
+        repository.findNearest(vectors.get(0), 10, VectorSearchFilter.NONE);
+
+        DistributionSummary recall = meterRegistry.get("product.vector.hnsw.recall").summary();
+        for (int wait = 0; wait < 100 && recall.count() == 0; wait++) {
+            Thread.sleep(50);
+        }
+        assertThat(recall.count()).isEqualTo(1);
+        assertThat(recall.totalAmount()).isGreaterThanOrEqualTo(0.8);
+        repository.close();
+    }
+
+    private HnswProductVectorRepository repository(VectorQuantization quantization) {
+        return repository(quantization, directory.resolve("index.hnsw"));
+    }
+
+    private static HnswProductVectorRepository repository(VectorQuantization quantization, Path snapshot) {
+        return new HnswProductVectorRepository(mock(EmbeddingModel.class), new SimpleMeterRegistry(), snapshot,
+                8, 100, 64, quantization, 4, 0.0);
+    }
+
+    /**
+     * Finds the IDs of the exact nearest products by cosine distance.
+     */
+    private static Set<Long> bruteForce(List<float[]> vectors, float[] query, int topK) {
+        List<Integer> nodes = new ArrayList<>(IntStream.range(0, vectors.size()).boxed().toList());
+        nodes.sort(Comparator.comparingDouble(node -> -cosine(vectors.get(node), query)));
+        Set<Long> ids = new HashSet<>();
+        for (int node : nodes.subList(0, topK)) {
+            ids.add(node + 1L);
+        }
+        return ids;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0.0;
+        double normA = 0.0;
+        double normB = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+
+    private static List<float[]> randomVectors(int count, long seed) {
+        Random random = new Random(seed);
+        List<float[]> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            vectors.add(randomVector(random));
+        }
+        return vectors;
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static List<Long> idsBetween(long from, long to) {
+        return LongStream.rangeClosed(from, to).boxed().toList();
+    }
+
+    private static long idOf(Document document) {
+        return Long.parseLong(document.getMetadata().get("id").toString());
+    }
+
+    private static double price(long id) {
+        return 10.0 * (id % 30);
+    }
+
+    private static List<Product> products(int count) {
+        return IntStream.rangeClosed(1, count).mapToObj(HnswProductVectorRepositoryTest::product).toList();
+    }
+
+    private static Product product(long id) {
+        Category category = new Category();
+        category.setName(CATEGORIES[(int) (id % 3)]);
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Product " + id);
+        product.setDescription("Description of product " + id);
+        product.setPrice(price(id));
+        product.setCategory(category);
+        return product;
+    }
+}
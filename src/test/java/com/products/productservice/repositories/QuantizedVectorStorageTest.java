@@ -0,0 +1,161 @@
+package com.products.productservice.repositories;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class QuantizedVectorStorageTest {
+
+    private static final int DIMENSIONS = 100; // Not a multiple of 64, so binary codes have a partial word
+
+    @Test
+    void keepsFloatVectorsWithoutQuantization() {
+        QuantizedVectorStorage storage = new QuantizedVectorStorage(VectorQuantization.NONE, DIMENSIONS, 4);
+        float[] vector = normalized(new Random(1));
+        float[] query = normalized(new Random(2));
+        storage.add(0, vector, false);
+
+        assertThat(storage.reranks()).isFalse();
+        assertThat(storage.bytesPerVector()).isEqualTo(DIMENSIONS * Float.BYTES);
+        assertThat(storage.decode(0)).containsExactly(vector);
+        assertThat(storage.exact(0)).containsExactly(vector);
+        assertThat(storage.approximateDistance(query, 0)).isCloseTo(1f - dot(query, vector), within(1e-5f));
+        assertThat(storage.exactDistance(query, 0)).isEqualTo(storage.approximateDistance(query, 0));
+    }
+
+    @Test
+    void encodesInt8WithinOneStepPerDimension() {
+        QuantizedVectorStorage storage = new QuantizedVectorStorage(VectorQuantization.INT8, DIMENSIONS, 4);
+        float[] vector = normalized(new Random(3));
+        float[] query = normalized(new Random(4));
+        storage.add(0, vector, false);
+
+        float maxAbs = 0f;
+        for (float value : vector) {
+            maxAbs = Math.max(maxAbs, Math.abs(value));
+        }
+        float step = maxAbs / 127f;
+        float[] decoded = storage.decode(0);
+        for (int i = 0; i < DIMENSIONS; i++) {
+            assertThat(decoded[i]).isCloseTo(vector[i], within(step / 2 + 1e-6f));
+        }
+        assertThat(storage.reranks()).isTrue();
+        assertThat(storage.bytesPerVector()).isEqualTo(DIMENSIONS + Float.BYTES);
+        assertThat(storage.approximateDistance(query, 0)).isCloseTo(1f - dot(query, vector), within(0.01f));
+        // The full vector is kept until a snapshot holds it
+        assertThat(storage.exact(0)).containsExactly(vector);
+        assertThat(storage.exactDistance(query, 0)).isCloseTo(1f - dot(query, vector), within(1e-5f));
+    }
+
+    @Test
+    void encodesZeroVectorAsInt8() {
+        QuantizedVectorStorage storage = new QuantizedVectorStorage(VectorQuantization.INT8, DIMENSIONS, 4);
+        storage.add(0, new float[DIMENSIONS], false);
+
+        assertThat(storage.decode(0)).containsOnly(0f);
+        assertThat(storage.approximateDistance(normalized(new Random(5)), 0)).isEqualTo(1f);
+    }
+
+    @Test
+    void encodesSignsAsBinary() {
+        QuantizedVectorStorage storage = new QuantizedVectorStorage(VectorQuantization.BINARY, DIMENSIONS, 4);
+        float[] vector = normalized(new Random(6));
+        float[] query = normalized(new Random(7));
+        storage.add(0, vector, false);
+
+        float scale = (float) (1.0 / Math.sqrt(DIMENSIONS));
+        float[] decoded = storage.decode(0);
+        for (int i = 0; i < DIMENSIONS; i++) {
+            assertThat(decoded[i]).isEqualTo(vector[i] > 0f ? scale : -scale);
+        }
+        assertThat(storage.bytesPerVector()).isEqualTo(2 * Long.BYTES);
+        // The approximate distance is the distance to the decoded vector
+        assertThat(storage.approximateDistance(query, 0)).isCloseTo(1f - dot(query, decoded), within(1e-5f));
+        assertThat(storage.exactDistance(query, 0)).isCloseTo(1f - dot(query, vector), within(1e-5f));
+    }
+
+    @Test
+    void keepsVectorsWhenGrowing() {
+        for (VectorQuantization quantization : VectorQuantization.values()) {
+            QuantizedVectorStorage storage = new QuantizedVectorStorage(quantization, DIMENSIONS, 1);
+            Random random = new Random(8);
+            float[][] vectors = new float[40][];
+            for (int node = 0; node < vectors.length; node++) {
+                vectors[node] = normalized(random);
+                storage.add(node, vectors[node], false);
+            }
+            float[] first = storage.decode(0);
+
+            assertThat(storage.exact(0)).containsExactly(vectors[0]);
+            assertThat(storage.exact(39)).containsExactly(vectors[39]);
+            assertThat(storage.approximateDistance(vectors[0], 0)).isCloseTo(1f - dot(vectors[0], first), within(1e-5f));
+        }
+    }
+
+    @Test
+    void spreadsVectorsOverChunks() {
+        for (VectorQuantization quantization : VectorQuantization.values()) {
+            // Chunks of 1 KB hold at most a couple of float vectors, so 40 vectors span many chunks
+            QuantizedVectorStorage storage = new QuantizedVectorStorage(quantization, DIMENSIONS, 1, 1024);
+            Random random = new Random(12);
+            float[][] vectors = new float[40][];
+            float[][] decoded = new float[40][];
+            for (int node = 0; node < vectors.length; node++) {
+                vectors[node] = normalized(random);
+                storage.add(node, vectors[node], false);
+                decoded[node] = storage.decode(node);
+            }
+
+            for (int node = 0; node < vectors.length; node++) {
+                assertThat(storage.decode(node)).containsExactly(decoded[node]);
+                assertThat(storage.exact(node)).containsExactly(vectors[node]);
+            }
+        }
+    }
+
+    @Test
+    void readsFullVectorsFromAttachedSnapshot() {
+        QuantizedVectorStorage storage = new QuantizedVectorStorage(VectorQuantization.INT8, DIMENSIONS, 4);
+        float[] persisted = normalized(new Random(9));
+        float[] pending = normalized(new Random(10));
+        float[] query = normalized(new Random(11));
+        storage.add(0, persisted, false);
+        storage.add(1, pending, false);
+
+        // A snapshot holding the vector of node 0
+        ByteBuffer snapshot = ByteBuffer.allocate(DIMENSIONS * Float.BYTES);
+        for (int i = 0; i < DIMENSIONS; i++) {
+            snapshot.putFloat(i * Float.BYTES, persisted[i]);
+        }
+        storage.attachSnapshot(new SnapshotVectors(new ByteBuffer[]{snapshot.asReadOnlyBuffer()}, DIMENSIONS, 1, 1));
+
+        assertThat(storage.exact(0)).containsExactly(persisted);
+        assertThat(storage.exact(1)).containsExactly(pending);
+        assertThat(storage.exactDistance(query, 0)).isCloseTo(1f - dot(query, persisted), within(1e-5f));
+    }
+
+    private static float[] normalized(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        double norm = 0.0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float dot = 0f;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return dot;
+    }
+}
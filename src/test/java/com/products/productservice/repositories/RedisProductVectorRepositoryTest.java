@@ -0,0 +1,96 @@
+package com.products.productservice.repositories;
+
+import com.products.productservice.config.RedisVectorConfig;
+import com.products.productservice.model.Category;
+import com.products.productservice.model.EnrichmentStatus;
+import com.products.productservice.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingModel;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.json.Path2;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RedisProductVectorRepositoryTest {
+
+    private final JedisPooled jedisPooled = mock(JedisPooled.class);
+    private final Pipeline pipeline = mock(Pipeline.class);
+    private final RedisProductVectorRepository repository =
+            new RedisProductVectorRepository(jedisPooled, mock(EmbeddingModel.class));
+
+    @BeforeEach
+    void setUp() {
+        when(jedisPooled.pipelined()).thenReturn(pipeline);
+    }
+
+    @Test
+    void updatesMetadataWithJsonEncodedValues() {
+        Response<String> ok = response("OK");
+        when(pipeline.jsonSetWithEscape(anyString(), any(Path2.class), any(Object.class))).thenReturn(ok);
+
+        List<Product> missing = repository.updateMetadata(List.of(product()));
+
+        assertThat(missing).isEmpty();
+        // Values must be encoded as JSON by Jedis; raw strings such as the category name are not valid JSON
+        String key = RedisVectorConfig.PREFIX + 42;
+        verify(pipeline).jsonSetWithEscape(key, Path2.of("$.category"), "Phones \"Pro\"");
+        verify(pipeline).jsonSetWithEscape(key, Path2.of("$.name"), "iPhone 15");
+        verify(pipeline).jsonSetWithEscape(key, Path2.of("$.price"), 799.99);
+        verify(pipeline, never()).jsonSet(anyString(), any(Path2.class), any(Object.class));
+        verify(pipeline).sync();
+    }
+
+    @Test
+    void reportsProductsWithoutDocument() {
+        Response<String> missingDocument = mock();
+        when(missingDocument.get()).thenThrow(new JedisDataException("ERR new objects must be created at the root"));
+        when(pipeline.jsonSetWithEscape(anyString(), any(Path2.class), any(Object.class))).thenReturn(missingDocument);
+        Product product = product();
+
+        assertThat(repository.updateMetadata(List.of(product))).containsExactly(product);
+    }
+
+    @Test
+    void savesDocumentsAtRoot() {
+        Product product = product();
+        float[] embedding = {0.1f, 0.2f};
+
+        repository.saveAll(List.of(product), List.of(embedding));
+
+        verify(pipeline).jsonSetWithEscape(eq(RedisVectorConfig.PREFIX + 42), eq(Path2.ROOT_PATH), any(Object.class));
+        verify(pipeline).sync();
+    }
+
+    private static Response<String> response(String value) {
+        Response<String> response = mock();
+        when(response.get()).thenReturn(value);
+        return response;
+    }
+
+    private static Product product() {
+        Category category = new Category();
+        category.setId(3L);
+        category.setName("Phones \"Pro\"");
+        Product product = new Product();
+        product.setId(42L);
+        product.setName("iPhone 15");
+        product.setDescription("A phone");
+        product.setPrice(799.99);
+        product.setCategory(category);
+        product.setEnrichmentStatus(EnrichmentStatus.COMPLETED);
+        return product;
+    }
+}
@@ -0,0 +1,45 @@
+package com.products.productservice.repositories;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class SnapshotVectorsTest {
+
+    private static final int DIMENSIONS = 3;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsVectorsSpreadOverSeveralRegions() throws IOException {
+        Path file = directory.resolve("vectors.hnsw");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(0x484E5357); // A header before the vectors, as in a snapshot
+            out.writeInt(3);
+            for (int node = 0; node < 5; node++) {
+                for (int i = 0; i < DIMENSIONS; i++) {
+                    out.writeFloat(node * 10 + i);
+                }
+            }
+        }
+
+        // Regions of two vectors each, the last one holding a single vector
+        SnapshotVectors vectors = SnapshotVectors.map(file, 8, DIMENSIONS, 5, 2 * DIMENSIONS * Float.BYTES);
+
+        assertThat(vectors.count()).isEqualTo(5);
+        float[] vector = new float[DIMENSIONS];
+        for (int node = 0; node < 5; node++) {
+            vectors.read(node, vector);
+            assertThat(vector).containsExactly(node * 10, node * 10 + 1, node * 10 + 2);
+        }
+        assertThat(vectors.dot(new float[]{1f, 0f, 1f}, 4)).isCloseTo(40f + 42f, within(1e-5f));
+    }
+}
@@ -0,0 +1,80 @@
+package com.products.productservice.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.products.productservice.utils.JsonHttpClient;
+import com.products.productservice.utils.StubHttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AzureAIProductServiceImplTest {
+
+    @TempDir
+    Path imageDirectory;
+
+    private StubHttpServer server;
+    private AzureAIProductServiceImpl azureAIProductService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubHttpServer();
+        JsonHttpClient jsonHttpClient = new JsonHttpClient(HttpClient.newHttpClient(), new ObjectMapper(),
+                new SimpleMeterRegistry(), Duration.ofSeconds(5));
+        azureAIProductService = new AzureAIProductServiceImpl("chat-key", "image-key", imageDirectory.toString(),
+                server.url("/chat"), server.url("/images"), jsonHttpClient);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void generatesResponseFromChatCompletion() {
+        server.respond("/chat", 200, "{\"choices\":[{\"message\":{\"content\":\"A **great** phone.\"}}]}");
+
+        String response = azureAIProductService.GenerateResponse("You are a writer", "Describe the \"iPhone\"");
+
+        assertThat(response).isEqualTo("A **great** phone.");
+        StubHttpServer.Request request = server.lastRequest("/chat");
+        assertThat(request.headers().getFirst("api-key")).isEqualTo("chat-key");
+        assertThat(request.body()).contains("\"content\":\"Describe the \\\"iPhone\\\"\"");
+    }
+
+    @Test
+    void returnsNullWhenChatFails() {
+        server.respond("/chat", 500, "{\"error\":\"boom\"}");
+
+        assertThat(azureAIProductService.GenerateResponse("system", "user")).isNull();
+    }
+
+    @Test
+    void generatesAndDownloadsImage() throws IOException {
+        server.respond("/images", 200, "{\"data\":[{\"url\":\"" + server.url("/generated.png") + "\"}]}");
+        server.respondAfter("/generated.png", 0, "png-bytes".getBytes(StandardCharsets.UTF_8));
+
+        String imagePath = azureAIProductService.GenerateImage("a phone", "iPhone");
+
+        assertThat(imagePath).startsWith(imageDirectory.resolve("iPhone_").toString());
+        assertThat(Files.readString(Path.of(imagePath))).isEqualTo("png-bytes");
+        assertThat(server.lastRequest("/images").headers().getFirst("api-key")).isEqualTo("image-key");
+    }
+
+    @Test
+    void returnsNullWhenImageDownloadFails() {
+        server.respond("/images", 200, "{\"data\":[{\"url\":\"" + server.url("/expired.png") + "\"}]}");
+
+        assertThat(azureAIProductService.GenerateImage("a phone", "iPhone")).isNull();
+    }
+}
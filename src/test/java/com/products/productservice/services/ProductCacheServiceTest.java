@@ -0,0 +1,176 @@
+package com.products.productservice.services;
+
+import com.products.productservice.events.ProductChangedEvent;
+import com.products.productservice.exception.ProductNotFoundException;
+import com.products.productservice.model.CachedProduct;
+import com.products.productservice.model.Category;
+import com.products.productservice.model.Product;
+import com.products.productservice.utils.ProductBinaryRedisSerializer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductCacheServiceTest {
+
+    private static final long PRODUCT_ID = 42L;
+    private static final String HASH_KEY = "PRODUCT_42";
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+    private final StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+    private final ProductBinaryRedisSerializer serializer = new ProductBinaryRedisSerializer();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Map<String, Object> productMap = new HashMap<>();     // The PRODUCTMAP hash
+    private final Map<String, Long> versions = new HashMap<>();         // The PRODUCTMAP_VERSIONS hash
+    private final List<byte[][]> pruneCalls = new ArrayList<>();        // Arguments of each prune script call
+    private final List<Long> pruneResults = new ArrayList<>();          // Tombstones each prune call removes
+    private ProductCacheService productCacheService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(redisTemplate.getHashValueSerializer()).thenReturn((RedisSerializer) serializer);
+        when(hashOperations.get(eq(ProductCacheService.PRODUCT_MAP), any()))
+                .thenAnswer(invocation -> productMap.get((String) invocation.getArgument(1)));
+        when(hashOperations.putIfAbsent(eq(ProductCacheService.PRODUCT_MAP), any(), any()))
+                .thenAnswer(invocation -> productMap.putIfAbsent(invocation.getArgument(1), invocation.getArgument(2)) == null);
+        // The scripts run against the hashes as Redis would: write-through takes 4 arguments, pruning 2
+        when(redisTemplate.execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class),
+                anyList(), any(Object[].class))).thenAnswer(invocation -> {
+            Object[] arguments = invocation.getArguments();
+            byte[][] args = new byte[arguments.length - 4][];
+            for (int i = 4; i < arguments.length; i++) {
+                args[i - 4] = (byte[]) arguments[i];
+            }
+            return args.length == 4 ? writeThrough(args) : prune(args);
+        });
+        productCacheService = new ProductCacheService(redisTemplate, stringRedisTemplate, meterRegistry, 100,
+                Duration.ofMinutes(5), Duration.ofHours(1));
+    }
+
+    @Test
+    void loadsMissingProductAndCachesIt() throws ProductNotFoundException {
+        Product product = product(1000);
+
+        Product loaded = productCacheService.getProduct(PRODUCT_ID, id -> product);
+        Product cached = productCacheService.getProduct(PRODUCT_ID, id -> {
+            throw new AssertionError("Served from the near-cache");
+        });
+
+        assertThat(loaded).isSameAs(product);
+        assertThat(cached).isSameAs(product);
+        assertThat(((CachedProduct) productMap.get(HASH_KEY)).getVersion()).isEqualTo(1000L);
+    }
+
+    @Test
+    void olderUpdateCommittedAfterDeletionDoesNotReplaceTombstone() {
+        productCacheService.onProductChanged(ProductChangedEvent.deleted(PRODUCT_ID, new Date(5000)));
+        // An update made before the deletion whose transaction committed after it
+        productCacheService.onProductChanged(ProductChangedEvent.saved(product(4000)));
+
+        assertThat(versions.get(HASH_KEY)).isEqualTo(5000L);
+        assertThatThrownBy(() -> productCacheService.getProduct(PRODUCT_ID, id -> product(4000)))
+                .isInstanceOf(ProductNotFoundException.class);
+    }
+
+    @Test
+    void newerUpdateReplacesOlderEntry() throws ProductNotFoundException {
+        productCacheService.onProductChanged(ProductChangedEvent.saved(product(1000)));
+        Product renamed = product(2000);
+        renamed.setName("iPhone 15 Pro");
+
+        productCacheService.onProductChanged(ProductChangedEvent.saved(renamed));
+
+        assertThat(productCacheService.getProduct(PRODUCT_ID, id -> product(1000)).getName()).isEqualTo("iPhone 15 Pro");
+        verify(stringRedisTemplate, times(2))
+                .convertAndSend(ProductCacheService.INVALIDATION_CHANNEL, String.valueOf(PRODUCT_ID));
+    }
+
+    @Test
+    void slowReaderDoesNotCacheProductDeletedWhileLoading() {
+        // The product is deleted while the reader is loading it from the database
+        assertThatThrownBy(() -> productCacheService.getProduct(PRODUCT_ID, id -> {
+            Product stale = product(1000);
+            productCacheService.onProductChanged(ProductChangedEvent.deleted(PRODUCT_ID, new Date(5000)));
+            return stale;
+        })).isInstanceOf(ProductNotFoundException.class);
+
+        assertThat(((CachedProduct) productMap.get(HASH_KEY)).isTombstone()).isTrue();
+        // Neither tier serves the product as loaded
+        assertThatThrownBy(() -> productCacheService.getProduct(PRODUCT_ID, id -> product(1000)))
+                .isInstanceOf(ProductNotFoundException.class);
+    }
+
+    @Test
+    void prunesTombstonesOlderThanTheRetentionInBatches() {
+        pruneResults.addAll(List.of(1000L, 3L));
+
+        productCacheService.pruneTombstones();
+
+        assertThat(pruneCalls).hasSize(2);
+        long cutoff = Long.parseLong(new String(pruneCalls.get(0)[0], StandardCharsets.UTF_8));
+        assertThat((double) cutoff).isCloseTo(System.currentTimeMillis() - Duration.ofHours(1).toMillis(), within(60_000.0));
+        assertThat(meterRegistry.get("product.cache.redis.tombstones.pruned").counter().count()).isEqualTo(1003.0);
+    }
+
+    /**
+     * Runs the write-through script: stores the entry unless a newer version is cached.
+     */
+    private long writeThrough(byte[][] args) {
+        String hashKey = new String(args[0], StandardCharsets.UTF_8);
+        long version = Long.parseLong(new String(args[1], StandardCharsets.UTF_8));
+        Long current = versions.get(hashKey);
+        if (current != null && current > version) {
+            return 0L;
+        }
+        productMap.put(hashKey, serializer.deserialize(args[2]));
+        versions.put(hashKey, version);
+        return 1L;
+    }
+
+    private long prune(byte[][] args) {
+        pruneCalls.add(args);
+        return pruneResults.isEmpty() ? 0L : pruneResults.remove(0);
+    }
+
+    private static Product product(long lastModified) {
+        Category category = new Category();
+        category.setId(3L);
+        category.setName("Phones");
+        category.setLastModified(new Date(500));
+        Product product = new Product();
+        product.setId(PRODUCT_ID);
+        product.setName("iPhone 15");
+        product.setPrice(799.99);
+        product.setCategory(category);
+        product.setLastModified(new Date(lastModified));
+        return product;
+    }
+}
@@ -0,0 +1,70 @@
+package com.products.productservice.services;
+
+import com.products.productservice.model.Product;
+import com.products.productservice.repositories.IProductVectorRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingModel;
+import redis.clients.jedis.JedisPooled;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductEmbeddingIngestorTest {
+
+    private final IProductVectorRepository productVectorRepository = mock(IProductVectorRepository.class);
+    private final JedisPooled jedisPooled = mock(JedisPooled.class);
+    private final EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+    private final ProductEmbeddingIngestor ingestor = new ProductEmbeddingIngestor(productVectorRepository, jedisPooled,
+            embeddingModel, new SimpleMeterRegistry(), 0, 1, Duration.ZERO);
+
+    @Test
+    void embedsOnlyProductsWhoseIndexedDescriptionChanged() throws InterruptedException {
+        Product unchanged = product(1, "Same description");
+        Product changed = product(2, "New description");
+        Product deleted = product(3, "Gone");
+        deleted.setDeleted(true);
+        // The hashes come from the index, not from a store shared with other nodes
+        when(productVectorRepository.findDescriptionHashes(anyCollection())).thenReturn(Map.of(
+                1L, IProductVectorRepository.descriptionHashOf("Same description"),
+                2L, IProductVectorRepository.descriptionHashOf("Old description")));
+        when(productVectorRepository.updateMetadata(anyList())).thenReturn(List.of());
+        float[] embedding = {0.1f, 0.2f};
+        when(embeddingModel.embed(List.of("New description"))).thenReturn(List.of(embedding));
+
+        ingestor.ingest(List.of(unchanged, changed, deleted));
+
+        verify(productVectorRepository).updateMetadata(List.of(unchanged));
+        verify(productVectorRepository).deleteAllByProductIds(List.of(3L));
+        verify(productVectorRepository).saveAll(List.of(changed), List.of(embedding));
+        verify(jedisPooled).sadd(RecommendationService.DIRTY_KEY, "1", "2", "3");
+    }
+
+    @Test
+    void embedsProductsIndexedWithoutHash() throws InterruptedException {
+        Product product = product(1, "Description");
+        when(productVectorRepository.findDescriptionHashes(anyCollection())).thenReturn(Map.of());
+        float[] embedding = {0.3f};
+        when(embeddingModel.embed(List.of("Description"))).thenReturn(List.of(embedding));
+
+        ingestor.ingest(List.of(product));
+
+        verify(productVectorRepository).saveAll(List.of(product), List.of(embedding));
+        verify(productVectorRepository, never()).deleteAllByProductIds(anyCollection());
+    }
+
+    private static Product product(long id, String description) {
+        Product product = new Product();
+        product.setId(id);
+        product.setDescription(description);
+        return product;
+    }
+}
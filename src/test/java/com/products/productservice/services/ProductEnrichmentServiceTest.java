@@ -0,0 +1,269 @@
+package com.products.productservice.services;
+
+import com.products.productservice.events.ProductChangedEvent;
+import com.products.productservice.model.AIGenerationType;
+import com.products.productservice.model.Category;
+import com.products.productservice.model.EnrichmentStatus;
+import com.products.productservice.model.Product;
+import com.products.productservice.repositories.IAIGenerationLogRepository;
+import com.products.productservice.repositories.IAIGenerationTypeRepository;
+import com.products.productservice.repositories.IProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductEnrichmentServiceTest {
+
+    private static final long PRODUCT_ID = 42L;
+
+    private final IProductRepository productRepository = mock(IProductRepository.class);
+    private final AzureAIProductServiceImpl azureAIProductService = mock(AzureAIProductServiceImpl.class);
+    private final ProductDescriptionCache productDescriptionCache = mock(ProductDescriptionCache.class);
+    private final IAIGenerationTypeRepository aiGenerationTypeRepository = mock(IAIGenerationTypeRepository.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final Product row = new Product(); // The product's row, updated as the database would
+    private ProductEnrichmentService enrichmentService;
+
+    @BeforeEach
+    void setUp() {
+        Category category = new Category();
+        category.setName("Phones");
+        row.setId(PRODUCT_ID);
+        row.setName("iPhone 15");
+        row.setCategory(category);
+        row.setEnrichmentStatus(EnrichmentStatus.PENDING);
+
+        // Run the repository's conditional updates against the row
+        when(productRepository.findById(PRODUCT_ID)).thenAnswer(invocation -> Optional.of(copy()));
+        when(productRepository.claimForEnrichment(anyLong(), anyString(), any(), any(), anyInt(), any(), any()))
+                .thenAnswer(invocation -> claim(invocation.getArgument(1), invocation.getArgument(2),
+                        invocation.getArgument(4), invocation.getArgument(5), invocation.getArgument(6)));
+        when(productRepository.completeEnrichment(anyLong(), anyString(), any(), any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> complete(invocation.getArgument(1), invocation.getArgument(2),
+                        invocation.getArgument(3)));
+        when(productRepository.releaseEnrichmentClaim(anyLong(), anyString(), any(), any()))
+                .thenAnswer(invocation -> release(invocation.getArgument(1)));
+
+        when(productDescriptionCache.getOrGenerate(anyString(), anyString(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<String>>getArgument(2).get());
+        when(aiGenerationTypeRepository.findByType(anyString())).thenReturn(Optional.of(new AIGenerationType()));
+        enrichmentService = new ProductEnrichmentService(productRepository, azureAIProductService,
+                productDescriptionCache, aiGenerationTypeRepository, mock(IAIGenerationLogRepository.class),
+                eventPublisher, new SimpleMeterRegistry(), 1, 10, 3, Duration.ofMinutes(10), Duration.ofSeconds(5),
+                Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        enrichmentService.shutdown();
+    }
+
+    @Test
+    void storesGeneratedContentAndCompletes() {
+        when(azureAIProductService.GenerateImage(anyString(), anyString())).thenReturn("/images/iphone.png");
+        when(azureAIProductService.GenerateResponse(anyString(), anyString())).thenReturn("A phone.");
+
+        enrichmentService.enrich(PRODUCT_ID);
+
+        assertThat(row.getEnrichmentStatus()).isEqualTo(EnrichmentStatus.COMPLETED);
+        assertThat(row.getImageUrl()).isEqualTo("/images/iphone.png");
+        assertThat(row.getDescription()).isEqualTo("A phone.");
+        assertThat(row.getEnrichmentAttempts()).isEqualTo(1);
+        verify(eventPublisher).publishEvent(any(ProductChangedEvent.class));
+    }
+
+    @Test
+    void failsWhenContentIsStillMissing() {
+        when(azureAIProductService.GenerateImage(anyString(), anyString())).thenReturn(null);
+        when(azureAIProductService.GenerateResponse(anyString(), anyString())).thenReturn("A phone.");
+
+        enrichmentService.enrich(PRODUCT_ID);
+
+        assertThat(row.getEnrichmentStatus()).isEqualTo(EnrichmentStatus.FAILED);
+        assertThat(row.getDescription()).isEqualTo("A phone.");
+    }
+
+    @Test
+    void skipsProductClaimedByAnotherWorker() {
+        row.setEnrichmentStatus(EnrichmentStatus.IN_PROGRESS);
+        row.setEnrichmentClaimedAt(new Date());
+
+        enrichmentService.enrich(PRODUCT_ID);
+
+        verify(azureAIProductService, never()).GenerateResponse(anyString(), anyString());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void supersededJobDoesNotStoreStaleContent() throws InterruptedException {
+        CountDownLatch secondClaim = new CountDownLatch(1);
+        CountDownLatch firstCompletion = new CountDownLatch(1);
+        when(productRepository.claimForEnrichment(anyLong(), anyString(), any(), any(), anyInt(), any(), any()))
+                .thenAnswer(invocation -> {
+                    int claimed = claim(invocation.getArgument(1), invocation.getArgument(2),
+                            invocation.getArgument(4), invocation.getArgument(5), invocation.getArgument(6));
+                    if (row.getName().equals("Galaxy S24")) {
+                        secondClaim.countDown();
+                    }
+                    return claimed;
+                });
+        when(productRepository.completeEnrichment(anyLong(), anyString(), any(), any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    try {
+                        return complete(invocation.getArgument(1), invocation.getArgument(2),
+                                invocation.getArgument(3));
+                    } finally {
+                        firstCompletion.countDown();
+                    }
+                });
+        when(azureAIProductService.GenerateImage(anyString(), anyString())).thenReturn("/images/phone.png");
+        Thread[] secondJob = new Thread[1];
+        when(azureAIProductService.GenerateResponse(anyString(), anyString())).thenAnswer(invocation -> {
+            if (invocation.<String>getArgument(1).contains("Galaxy S24")) {
+                // The second job finishes only after the first one tried to store its stale content
+                firstCompletion.await();
+                return "About the Galaxy.";
+            }
+            // While the first job generates, the product is renamed and claimed by a second job
+            resetForEdit("Galaxy S24");
+            secondJob[0] = Thread.ofPlatform().start(() -> enrichmentService.enrich(PRODUCT_ID));
+            secondClaim.await();
+            return "About the iPhone.";
+        });
+
+        enrichmentService.enrich(PRODUCT_ID);
+        secondJob[0].join();
+
+        assertThat(row.getDescription()).isEqualTo("About the Galaxy.");
+        assertThat(row.getEnrichmentStatus()).isEqualTo(EnrichmentStatus.COMPLETED);
+        verify(eventPublisher).publishEvent(any(ProductChangedEvent.class));
+    }
+
+    @Test
+    void releasesClaimWhenInterrupted() {
+        // The calls only return once cancelled, so the job is interrupted while waiting for them
+        when(azureAIProductService.GenerateResponse(anyString(), anyString())).thenAnswer(invocation -> {
+            new CountDownLatch(1).await();
+            return "A phone.";
+        });
+        when(azureAIProductService.GenerateImage(anyString(), anyString())).thenAnswer(invocation -> {
+            new CountDownLatch(1).await();
+            return "/images/iphone.png";
+        });
+
+        Thread.currentThread().interrupt();
+        try {
+            enrichmentService.enrich(PRODUCT_ID);
+        } finally {
+            assertThat(Thread.interrupted()).isTrue();
+        }
+
+        assertThat(row.getEnrichmentStatus()).isEqualTo(EnrichmentStatus.PENDING);
+        assertThat(row.getEnrichmentAttempts()).isZero();
+        assertThat(row.getDescription()).isNull();
+    }
+
+    @Test
+    void sweepSubmitsProductsAwaitingEnrichment() {
+        when(productRepository.findIdsAwaitingEnrichment(any(), any(), anyInt(), any(), any(Limit.class)))
+                .thenReturn(List.of(PRODUCT_ID));
+        when(azureAIProductService.GenerateImage(anyString(), anyString())).thenReturn("/images/iphone.png");
+        when(azureAIProductService.GenerateResponse(anyString(), anyString())).thenReturn("A phone.");
+
+        enrichmentService.resubmitAwaitingEnrichment();
+
+        verify(eventPublisher, timeout(5000)).publishEvent(any(ProductChangedEvent.class));
+        assertThat(row.getEnrichmentStatus()).isEqualTo(EnrichmentStatus.COMPLETED);
+    }
+
+    /**
+     * Saves the product as {@code updateProduct} does when its name changes and its content is to be generated.
+     */
+    private synchronized void resetForEdit(String name) {
+        row.setName(name);
+        row.setDescription(null);
+        row.setImageUrl(null);
+        row.setEnrichmentStatus(EnrichmentStatus.PENDING);
+        row.setEnrichmentAttempts(0);
+        row.setEnrichmentClaimToken(null);
+    }
+
+    private synchronized int claim(String claimToken, Collection<EnrichmentStatus> claimable, int maxAttempts, Date stuckBefore,
+                      Date now) {
+        boolean abandoned = row.getEnrichmentStatus() == EnrichmentStatus.IN_PROGRESS
+                && row.getEnrichmentClaimedAt().before(stuckBefore);
+        if (row.getEnrichmentAttempts() >= maxAttempts
+                || !(claimable.contains(row.getEnrichmentStatus()) || abandoned)) {
+            return 0;
+        }
+        row.setEnrichmentStatus(EnrichmentStatus.IN_PROGRESS);
+        row.setEnrichmentAttempts(row.getEnrichmentAttempts() + 1);
+        row.setEnrichmentClaimedAt(now);
+        row.setEnrichmentClaimToken(claimToken);
+        return 1;
+    }
+
+    private synchronized int complete(String claimToken, String imageUrl, String description) {
+        if (!holds(claimToken)) {
+            return 0;
+        }
+        if (row.getImageUrl() == null) {
+            row.setImageUrl(imageUrl);
+        }
+        if (row.getDescription() == null) {
+            row.setDescription(description);
+        }
+        row.setEnrichmentStatus(row.getImageUrl() != null && row.getDescription() != null
+                ? EnrichmentStatus.COMPLETED
+                : EnrichmentStatus.FAILED);
+        return 1;
+    }
+
+    private synchronized int release(String claimToken) {
+        if (!holds(claimToken)) {
+            return 0;
+        }
+        row.setEnrichmentStatus(EnrichmentStatus.PENDING);
+        row.setEnrichmentAttempts(row.getEnrichmentAttempts() - 1);
+        return 1;
+    }
+
+    private boolean holds(String claimToken) {
+        return row.getEnrichmentStatus() == EnrichmentStatus.IN_PROGRESS
+                && claimToken.equals(row.getEnrichmentClaimToken());
+    }
+
+    private synchronized Product copy() {
+        Product product = new Product();
+        product.setId(row.getId());
+        product.setName(row.getName());
+        product.setCategory(row.getCategory());
+        product.setDescription(row.getDescription());
+        product.setImageUrl(row.getImageUrl());
+        product.setEnrichmentStatus(row.getEnrichmentStatus());
+        product.setEnrichmentAttempts(row.getEnrichmentAttempts());
+        return product;
+    }
+}
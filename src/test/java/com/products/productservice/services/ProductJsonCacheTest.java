@@ -0,0 +1,100 @@
+package com.products.productservice.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.products.productservice.dtos.ProductVersionDto;
+import com.products.productservice.events.ProductChangedEvent;
+import com.products.productservice.model.Category;
+import com.products.productservice.model.EnrichmentStatus;
+import com.products.productservice.model.Product;
+import com.products.productservice.utils.ProductBinaryRedisSerializer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductJsonCacheTest {
+
+    private final ProductJsonCache productJsonCache =
+            new ProductJsonCache(new ObjectMapper(), new SimpleMeterRegistry(), 1_000_000);
+    private final List<Collection<Long>> loads = new ArrayList<>(); // IDs requested from the loader
+
+    @Test
+    void listReusesFragmentRenderedForProductReadFromRedis() {
+        // GET /products/{id} renders the product as read back from the Redis product cache
+        ProductBinaryRedisSerializer serializer = new ProductBinaryRedisSerializer();
+        Product cached = (Product) serializer.deserialize(serializer.serialize(product("Phones", 2000)));
+        byte[] json = productJsonCache.toJson(cached);
+
+        byte[] array = productJsonCache.toJsonArray(List.of(version(2000)), loader(product("Phones", 2000)));
+
+        assertThat(loads).isEmpty();
+        assertThat(new String(array, StandardCharsets.UTF_8)).isEqualTo("[" + new String(json, StandardCharsets.UTF_8) + "]");
+    }
+
+    @Test
+    void productReusesFragmentRenderedForList() {
+        Product product = product("Phones", 2000);
+        productJsonCache.toJsonArray(List.of(version(2000)), loader(product));
+
+        byte[] first = productJsonCache.toJson(product("Phones", 2000));
+        byte[] second = productJsonCache.toJson(product("Phones", 2000));
+
+        assertThat(loads).hasSize(1);
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    void rendersAgainWhenCategoryIsRenamed() {
+        productJsonCache.toJson(product("Phones", 2000));
+
+        byte[] array = productJsonCache.toJsonArray(List.of(version(3000)), loader(product("Smartphones", 3000)));
+
+        assertThat(loads).containsExactly(List.of(42L));
+        assertThat(new String(array, StandardCharsets.UTF_8)).contains("\"Smartphones\"");
+    }
+
+    @Test
+    void rendersAgainWhenProductChanges() {
+        productJsonCache.toJson(product("Phones", 2000));
+        productJsonCache.onProductChanged(ProductChangedEvent.deleted(42L, new Date(5000)));
+
+        productJsonCache.toJsonArray(List.of(version(2000)), loader(product("Phones", 2000)));
+
+        assertThat(loads).hasSize(1);
+    }
+
+    private Function<Collection<Long>, List<Product>> loader(Product product) {
+        return ids -> {
+            loads.add(List.copyOf(ids));
+            return List.of(product);
+        };
+    }
+
+    private static ProductVersionDto version(long categoryLastModified) {
+        return new ProductVersionDto(42L, new Date(1000), new Date(categoryLastModified));
+    }
+
+    private static Product product(String categoryName, long categoryLastModified) {
+        Category category = new Category();
+        category.setId(3L);
+        category.setName(categoryName);
+        category.setLastModified(new Date(categoryLastModified));
+        Product product = new Product();
+        product.setId(42L);
+        product.setName("iPhone 15");
+        product.setDescription("A phone");
+        product.setImageUrl("https://example.com/iphone.png");
+        product.setPrice(799.99);
+        product.setCategory(category);
+        product.setLastModified(new Date(1000));
+        product.setEnrichmentStatus(EnrichmentStatus.COMPLETED);
+        return product;
+    }
+}
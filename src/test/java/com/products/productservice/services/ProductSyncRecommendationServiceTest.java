@@ -0,0 +1,146 @@
+package com.products.productservice.services;
+
+import com.products.productservice.model.Product;
+import com.products.productservice.repositories.IProductRepository;
+import com.products.productservice.repositories.IProductVectorRepository;
+import com.products.productservice.utils.RedisLeases;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.products.productservice.services.ProductSyncRecommendationService.REBUILD_CHECKPOINT_KEY;
+import static com.products.productservice.services.ProductSyncRecommendationService.REBUILD_STARTED_KEY;
+import static com.products.productservice.services.ProductSyncRecommendationService.SYNCED_AT_KEY;
+import static com.products.productservice.services.ProductSyncRecommendationService.WATERMARK_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductSyncRecommendationServiceTest {
+
+    private final IProductRepository productRepository = mock(IProductRepository.class);
+    private final ProductEmbeddingIngestor ingestor = mock(ProductEmbeddingIngestor.class);
+    private final IProductVectorRepository productVectorRepository = mock(IProductVectorRepository.class);
+    private final RedisLeases redisLeases = mock(RedisLeases.class);
+    private final RedisLeases.Lease lease = mock(RedisLeases.Lease.class);
+    private final Map<String, String> syncState = new HashMap<>();
+    private ProductSyncRecommendationService syncService;
+
+    @BeforeEach
+    void setUp() {
+        // Back the sync state with a map, as the index does
+        when(productVectorRepository.findSyncState(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(syncState.get(invocation.<String>getArgument(0))));
+        doAnswer(invocation -> syncState.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(productVectorRepository).saveSyncState(anyString(), anyString());
+        doAnswer(invocation -> {
+            for (Object name : invocation.getArguments()) {
+                syncState.remove((String) name);
+            }
+            return null;
+        }).when(productVectorRepository).deleteSyncState(any(String[].class));
+        when(productVectorRepository.isShared()).thenReturn(true);
+        when(redisLeases.tryAcquire(anyString(), any(Duration.class))).thenReturn(Optional.of(lease));
+        when(lease.renew()).thenReturn(true);
+        syncService = new ProductSyncRecommendationService(productRepository, ingestor, productVectorRepository,
+                new SimpleMeterRegistry(), redisLeases, 2, 2, Duration.ofMinutes(1), Duration.ofMinutes(5),
+                Duration.ofMinutes(5));
+    }
+
+    @Test
+    void skipsSyncWhileAnotherNodeHoldsTheLease() throws InterruptedException {
+        when(redisLeases.tryAcquire(anyString(), any(Duration.class))).thenReturn(Optional.empty());
+        syncState.put(WATERMARK_KEY, "1000");
+        syncState.put(SYNCED_AT_KEY, Long.toString(System.currentTimeMillis()));
+
+        syncService.syncProductsToRedisAsDocuments();
+
+        verify(productRepository, never()).findChangedAfter(any(), anyLong(), any());
+        verify(productVectorRepository, never()).saveSyncState(anyString(), anyString());
+        assertThat(syncService.getIndexState()).isEqualTo(ProductSyncRecommendationService.IndexState.WARM);
+    }
+
+    @Test
+    void syncsLocalIndexWithoutLease() throws InterruptedException {
+        when(productVectorRepository.isShared()).thenReturn(false);
+        syncState.put(WATERMARK_KEY, "1000");
+        when(productRepository.findChangedAfter(any(), anyLong(), any())).thenReturn(List.of());
+
+        syncService.syncProductsToRedisAsDocuments();
+
+        verify(redisLeases, never()).tryAcquire(anyString(), any(Duration.class));
+        assertThat(syncState).containsKey(SYNCED_AT_KEY);
+    }
+
+    @Test
+    void advancesWatermarkAndReleasesLease() throws InterruptedException {
+        syncState.put(WATERMARK_KEY, "1000");
+        when(productRepository.findChangedAfter(any(), anyLong(), any())).thenReturn(List.of(product(5, 2000)));
+
+        syncService.syncProductsToRedisAsDocuments();
+
+        verify(ingestor).ingest(List.of(product(5, 2000)));
+        assertThat(syncState).containsEntry(WATERMARK_KEY, "2000");
+        verify(lease).close();
+    }
+
+    @Test
+    void stopsWithoutSavingWatermarkWhenLeaseIsLost() throws InterruptedException {
+        syncState.put(WATERMARK_KEY, "1000");
+        when(productRepository.findChangedAfter(any(), anyLong(), any()))
+                .thenReturn(List.of(product(5, 2000), product(6, 3000)));
+        when(lease.renew()).thenReturn(false);
+
+        syncService.syncProductsToRedisAsDocuments();
+
+        assertThat(syncState).containsEntry(WATERMARK_KEY, "1000");
+    }
+
+    @Test
+    void resumesRebuildWhoseStartTimeWasLost() throws InterruptedException {
+        syncState.put(REBUILD_CHECKPOINT_KEY, "10");
+        when(productRepository.findPageAfterId(10L, Limit.of(2))).thenReturn(List.of(product(11, 500)));
+        when(productRepository.findPageAfterId(11L, Limit.of(2))).thenReturn(List.of());
+        when(productRepository.findChangedAfter(any(), anyLong(), any())).thenReturn(List.of());
+
+        syncService.syncProductsToRedisAsDocuments();
+
+        verify(productVectorRepository, never()).prepareRebuild();
+        verify(ingestor).ingest(List.of(product(11, 500)));
+        // The watermark falls back to zero, so the following scan covers every change since the lost start
+        assertThat(syncState).containsEntry(WATERMARK_KEY, "0")
+                .doesNotContainKeys(REBUILD_CHECKPOINT_KEY, REBUILD_STARTED_KEY);
+    }
+
+    @Test
+    void pausesRebuildWhenLeaseIsLost() throws InterruptedException {
+        when(lease.renew()).thenReturn(false);
+
+        syncService.syncProductsToRedisAsDocuments();
+
+        verify(productRepository, never()).findPageAfterId(anyLong(), any());
+        assertThat(syncState).doesNotContainKey(WATERMARK_KEY).containsKey(REBUILD_STARTED_KEY);
+        assertThat(syncService.getIndexState()).isEqualTo(ProductSyncRecommendationService.IndexState.BUILDING);
+    }
+
+    private static Product product(long id, long lastModified) {
+        Product product = new Product();
+        product.setId(id);
+        product.setLastModified(new Date(lastModified));
+        return product;
+    }
+}
@@ -0,0 +1,125 @@
+package com.products.productservice.services;
+
+import com.products.productservice.model.Product;
+import com.products.productservice.repositories.IProductRepository;
+import com.products.productservice.utils.RedisLeases;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import redis.clients.jedis.JedisPooled;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+
+import static com.products.productservice.services.RecommendationPrecomputeService.REFRESHED_AT_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecommendationPrecomputeServiceTest {
+
+    private final RecommendationService recommendationService = mock(RecommendationService.class);
+    private final IProductRepository productRepository = mock(IProductRepository.class);
+    private final JedisPooled jedisPooled = mock(JedisPooled.class);
+    private final RedisLeases redisLeases = mock(RedisLeases.class);
+    private final RedisLeases.Lease lease = mock(RedisLeases.Lease.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RecommendationPrecomputeService precomputeService = new RecommendationPrecomputeService(
+            recommendationService, productRepository, jedisPooled, meterRegistry, redisLeases, 2,
+            Duration.ofHours(6), Duration.ofMinutes(5));
+
+    @BeforeEach
+    void setUp() {
+        when(redisLeases.tryAcquire(anyString(), any(Duration.class))).thenReturn(Optional.of(lease));
+        when(lease.renew()).thenReturn(true);
+    }
+
+    @Test
+    void skipsRefreshWhileAnotherNodeHoldsTheLease() {
+        when(redisLeases.tryAcquire(anyString(), any(Duration.class))).thenReturn(Optional.empty());
+
+        precomputeService.refreshAll();
+
+        verify(productRepository, never()).findPageAfterId(anyLong(), any());
+    }
+
+    @Test
+    void skipsRefreshCompletedByAnotherNode() {
+        when(jedisPooled.get(REFRESHED_AT_KEY)).thenReturn(Long.toString(System.currentTimeMillis() - 60_000));
+
+        precomputeService.refreshAll();
+
+        verify(productRepository, never()).findPageAfterId(anyLong(), any());
+        verify(lease).close();
+    }
+
+    @Test
+    void refreshesEveryPageAndRecordsCompletion() {
+        Product first = product(1);
+        Product second = product(2);
+        Product third = product(3);
+        when(productRepository.findPageAfterId(0L, Limit.of(2))).thenReturn(List.of(first, second));
+        when(productRepository.findPageAfterId(2L, Limit.of(2))).thenReturn(List.of(third));
+
+        precomputeService.refreshAll();
+
+        verify(recommendationService).recompute(same(first));
+        verify(recommendationService).recompute(same(second));
+        verify(recommendationService).recompute(same(third));
+        verify(jedisPooled).set(eq(REFRESHED_AT_KEY), anyString());
+        verify(lease).close();
+    }
+
+    @Test
+    void stopsWithoutRecordingCompletionWhenLeaseIsLost() {
+        when(lease.renew()).thenReturn(false);
+
+        precomputeService.refreshAll();
+
+        verify(productRepository, never()).findPageAfterId(anyLong(), any());
+        verify(jedisPooled, never()).set(eq(REFRESHED_AT_KEY), anyString());
+    }
+
+    @Test
+    void marksProductsDirtyAgainWhenTheirRecomputeFails() {
+        when(jedisPooled.spop(RecommendationService.DIRTY_KEY, 2))
+                .thenReturn(new LinkedHashSet<>(List.of("1", "2")), new LinkedHashSet<>(List.of("3")));
+        doThrow(new IllegalStateException("Vector store unavailable")).when(recommendationService).recompute(2L);
+
+        precomputeService.recomputeChanged();
+
+        // The failure neither loses the rest of the batch nor ends the run
+        verify(recommendationService).recompute(1L);
+        verify(recommendationService).recompute(3L);
+        verify(jedisPooled).sadd(RecommendationService.DIRTY_KEY, "2");
+        assertThat(meterRegistry.counter("product.recommendation.precompute.failed", "trigger", "changed").count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void marksNothingDirtyWhenEveryRecomputeSucceeds() {
+        when(jedisPooled.spop(RecommendationService.DIRTY_KEY, 2)).thenReturn(new LinkedHashSet<>(List.of("1")));
+
+        precomputeService.recomputeChanged();
+
+        verify(recommendationService).recompute(1L);
+        verify(jedisPooled, never()).sadd(anyString(), any(String[].class));
+    }
+
+    private static Product product(long id) {
+        Product product = new Product();
+        product.setId(id);
+        return product;
+    }
+}
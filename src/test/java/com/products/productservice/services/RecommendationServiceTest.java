@@ -0,0 +1,110 @@
+package com.products.productservice.services;
+
+import com.products.productservice.model.Category;
+import com.products.productservice.model.Product;
+import com.products.productservice.repositories.IProductRepository;
+import com.products.productservice.repositories.IProductVectorRepository;
+import com.products.productservice.repositories.VectorSearchFilter;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.document.Document;
+import redis.clients.jedis.JedisPooled;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecommendationServiceTest {
+
+    private final IProductVectorRepository productVectorRepository = mock(IProductVectorRepository.class);
+    private final IProductRepository productRepository = mock(IProductRepository.class);
+    private final JedisPooled jedisPooled = mock(JedisPooled.class);
+    private final RecommendationService recommendationService = new RecommendationService(productVectorRepository,
+            productRepository, true, mock(ProductCacheService.class), jedisPooled, 20,
+            RecommendationService.Mode.HYBRID, 50, 0.6, 0.25, 0.15);
+
+    @Test
+    void scoresQueryBasedCandidatesOnTheirStoredEmbeddings() {
+        Product target = product(1, "Phones", 100.0);
+        Product sameCategory = product(2, "Phones", 100.0);
+        float[] targetEmbedding = {1.0f, 0.0f};
+        when(productVectorRepository.findEmbeddingByProductId(1L)).thenReturn(Optional.of(targetEmbedding));
+        // A vector hit in another category at a distance of 0.5
+        when(productVectorRepository.findNearest(eq(targetEmbedding), anyInt(), any(VectorSearchFilter.class)))
+                .thenReturn(List.of(hit(product(3, "Cases", 20.0), 0.5)));
+        when(productRepository.findSimilarInCategory(any(), anyDouble(), anyDouble(), anyDouble(), anyLong(), any()))
+                .thenReturn(List.of(sameCategory));
+        when(productVectorRepository.findEmbeddingsByProductIds(anyCollection()))
+                .thenReturn(new HashMap<>(Map.of(1L, targetEmbedding, 2L, new float[]{0.8f, 0.6f})));
+
+        recommendationService.recompute(target);
+
+        // 0.6 * 0.8 similarity + 0.25 price + 0.15 category, ahead of the 0.6 * 0.5 similarity of the vector hit
+        String[] entries = storedList(1L);
+        assertThat(entries).hasSize(2);
+        assertThat(entries[0]).startsWith("2:");
+        assertThat(Double.parseDouble(entries[0].substring(2))).isCloseTo(0.88, within(1e-6));
+        assertThat(entries[1]).startsWith("3:");
+    }
+
+    @Test
+    void scoresCandidatesWithoutEmbeddingOnPriceAndCategory() {
+        Product target = product(1, "Phones", 100.0);
+        when(productVectorRepository.findEmbeddingByProductId(1L)).thenReturn(Optional.empty());
+        when(productRepository.findSimilarInCategory(any(), anyDouble(), anyDouble(), anyDouble(), anyLong(), any()))
+                .thenReturn(List.of(product(2, "Phones", 100.0)));
+        when(productVectorRepository.findEmbeddingsByProductIds(anyCollection())).thenReturn(new HashMap<>());
+
+        recommendationService.recompute(target);
+
+        // Full price and category match, scaled up to the full weight
+        String[] entries = storedList(1L);
+        assertThat(entries).hasSize(1);
+        assertThat(Double.parseDouble(entries[0].substring(2))).isCloseTo(1.0, within(1e-6));
+    }
+
+    @Test
+    void computesCosineSimilarity() {
+        assertThat(RecommendationService.cosineSimilarity(new float[]{3, 4}, new float[]{6, 8})).isCloseTo(1.0, within(1e-6));
+        assertThat(RecommendationService.cosineSimilarity(new float[]{1, 0}, new float[]{0, 1})).isZero();
+        assertThat(RecommendationService.cosineSimilarity(new float[]{1, 0}, new float[]{1, 0, 0})).isZero();
+    }
+
+    private String[] storedList(long productId) {
+        ArgumentCaptor<String> list = ArgumentCaptor.forClass(String.class);
+        verify(jedisPooled).set(eq(RecommendationService.PRECOMPUTED_KEY_PREFIX + productId), list.capture());
+        return list.getValue().split(",");
+    }
+
+    private static Document hit(Product product, double distance) {
+        Map<String, Object> metadata = new HashMap<>(IProductVectorRepository.metadataOf(product));
+        metadata.put(IProductVectorRepository.DISTANCE_METADATA_KEY, distance);
+        return new Document(String.valueOf(product.getId()), "description", metadata);
+    }
+
+    private static Product product(long id, String categoryName, double price) {
+        Category category = new Category();
+        category.setName(categoryName);
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Product " + id);
+        product.setPrice(price);
+        product.setCategory(category);
+        product.setLastModified(new Date(1000));
+        return product;
+    }
+}
@@ -0,0 +1,76 @@
+package com.products.productservice.services;
+
+import com.products.productservice.model.SearchLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SearchLogWriterTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>(); // Sizes of the written batches
+
+    @BeforeEach
+    void setUp() {
+        // The writer reuses its batch list, so record the sizes when the batch is written
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    batchSizes.add(invocation.<List<?>>getArgument(1).size());
+                    return new int[0][];
+                });
+    }
+
+    @Test
+    void flushesOnItsOwnThread() {
+        SearchLogWriter writer = writer(Duration.ofMillis(50));
+        writer.start();
+
+        writer.record(searchLog("phones"));
+
+        verify(jdbcTemplate, timeout(2000)).batchUpdate(anyString(), anyList(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+        writer.shutdown();
+        assertThat(batchSizes).containsExactly(1);
+    }
+
+    @Test
+    void writesQueuedLogsOnShutdown() {
+        SearchLogWriter writer = writer(Duration.ofHours(1));
+        writer.start();
+        writer.record(searchLog("phones"));
+        writer.record(searchLog("laptops"));
+
+        writer.shutdown();
+
+        assertThat(batchSizes).containsExactly(2);
+    }
+
+    private SearchLogWriter writer(Duration flushInterval) {
+        return new SearchLogWriter(jdbcTemplate, new SimpleMeterRegistry(), 100, 10, 0.8, 0.1, flushInterval);
+    }
+
+    private static SearchLog searchLog(String query) {
+        SearchLog searchLog = new SearchLog();
+        searchLog.setQuery(query);
+        searchLog.setCreatedAt(new Date());
+        searchLog.setLastModified(searchLog.getCreatedAt());
+        return searchLog;
+    }
+}
@@ -0,0 +1,147 @@
+package com.products.productservice.services;
+
+import com.products.productservice.dtos.ProductVersionDto;
+import com.products.productservice.events.ProductChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.products.productservice.services.SearchResultCache.CATALOGUE_VERSION_CHANNEL;
+import static com.products.productservice.services.SearchResultCache.CATALOGUE_VERSION_KEY;
+import static com.products.productservice.services.SearchResultCache.RESULTS_KEY_PREFIX;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SearchResultCacheTest {
+
+    private static final SearchResults RESULTS = new SearchResults(List.of(
+            new ProductVersionDto(7L, new Date(1000), new Date(500)),
+            new ProductVersionDto(9L, new Date(2000), null)), "next-cursor");
+
+    private final StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Map<String, String> redis = new HashMap<>(); // The Redis keys the cache reads and writes
+    private final List<Long> searches = new ArrayList<>();     // Catalogue versions the searches ran at
+
+    @BeforeEach
+    void setUp() {
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenAnswer(invocation -> redis.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOperations).set(anyString(), anyString(), any(Duration.class));
+        when(valueOperations.increment(CATALOGUE_VERSION_KEY)).thenAnswer(invocation -> {
+            long version = Long.parseLong(redis.getOrDefault(CATALOGUE_VERSION_KEY, "0")) + 1;
+            redis.put(CATALOGUE_VERSION_KEY, Long.toString(version));
+            return version;
+        });
+        redis.put(CATALOGUE_VERSION_KEY, "5");
+    }
+
+    @Test
+    void servesRepeatedSearchFromTheLocalCache() {
+        SearchResultCache cache = cache();
+
+        cache.get("shoes*", "page|shoes*|0|10", this::search);
+        SearchResults second = cache.get("shoes*", "page|shoes*|0|10", this::search);
+
+        assertThat(searches).containsExactly(5L);
+        assertThat(second).isSameAs(RESULTS);
+        assertThat(redis).containsKey(RESULTS_KEY_PREFIX + "5:page|shoes*|0|10");
+    }
+
+    @Test
+    void decodesResultsSharedThroughRedisByAnotherNode() {
+        cache().get("shoes*", "page|shoes*|0|10", this::search);
+
+        // A second node finds the results in Redis rather than in its local cache
+        SearchResults shared = cache().get("shoes*", "page|shoes*|0|10", this::search);
+
+        assertThat(searches).hasSize(1);
+        assertThat(shared).isEqualTo(RESULTS);
+        assertThat(meterRegistry.get("search.cache.redis.gets").tag("result", "hit").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void decodesResultsWithoutNextCursorOrCategoryVersion() {
+        // Results cached before category versions were added
+        redis.put(RESULTS_KEY_PREFIX + "5:page|shoes*|1|10", "\n7:1000");
+
+        SearchResults results = cache().get("shoes*", "page|shoes*|1|10", this::search);
+
+        assertThat(searches).isEmpty();
+        assertThat(results.nextCursor()).isNull();
+        assertThat(results.products()).containsExactly(new ProductVersionDto(7L, new Date(1000), null));
+    }
+
+    @Test
+    void productChangeInvalidatesEveryCachedSearch() {
+        SearchResultCache cache = cache();
+        cache.get("shoes*", "page|shoes*|0|10", this::search);
+
+        cache.onProductChanged(ProductChangedEvent.deleted(7L, new Date(3000)));
+        cache.get("shoes*", "page|shoes*|0|10", this::search);
+
+        assertThat(searches).containsExactly(5L, 6L);
+        assertThat(cache.getCatalogueVersion()).isEqualTo(6L);
+        verify(stringRedisTemplate).convertAndSend(CATALOGUE_VERSION_CHANNEL, "6");
+    }
+
+    @Test
+    void neverGoesBackToAnOlderBroadcastVersion() {
+        SearchResultCache cache = cache();
+
+        cache.onMessage(new DefaultMessage(CATALOGUE_VERSION_CHANNEL.getBytes(StandardCharsets.UTF_8), bytes("8")), null);
+        cache.onMessage(new DefaultMessage(CATALOGUE_VERSION_CHANNEL.getBytes(StandardCharsets.UTF_8), bytes("7")), null);
+        cache.onMessage(new DefaultMessage(CATALOGUE_VERSION_CHANNEL.getBytes(StandardCharsets.UTF_8), bytes("bad")), null);
+
+        assertThat(cache.getCatalogueVersion()).isEqualTo(8L);
+    }
+
+    @Test
+    void countsHitsAndMissesPerQuery() {
+        SearchResultCache cache = cache();
+        cache.get("shoes*", "page|shoes*|0|10", this::search);
+        cache.get("shoes*", "page|shoes*|0|10", this::search);
+        cache.get("shoes*", "page|shoes*|1|10", this::search);
+        cache.get("laptop*", "page|laptop*|0|10", this::search);
+
+        List<SearchResultCache.QueryHitRate> hitRates = cache.getQueryHitRates(10);
+
+        assertThat(hitRates).containsExactly(
+                new SearchResultCache.QueryHitRate("shoes*", 1, 2, 1.0 / 3),
+                new SearchResultCache.QueryHitRate("laptop*", 0, 1, 0.0));
+        assertThat(cache.getQueryHitRates(1)).hasSize(1);
+    }
+
+    private SearchResultCache cache() {
+        return new SearchResultCache(stringRedisTemplate, meterRegistry, 100, Duration.ofMinutes(1),
+                Duration.ofMinutes(10), 100);
+    }
+
+    private SearchResults search(long catalogueVersion) {
+        searches.add(catalogueVersion);
+        return RESULTS;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,134 @@
+package com.products.productservice.services;
+
+import com.products.productservice.dtos.ProductSearchHitDto;
+import com.products.productservice.exception.InvalidSearchRequestException;
+import com.products.productservice.repositories.IProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.List;
+import java.util.function.LongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class SearchServiceImplTest {
+
+    private final IProductRepository productRepository = mock(IProductRepository.class);
+    private final SearchResultCache searchResultCache = mock(SearchResultCache.class);
+    private final SearchServiceImpl searchService =
+            new SearchServiceImpl(productRepository, mock(SearchLogWriter.class), searchResultCache);
+
+    private long catalogueVersion = 3L; // Catalogue version reported by the cache
+
+    @BeforeEach
+    void setUp() {
+        // Run every search against the repository, at the current catalogue version
+        when(searchResultCache.getCatalogueVersion()).thenAnswer(invocation -> catalogueVersion);
+        when(searchResultCache.get(anyString(), anyString(), any()))
+                .thenAnswer(invocation -> invocation.<LongFunction<SearchResults>>getArgument(2).apply(catalogueVersion));
+        when(productRepository.searchFullText(any(), any(), any())).thenReturn(new SliceImpl<>(List.of()));
+    }
+
+    @Test
+    void matchesLongWordsWithTheFullTextIndex() {
+        searchService.search("Red \"Running\" shoes!", 0, 10, null);
+
+        verify(productRepository).searchFullText("red* running* shoes*", null, PageRequest.of(0, 10));
+        verify(searchResultCache).get(eq("red* running* shoes*"), anyString(), any());
+    }
+
+    @Test
+    void matchesShortWordsAgainstTheStartOfNames() {
+        searchService.search("4K TV", 0, 10, null);
+
+        verify(productRepository).searchFullText("", "4k%tv%", PageRequest.of(0, 10));
+        verify(searchResultCache).get(eq("4k tv"), anyString(), any());
+    }
+
+    @Test
+    void combinesLongAndShortWords() {
+        searchService.search("Samsung tv", 0, 10, null);
+
+        verify(productRepository).searchFullText("samsung*", "tv%", PageRequest.of(0, 10));
+    }
+
+    @Test
+    void returnsNothingForQueriesWithoutWords() {
+        SearchResults results = searchService.search("?!", 0, 10, null);
+
+        assertThat(results.products()).isEmpty();
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void passesShortWordsToCursorSearch() {
+        when(productRepository.searchFullTextAfter(any(), any(), eq(true), eq(0.0), eq(0L), any())).thenReturn(List.of());
+
+        searchService.searchAfter("pc", null, 10, null);
+
+        verify(productRepository).searchFullTextAfter("", "pc%", true, 0.0, 0L, Limit.of(11));
+    }
+
+    @Test
+    void continuesFromCursorOfTheSameQuery() {
+        List<ProductSearchHitDto> hits = List.of(hit(7, 2.5), hit(9, 1.5));
+        when(productRepository.searchFullTextAfter(any(), any(), eq(true), eq(0.0), eq(0L), any())).thenReturn(hits);
+        String cursor = searchService.searchAfter("Running shoes", null, 1, null).nextCursor();
+
+        searchService.searchAfter("running  SHOES", cursor, 1, null);
+
+        verify(productRepository).searchFullTextAfter("running* shoes*", null, false, 2.5, 7L, Limit.of(2));
+    }
+
+    @Test
+    void rejectsCursorOfAnotherQuery() {
+        List<ProductSearchHitDto> hits = List.of(hit(7, 2.5), hit(9, 1.5));
+        when(productRepository.searchFullTextAfter(any(), any(), eq(true), eq(0.0), eq(0L), any())).thenReturn(hits);
+        String cursor = searchService.searchAfter("running shoes", null, 1, null).nextCursor();
+
+        assertThatThrownBy(() -> searchService.searchAfter("laptop", cursor, 1, null))
+                .isInstanceOf(InvalidSearchRequestException.class);
+    }
+
+    @Test
+    void rejectsCursorIssuedBeforeTheCatalogueChanged() {
+        List<ProductSearchHitDto> hits = List.of(hit(7, 2.5), hit(9, 1.5));
+        when(productRepository.searchFullTextAfter(any(), any(), eq(true), eq(0.0), eq(0L), any())).thenReturn(hits);
+        String cursor = searchService.searchAfter("running shoes", null, 1, null).nextCursor();
+        catalogueVersion++; // A product was written, changing the relevance scores
+
+        assertThatThrownBy(() -> searchService.searchAfter("running shoes", cursor, 1, null))
+                .isInstanceOf(InvalidSearchRequestException.class)
+                .hasMessageContaining("catalogue changed");
+    }
+
+    @Test
+    void acceptsCursorIssuedAtAVersionThisNodeHasNotSeenYet() {
+        List<ProductSearchHitDto> hits = List.of(hit(7, 2.5), hit(9, 1.5));
+        when(productRepository.searchFullTextAfter(any(), any(), eq(true), eq(0.0), eq(0L), any())).thenReturn(hits);
+        String cursor = searchService.searchAfter("running shoes", null, 1, null).nextCursor();
+        catalogueVersion--; // Another node, whose version broadcast has not arrived yet
+
+        searchService.searchAfter("running shoes", cursor, 1, null);
+
+        verify(productRepository).searchFullTextAfter("running* shoes*", null, false, 2.5, 7L, Limit.of(2));
+    }
+
+    private static ProductSearchHitDto hit(long id, double score) {
+        ProductSearchHitDto hit = mock(ProductSearchHitDto.class);
+        when(hit.getId()).thenReturn(id);
+        when(hit.getScore()).thenReturn(score);
+        return hit;
+    }
+}
@@ -0,0 +1,108 @@
+package com.products.productservice.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JsonHttpClientTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private StubHttpServer server;
+    private JsonHttpClient jsonHttpClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubHttpServer();
+        jsonHttpClient = new JsonHttpClient(HttpClient.newHttpClient(), new ObjectMapper(), meterRegistry,
+                Duration.ofMillis(500));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void postsJsonWithApiKeyAndParsesResponse() throws Exception {
+        server.respond("/chat", 200, "{\"choices\":[{\"message\":{\"content\":\"hello\"}}]}");
+
+        JsonNode response = jsonHttpClient.postJson("chat", server.url("/chat"), "secret",
+                Map.of("prompt", "say \"hi\""));
+
+        assertThat(response.at("/choices/0/message/content").asText()).isEqualTo("hello");
+        StubHttpServer.Request request = server.lastRequest("/chat");
+        assertThat(request.headers().getFirst("api-key")).isEqualTo("secret");
+        assertThat(request.headers().getFirst("Content-Type")).isEqualTo("application/json");
+        assertThat(request.body()).isEqualTo("{\"prompt\":\"say \\\"hi\\\"\"}");
+        assertThat(meterRegistry.get("http.client.calls").tags("endpoint", "chat", "outcome", "success").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void parsesGzippedResponse() throws Exception {
+        server.respondGzipped("/chat", 200, "{\"value\":42}");
+
+        JsonNode response = jsonHttpClient.postJson("chat", server.url("/chat"), "secret", Map.of());
+
+        assertThat(response.get("value").asInt()).isEqualTo(42);
+    }
+
+    @Test
+    void reportsErrorStatusWithBody() {
+        server.respond("/chat", 429, "{\"error\":\"rate limited\"}");
+
+        assertThatThrownBy(() -> jsonHttpClient.postJson("chat", server.url("/chat"), "secret", Map.of()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("HTTP 429")
+                .hasMessageContaining("rate limited");
+        assertThat(meterRegistry.get("http.client.calls").tags("endpoint", "chat", "outcome", "http_429").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void timesOutSlowResponses() {
+        server.respondAfter("/chat", 2000, "{}".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> jsonHttpClient.postJson("chat", server.url("/chat"), "secret", Map.of()))
+                .isInstanceOf(HttpTimeoutException.class);
+        assertThat(meterRegistry.get("http.client.calls").tags("endpoint", "chat", "outcome", "timeout").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void downloadsToFile(@TempDir Path directory) throws Exception {
+        byte[] image = {(byte) 0x89, 'P', 'N', 'G', 0, 1, 2, 3};
+        server.respondAfter("/image.png", 0, image);
+
+        Path file = jsonHttpClient.download("image", server.url("/image.png"), directory.resolve("image.png"));
+
+        assertThat(Files.readAllBytes(file)).isEqualTo(image);
+    }
+
+    @Test
+    void deletesFileOfFailedDownload(@TempDir Path directory) {
+        server.respond("/missing.png", 404, "not found");
+        Path target = directory.resolve("missing.png");
+
+        assertThatThrownBy(() -> jsonHttpClient.download("image", server.url("/missing.png"), target))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("HTTP 404");
+        assertThat(target).doesNotExist();
+    }
+}
@@ -0,0 +1,129 @@
+package com.products.productservice.utils;
+
+import com.products.productservice.config.RedisTemplateConfig;
+import com.products.productservice.dtos.ProductResponseDto;
+import com.products.productservice.model.CachedProduct;
+import com.products.productservice.model.Category;
+import com.products.productservice.model.EnrichmentStatus;
+import com.products.productservice.model.Product;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.Date;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductBinaryRedisSerializerTest {
+
+    private final RedisTemplateConfig redisTemplateConfig = new RedisTemplateConfig();
+
+    @ParameterizedTest
+    @ValueSource(strings = {"binary", "json", "jdk"})
+    void roundTripsCachedProductInEveryMode(String format) {
+        RedisSerializer<Object> serializer = redisTemplateConfig.productCacheSerializer(format);
+        CachedProduct cachedProduct = CachedProduct.of(product(EnrichmentStatus.COMPLETED));
+
+        Object deserialized = serializer.deserialize(serializer.serialize(cachedProduct));
+
+        assertThat(deserialized).isEqualTo(cachedProduct);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"binary", "json", "jdk"})
+    void roundTripsTombstoneInEveryMode(String format) {
+        RedisSerializer<Object> serializer = redisTemplateConfig.productCacheSerializer(format);
+        CachedProduct tombstone = CachedProduct.tombstone(new Date(1_700_000_000_000L));
+
+        Object deserialized = serializer.deserialize(serializer.serialize(tombstone));
+
+        assertThat(deserialized).isEqualTo(tombstone);
+    }
+
+    @ParameterizedTest
+    @EnumSource(EnrichmentStatus.class)
+    void roundTripsEveryEnrichmentStatus(EnrichmentStatus enrichmentStatus) {
+        ProductBinaryRedisSerializer serializer = new ProductBinaryRedisSerializer();
+        Product product = product(enrichmentStatus);
+
+        assertThat(serializer.deserialize(serializer.serialize(product))).isEqualTo(product);
+    }
+
+    @Test
+    void roundTripsProductWithoutOptionalFields() {
+        ProductBinaryRedisSerializer serializer = new ProductBinaryRedisSerializer();
+        Product product = new Product();
+        product.setId(7L);
+
+        assertThat(serializer.deserialize(serializer.serialize(product))).isEqualTo(product);
+    }
+
+    @Test
+    void keepsCategoryVersion() {
+        ProductBinaryRedisSerializer serializer = new ProductBinaryRedisSerializer();
+
+        Product product = (Product) serializer.deserialize(serializer.serialize(product(EnrichmentStatus.COMPLETED)));
+
+        assertThat(product.getCategory().getLastModified()).isEqualTo(new Date(1_650_000_000_000L));
+    }
+
+    @Test
+    void roundTripsProductResponseDto() {
+        ProductBinaryRedisSerializer serializer = new ProductBinaryRedisSerializer();
+        ProductResponseDto dto = ProductResponseDto.fromEntity(product(EnrichmentStatus.PENDING));
+
+        assertThat(serializer.deserialize(serializer.serialize(dto))).isEqualTo(dto);
+    }
+
+    @Test
+    void readsEnrichmentStatusOrdinalOfVersion2Payloads() {
+        // Version 2 product: id 1, name "a", no description or image, price 0.0, status ordinal + 1 = 4 (COMPLETED)
+        byte[] version2 = HexFormat.of().parseHex("0202" + "00" + "02" + "0461" + "00" + "00"
+                + "0000000000000000" + "08");
+
+        Product product = (Product) new ProductBinaryRedisSerializer().deserialize(version2);
+
+        assertThat(product.getName()).isEqualTo("a");
+        assertThat(product.getEnrichmentStatus()).isEqualTo(EnrichmentStatus.COMPLETED);
+    }
+
+    @Test
+    void readsPayloadsWrittenWithJdkSerialization() {
+        CachedProduct cachedProduct = CachedProduct.of(product(EnrichmentStatus.FAILED));
+        byte[] jdkPayload = redisTemplateConfig.productCacheSerializer("jdk").serialize(cachedProduct);
+
+        assertThat(new ProductBinaryRedisSerializer().deserialize(jdkPayload)).isEqualTo(cachedProduct);
+    }
+
+    @Test
+    void treatsNewerFormatVersionsAsMissing() {
+        byte[] payload = new ProductBinaryRedisSerializer().serialize(product(EnrichmentStatus.PENDING));
+        payload[0] = ProductBinaryRedisSerializer.FORMAT_VERSION + 1;
+
+        assertThat(new ProductBinaryRedisSerializer().deserialize(payload)).isNull();
+    }
+
+    /**
+     * Builds a product entity the way Hibernate loads it, with its category.
+     */
+    private static Product product(EnrichmentStatus enrichmentStatus) {
+        Category category = new Category();
+        category.setId(3L);
+        category.setName("Phones");
+        category.setLastModified(new Date(1_650_000_000_000L));
+        Product product = new Product();
+        product.setId(42L);
+        product.setName("iPhone 15");
+        product.setDescription("A phone with a ünïcödé description");
+        product.setImageUrl("https://example.com/iphone.png");
+        product.setPrice(799.99);
+        product.setCategory(category);
+        product.setCreatedAt(new Date(1_600_000_000_000L));
+        product.setLastModified(new Date(1_700_000_000_000L));
+        product.setEnrichmentStatus(enrichmentStatus);
+        return product;
+    }
+}
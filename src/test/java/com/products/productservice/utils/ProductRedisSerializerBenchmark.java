@@ -0,0 +1,101 @@
+package com.products.productservice.utils;
+
+import com.products.productservice.config.RedisTemplateConfig;
+import com.products.productservice.model.CachedProduct;
+import com.products.productservice.model.Category;
+import com.products.productservice.model.EnrichmentStatus;
+import com.products.productservice.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark comparing the product cache serializers ("binary", "json" and "jdk") on a typical cached product:
+ * the time to encode and decode one entry, and the size of its payload, printed before the benchmarks run.
+ * <p>
+ * Run from the IDE, or with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.products.productservice.utils.ProductRedisSerializerBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductRedisSerializerBenchmark {
+
+    @Param({"binary", "json", "jdk"})
+    private String format;
+
+    private RedisSerializer<Object> serializer; // Serializer of the benchmarked format
+    private CachedProduct cachedProduct;        // Entry encoded by the serialize benchmark
+    private byte[] payload;                     // Entry decoded by the deserialize benchmark
+
+    @Setup
+    public void setUp() {
+        serializer = new RedisTemplateConfig().productCacheSerializer(format);
+        cachedProduct = CachedProduct.of(product());
+        payload = serializer.serialize(cachedProduct);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(cachedProduct);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(payload);
+    }
+
+    /**
+     * Prints the payload size of each format, then runs the benchmarks.
+     *
+     * @param args Unused.
+     * @throws RunnerException If the benchmarks cannot be run.
+     */
+    public static void main(String[] args) throws RunnerException {
+        RedisTemplateConfig redisTemplateConfig = new RedisTemplateConfig();
+        for (String format : new String[]{"binary", "json", "jdk"}) {
+            byte[] bytes = redisTemplateConfig.productCacheSerializer(format).serialize(CachedProduct.of(product()));
+            System.out.println(format + " payload: " + bytes.length + " bytes");
+        }
+        new Runner(new OptionsBuilder().include(ProductRedisSerializerBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * Builds a product with a category and a description of typical length.
+     */
+    private static Product product() {
+        Category category = new Category();
+        category.setId(12L);
+        category.setName("Smartphones");
+        Product product = new Product();
+        product.setId(123_456L);
+        product.setName("Apple iPhone 15 Pro Max 256GB Natural Titanium");
+        product.setDescription("Forged in titanium and featuring the A17 Pro chip, a customizable Action button "
+                + "and the most powerful iPhone camera system ever, with a 5x telephoto lens. ".repeat(3));
+        product.setImageUrl("https://images.example.com/products/123456/main.jpg");
+        product.setPrice(1199.99);
+        product.setCategory(category);
+        product.setCreatedAt(new Date(1_690_000_000_000L));
+        product.setLastModified(new Date(1_700_000_000_000L));
+        product.setEnrichmentStatus(EnrichmentStatus.COMPLETED);
+        return product;
+    }
+}
@@ -0,0 +1,114 @@
+package com.products.productservice.utils;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local HTTP server standing in for the AI endpoints in tests.
+ * Each path answers with a fixed status and body, optionally gzipped, and records the last request it received.
+ */
+public class StubHttpServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final Map<String, Response> responses = new ConcurrentHashMap<>();
+    private final Map<String, Request> requests = new ConcurrentHashMap<>();
+
+    /**
+     * Canned response of a path.
+     */
+    private record Response(int status, byte[] body, boolean gzip, long delayMillis) {
+    }
+
+    /**
+     * Request received on a path.
+     *
+     * @param headers The request headers.
+     * @param body    The request body as UTF-8 text.
+     */
+    public record Request(Headers headers, String body) {
+    }
+
+    public StubHttpServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            requests.put(path, new Request(exchange.getRequestHeaders(),
+                    new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)));
+            Response response = responses.getOrDefault(path, new Response(404, new byte[0], false, 0));
+            try {
+                Thread.sleep(response.delayMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = response.gzip() ? gzip(response.body()) : response.body();
+            if (response.gzip()) {
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(response.status(), body.length == 0 ? -1 : body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Answers requests to a path with the given status and body.
+     */
+    public StubHttpServer respond(String path, int status, String body) {
+        responses.put(path, new Response(status, body.getBytes(StandardCharsets.UTF_8), false, 0));
+        return this;
+    }
+
+    /**
+     * Answers requests to a path with the given status and gzipped body.
+     */
+    public StubHttpServer respondGzipped(String path, int status, String body) {
+        responses.put(path, new Response(status, body.getBytes(StandardCharsets.UTF_8), true, 0));
+        return this;
+    }
+
+    /**
+     * Answers requests to a path with the given bytes after a delay.
+     */
+    public StubHttpServer respondAfter(String path, long delayMillis, byte[] body) {
+        responses.put(path, new Response(200, body, false, delayMillis));
+        return this;
+    }
+
+    /**
+     * Returns the URL of a path on this server.
+     */
+    public String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * Returns the last request received on a path, or null if there was none.
+     */
+    public Request lastRequest(String path) {
+        return requests.get(path);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressed)) {
+            gzipOutputStream.write(body);
+        }
+        return compressed.toByteArray();
+    }
+}